@@ -0,0 +1,88 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+
+/**
+ * Content decoder reading from a byte array in chunks of a fixed size,
+ * mimicking reads from a session buffer without any I/O.
+ */
+class ByteArrayContentDecoder implements ContentDecoder {
+
+    static final IOControl NO_IO_CONTROL = new IOControl() {
+
+        public void requestInput() {
+        }
+
+        public void suspendInput() {
+        }
+
+        public void requestOutput() {
+        }
+
+        public void suspendOutput() {
+        }
+
+        public void shutdown() throws IOException {
+        }
+
+    };
+
+    private final byte[] content;
+    private final int chunkSize;
+    private int pos;
+
+    ByteArrayContentDecoder(final byte[] content, int chunkSize) {
+        super();
+        this.content = content;
+        this.chunkSize = chunkSize;
+    }
+
+    void reset() {
+        this.pos = 0;
+    }
+
+    public int read(final ByteBuffer dst) throws IOException {
+        if (this.pos >= this.content.length) {
+            return -1;
+        }
+        int len = Math.min(Math.min(this.chunkSize, dst.remaining()), this.content.length - this.pos);
+        dst.put(this.content, this.pos, len);
+        this.pos += len;
+        return len;
+    }
+
+    public boolean isCompleted() {
+        return this.pos >= this.content.length;
+    }
+
+}
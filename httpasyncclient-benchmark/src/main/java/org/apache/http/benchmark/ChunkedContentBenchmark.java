@@ -0,0 +1,106 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.localserver.LocalNIOTestServer;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.client.params.HttpAsyncClientParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the download of chunk coded and length delimited content with
+ * session buffers starting at the socket buffer size (a connection buffer
+ * size of <code>0</code>) and at the default
+ * {@link org.apache.http.nio.client.params.AsyncClientPNames#CONNECTION_BUFFER_SIZE
+ * connection buffer size}. Chunk coded content is always read through the
+ * session input buffer, so a small buffer means smaller reads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ChunkedContentBenchmark {
+
+    @Param({"0", "1024"})
+    public int bufferSize;
+
+    @Param({"65536", "1048576"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean chunked;
+
+    private LocalNIOTestServer server;
+    private DefaultHttpAsyncClient httpclient;
+    private String requestURI;
+
+    @Setup
+    public void setup() throws Exception {
+        this.server = new LocalNIOTestServer();
+        this.server.registerDefaultHandlers();
+        this.server.start();
+        InetSocketAddress address = this.server.getServiceAddress();
+        this.requestURI = "http://localhost:" + address.getPort() +
+            "/bytes/" + this.size + "?chunked=" + this.chunked;
+
+        this.httpclient = new DefaultHttpAsyncClient();
+        HttpAsyncClientParams.setConnectionBufferSize(this.httpclient.getParams(), this.bufferSize);
+        this.httpclient.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.httpclient.shutdown();
+        this.server.stop();
+    }
+
+    @Benchmark
+    public HttpResponse download() throws Exception {
+        return this.httpclient.execute(
+                HttpAsyncMethods.createGet(this.requestURI),
+                HttpAsyncMethods.createConsumer(), null).get();
+    }
+
+}
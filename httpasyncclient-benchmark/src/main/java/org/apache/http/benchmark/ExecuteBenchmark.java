@@ -0,0 +1,135 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.impl.nio.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.localserver.LocalNIOTestServer;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per request overhead of {@link DefaultHttpAsyncClient#execute}
+ * against the in-process non-blocking server, both for a single request
+ * at a time and for batches of concurrent requests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ExecuteBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"0", "1024", "65536"})
+    public int size;
+
+    private LocalNIOTestServer server;
+    private DefaultHttpAsyncClient httpclient;
+    private HttpHost target;
+    private String uri;
+
+    @Setup
+    public void setup() throws Exception {
+        this.server = new LocalNIOTestServer();
+        this.server.registerDefaultHandlers();
+        this.server.start();
+        InetSocketAddress address = this.server.getServiceAddress();
+        this.target = new HttpHost("localhost", address.getPort());
+        this.uri = "/bytes/" + this.size;
+
+        DefaultConnectingIOReactor ioreactor = new DefaultConnectingIOReactor(2, new BasicHttpParams());
+        PoolingClientConnectionManager connmgr = new PoolingClientConnectionManager(ioreactor);
+        connmgr.setDefaultMaxPerRoute(BATCH_SIZE);
+        connmgr.setMaxTotal(BATCH_SIZE);
+        this.httpclient = new DefaultHttpAsyncClient(connmgr);
+        this.httpclient.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.httpclient.shutdown();
+        this.server.stop();
+    }
+
+    @Benchmark
+    public int roundTrip() throws Exception {
+        HttpResponse response = this.httpclient.execute(
+                this.target, new HttpGet(this.uri), null).get();
+        return EntityUtils.toByteArray(response.getEntity()).length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void batch() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(BATCH_SIZE);
+        FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>() {
+
+            public void completed(final HttpResponse result) {
+                latch.countDown();
+            }
+
+            public void failed(final Exception ex) {
+                latch.countDown();
+            }
+
+            public void cancelled() {
+                latch.countDown();
+            }
+
+        };
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            this.httpclient.execute(this.target, new HttpGet(this.uri), callback);
+        }
+        latch.await();
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.impl.nio.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.localserver.LocalNIOTestServer;
+import org.apache.http.nio.client.params.HttpAsyncClientParams;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Measures the heap retained per idle pooled connection. A batch of
+ * concurrent requests opens the given number of connections, which are
+ * then left idle in the pool while the heap is measured. The measurement
+ * is taken once with session buffers starting at the socket buffer size
+ * and once with the default
+ * {@link org.apache.http.nio.client.params.AsyncClientPNames#CONNECTION_BUFFER_SIZE
+ * connection buffer size}.
+ * <pre>
+ * java -cp target/benchmarks.jar org.apache.http.benchmark.IdleConnectionFootprint \
+ *     [connections] [response size]
+ * </pre>
+ * Figures include the server side of each connection, which is the same
+ * in both runs. Each connection uses two file descriptors in this process.
+ */
+public class IdleConnectionFootprint {
+
+    private static long usedHeap() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // Repeat until a collection no longer frees anything
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(100);
+            long current = memory.getHeapMemoryUsage().getUsed();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    static long measure(
+            final LocalNIOTestServer server,
+            int connections,
+            int responseSize,
+            int bufferSize) throws Exception {
+        DefaultConnectingIOReactor ioreactor = new DefaultConnectingIOReactor(
+                Runtime.getRuntime().availableProcessors(), new BasicHttpParams());
+        PoolingClientConnectionManager connmgr = new PoolingClientConnectionManager(ioreactor);
+        connmgr.setMaxTotal(connections);
+        connmgr.setDefaultMaxPerRoute(connections);
+        DefaultHttpAsyncClient httpclient = new DefaultHttpAsyncClient(connmgr);
+        HttpAsyncClientParams.setConnectionBufferSize(httpclient.getParams(), bufferSize);
+        httpclient.start();
+        try {
+            HttpHost target = server.getServiceHost();
+            // Delay responses so that every request needs a connection of its own
+            String uri = "/bytes/" + responseSize + "?delay=1000";
+            httpclient.execute(target, new HttpGet(uri), null).get();
+            long before = usedHeap();
+            List<Future<HttpResponse>> futures = new ArrayList<Future<HttpResponse>>(connections);
+            for (int i = 0; i < connections; i++) {
+                futures.add(httpclient.execute(target, new HttpGet(uri), null));
+            }
+            for (Future<HttpResponse> future: futures) {
+                EntityUtils.consume(future.get().getEntity());
+            }
+            futures.clear();
+            long after = usedHeap();
+            int idle = connmgr.getTotalStats().getAvailable();
+            if (idle < connections) {
+                System.out.println("Only " + idle + " connections idle in the pool");
+            }
+            // The connection opened by the first request is part of the baseline
+            return (after - before) / (idle > 1 ? idle - 1 : 1);
+        } finally {
+            httpclient.shutdown();
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int responseSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+
+        HttpParams serverParams = new BasicHttpParams();
+        serverParams
+            .setIntParameter(CoreConnectionPNames.SO_TIMEOUT, 60000)
+            .setIntParameter(CoreConnectionPNames.SOCKET_BUFFER_SIZE, 8 * 1024)
+            .setBooleanParameter(CoreConnectionPNames.TCP_NODELAY, true);
+        LocalNIOTestServer server = new LocalNIOTestServer(
+                serverParams, Runtime.getRuntime().availableProcessors());
+        server.registerDefaultHandlers();
+        server.start();
+        try {
+            HttpParams defaults = new BasicHttpParams();
+            DefaultHttpAsyncClient.setDefaultHttpParams(defaults);
+            int socketBufferSize = HttpConnectionParams.getSocketBufferSize(defaults);
+            long full = measure(server, connections, responseSize, socketBufferSize);
+            long small = measure(server, connections, responseSize,
+                    HttpAsyncClientParams.getConnectionBufferSize(defaults));
+            System.out.println("Idle connections:                        " + connections);
+            System.out.println("Bytes per idle connection (" + socketBufferSize + " byte buffers): " + full);
+            System.out.println("Bytes per idle connection (default buffers): " + small);
+        } finally {
+            server.stop();
+        }
+    }
+
+}
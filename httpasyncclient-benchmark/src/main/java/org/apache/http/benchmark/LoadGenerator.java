@@ -0,0 +1,273 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.impl.nio.client.HistogramSnapshot;
+import org.apache.http.impl.nio.client.HttpAsyncClientMonitor;
+import org.apache.http.impl.nio.client.LatencyHistogram;
+import org.apache.http.impl.nio.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.localserver.LocalNIOTestServer;
+import org.apache.http.nio.client.params.HttpAsyncClientParams;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Open-loop load generator. Requests are issued at a fixed arrival rate
+ * regardless of how fast responses come back, and response times are
+ * measured from the time a request was <i>intended</i> to be sent. A
+ * stalled client or server therefore shows up in the percentiles instead
+ * of silently lowering the request rate (coordinated omission).
+ * <p>
+ * Requests that fail, and requests dropped because too many are
+ * outstanding, are counted as errors that rank above every response time:
+ * response time percentiles are taken over all intended requests, and
+ * those falling among the errors are reported as such instead of being
+ * computed from the successful requests only.
+ * <p>
+ * Service times, measured from the time a request was actually handed
+ * over to the client, are recorded separately. Once a second the
+ * generator samples pool and I/O reactor saturation.
+ * <pre>
+ * java -cp target/benchmarks.jar org.apache.http.benchmark.LoadGenerator \
+ *     [uri|-] [requests per second] [seconds] [max connections]
+ * </pre>
+ * If no URI is given (or <code>-</code>), an in-process
+ * {@link LocalNIOTestServer} is started and <code>/bytes/1024</code>
+ * requested.
+ */
+public class LoadGenerator {
+
+    private final DefaultHttpAsyncClient httpclient;
+    private final PoolingClientConnectionManager connmgr;
+    private final HttpAsyncClientMonitor monitor;
+    private final HttpHost target;
+    private final String path;
+    private final int maxOutstanding;
+
+    private final LatencyHistogram responseTimes;
+    private final LatencyHistogram serviceTimes;
+    private final AtomicInteger outstanding;
+    private final AtomicLong completed;
+    private final AtomicLong failed;
+
+    private long dropped;
+    private int maxInFlight;
+    private int maxLeaseQueue;
+    private long maxDispatchLatency;
+
+    public LoadGenerator(
+            final DefaultHttpAsyncClient httpclient,
+            final PoolingClientConnectionManager connmgr,
+            final HttpHost target,
+            final String path,
+            int maxOutstanding) {
+        super();
+        this.httpclient = httpclient;
+        this.connmgr = connmgr;
+        this.monitor = new HttpAsyncClientMonitor(httpclient, 0);
+        this.target = target;
+        this.path = path;
+        this.maxOutstanding = maxOutstanding;
+        this.responseTimes = new LatencyHistogram();
+        this.serviceTimes = new LatencyHistogram();
+        this.outstanding = new AtomicInteger();
+        this.completed = new AtomicLong();
+        this.failed = new AtomicLong();
+    }
+
+    class Exchange implements FutureCallback<HttpResponse> {
+
+        private final long intendedTime;
+        private final long sendTime;
+
+        Exchange(long intendedTime, long sendTime) {
+            super();
+            this.intendedTime = intendedTime;
+            this.sendTime = sendTime;
+        }
+
+        public void completed(final HttpResponse response) {
+            long now = System.nanoTime();
+            responseTimes.record(now - this.intendedTime);
+            serviceTimes.record(now - this.sendTime);
+            completed.incrementAndGet();
+            outstanding.decrementAndGet();
+        }
+
+        public void failed(final Exception ex) {
+            failed.incrementAndGet();
+            outstanding.decrementAndGet();
+        }
+
+        public void cancelled() {
+            failed.incrementAndGet();
+            outstanding.decrementAndGet();
+        }
+
+    }
+
+    /**
+     * Issues requests at the given rate for the given duration, then waits
+     * for outstanding requests to complete.
+     */
+    public void run(int rate, long duration, final TimeUnit tunit) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + tunit.toNanos(duration);
+        long nextSample = start + TimeUnit.SECONDS.toNanos(1);
+        for (long i = 0; ; i++) {
+            long intendedTime = start + i * interval;
+            if (intendedTime >= end) {
+                break;
+            }
+            long now = System.nanoTime();
+            while (now < intendedTime) {
+                LockSupport.parkNanos(intendedTime - now);
+                now = System.nanoTime();
+            }
+            if (now >= nextSample) {
+                sample();
+                nextSample += TimeUnit.SECONDS.toNanos(1);
+            }
+            if (this.outstanding.get() >= this.maxOutstanding) {
+                // The client cannot keep up; do not let the backlog grow without bound
+                this.dropped++;
+                continue;
+            }
+            this.outstanding.incrementAndGet();
+            this.httpclient.execute(this.target, new HttpGet(this.path),
+                    new Exchange(intendedTime, now));
+        }
+        long deadline = System.currentTimeMillis() + 30000;
+        while (this.outstanding.get() > 0 && System.currentTimeMillis() < deadline) {
+            sample();
+            Thread.sleep(100);
+        }
+    }
+
+    private void sample() {
+        this.maxInFlight = Math.max(this.maxInFlight, this.monitor.getInFlightExchanges());
+        PoolStats stats = this.connmgr.getTotalStats();
+        this.maxLeaseQueue = Math.max(this.maxLeaseQueue, stats.getPending());
+        this.maxDispatchLatency = Math.max(this.maxDispatchLatency, this.monitor.getMaxDispatchLatency());
+    }
+
+    public void report(int rate, long seconds) {
+        HistogramSnapshot response = this.responseTimes.getSnapshot();
+        HistogramSnapshot service = this.serviceTimes.getSnapshot();
+        System.out.println("Target rate:        " + rate + " req/s");
+        System.out.println("Achieved rate:      " + (this.completed.get() / seconds) + " req/s");
+        System.out.println("Completed:          " + this.completed.get());
+        System.out.println("Failed:             " + this.failed.get());
+        System.out.println("Dropped:            " + this.dropped);
+        long successes = this.completed.get();
+        long total = successes + this.failed.get() + this.dropped;
+        if (total > 0) {
+            System.out.println(String.format("Error rate:         %.4f%%",
+                    (total - successes) * 100.0 / total));
+        }
+        System.out.println();
+        System.out.println("Percentile   response time (us)   service time (us)");
+        double[] quantiles = new double[] { 0.5, 0.9, 0.99, 0.999, 0.9999, 1.0 };
+        for (double q : quantiles) {
+            // Errors rank above all response times, so the percentile over
+            // all intended requests maps to a higher one over the successes
+            double rank = successes > 0 ? q * total / successes : 2.0;
+            String responseTime = rank <= 1.0
+                    ? Long.toString(response.getPercentile(rank, TimeUnit.MICROSECONDS))
+                    : "error";
+            System.out.println(String.format("%10.4f   %18s   %17d", q * 100,
+                    responseTime,
+                    service.getPercentile(q, TimeUnit.MICROSECONDS)));
+        }
+        System.out.println();
+        System.out.println("Max in-flight exchanges:      " + this.maxInFlight);
+        System.out.println("Max lease queue length:       " + this.maxLeaseQueue);
+        System.out.println("Max dispatch latency (us):    " + this.maxDispatchLatency);
+        System.out.println("Reactor stalls:               " + this.monitor.getStallCount());
+    }
+
+    public static void main(final String[] args) throws Exception {
+        String uri = args.length > 0 ? args[0] : "-";
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+
+        LocalNIOTestServer server = null;
+        HttpHost target;
+        String path;
+        if (uri.equals("-")) {
+            server = new LocalNIOTestServer();
+            server.registerDefaultHandlers();
+            server.start();
+            InetSocketAddress address = server.getServiceAddress();
+            target = new HttpHost("localhost", address.getPort());
+            path = "/bytes/1024";
+        } else {
+            URI requestURI = new URI(uri);
+            target = new HttpHost(requestURI.getHost(), requestURI.getPort(), requestURI.getScheme());
+            path = requestURI.getRawPath();
+            if (requestURI.getRawQuery() != null) {
+                path += "?" + requestURI.getRawQuery();
+            }
+        }
+
+        DefaultConnectingIOReactor ioreactor = new DefaultConnectingIOReactor(
+                Runtime.getRuntime().availableProcessors(), new BasicHttpParams());
+        PoolingClientConnectionManager connmgr = new PoolingClientConnectionManager(ioreactor);
+        connmgr.setMaxTotal(connections);
+        connmgr.setDefaultMaxPerRoute(connections);
+        DefaultHttpAsyncClient httpclient = new DefaultHttpAsyncClient(connmgr);
+        HttpAsyncClientParams.setStallThreshold(httpclient.getParams(), 2000);
+        httpclient.start();
+        try {
+            LoadGenerator generator = new LoadGenerator(
+                    httpclient, connmgr, target, path, connections * 100);
+            generator.run(rate, seconds, TimeUnit.SECONDS);
+            generator.report(rate, seconds);
+        } finally {
+            httpclient.shutdown();
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.impl.nio.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.localserver.LocalNIOTestServer;
+import org.apache.http.nio.conn.ManagedClientConnection;
+import org.apache.http.params.BasicHttpParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures leasing and releasing pooled connections under contention.
+ * Connections are opened once and then reused, so the benchmark isolates
+ * the pool bookkeeping from connection establishment. With fewer
+ * connections per route than threads, lease requests have to queue.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(8)
+@State(Scope.Benchmark)
+public class PoolBenchmark {
+
+    @Param({"2", "8"})
+    public int maxPerRoute;
+
+    private LocalNIOTestServer server;
+    private DefaultHttpAsyncClient httpclient;
+    private PoolingClientConnectionManager connmgr;
+    private HttpRoute route;
+
+    @Setup
+    public void setup() throws Exception {
+        this.server = new LocalNIOTestServer();
+        this.server.registerDefaultHandlers();
+        this.server.start();
+        InetSocketAddress address = this.server.getServiceAddress();
+        this.route = new HttpRoute(new HttpHost("localhost", address.getPort()));
+
+        DefaultConnectingIOReactor ioreactor = new DefaultConnectingIOReactor(2, new BasicHttpParams());
+        this.connmgr = new PoolingClientConnectionManager(ioreactor);
+        this.connmgr.setDefaultMaxPerRoute(this.maxPerRoute);
+        this.connmgr.setMaxTotal(this.maxPerRoute);
+        // The client runs the I/O reactor of the connection manager
+        this.httpclient = new DefaultHttpAsyncClient(this.connmgr);
+        this.httpclient.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.httpclient.shutdown();
+        this.server.stop();
+    }
+
+    @Benchmark
+    public void leaseRelease() throws Exception {
+        ManagedClientConnection conn = this.connmgr.leaseConnection(
+                this.route, null, 5, TimeUnit.SECONDS, null).get();
+        conn.markReusable();
+        this.connmgr.releaseConnection(conn, 60, TimeUnit.SECONDS);
+    }
+
+}
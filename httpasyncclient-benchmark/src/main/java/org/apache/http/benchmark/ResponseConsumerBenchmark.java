@@ -0,0 +1,201 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.AsyncCharConsumer;
+import org.apache.http.nio.client.methods.BasicHttpAsyncResponseConsumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the response consumers on in-memory content, isolating
+ * buffering and character decoding from I/O.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ResponseConsumerBenchmark {
+
+    static class CountingCharConsumer extends AsyncCharConsumer<Long> {
+
+        private long count;
+
+        CountingCharConsumer() {
+            super();
+        }
+
+        @Override
+        protected void onResponseReceived(final HttpResponse response) {
+        }
+
+        @Override
+        protected void onCharReceived(
+                final CharBuffer buf, final IOControl ioctrl) throws IOException {
+            this.count += buf.remaining();
+            buf.position(buf.limit());
+        }
+
+        @Override
+        protected void onCleanup() {
+        }
+
+        @Override
+        protected Long buildResult() {
+            return Long.valueOf(this.count);
+        }
+
+    }
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({"US-ASCII", "UTF-8"})
+    public String charset;
+
+    private byte[] content;
+    private ByteArrayContentDecoder decoder;
+
+    @Setup
+    public void setup() throws Exception {
+        // Mostly ASCII content; the UTF-8 variant contains multi-byte characters
+        StringBuilder buffer = new StringBuilder(this.size);
+        for (int i = 0; buffer.length() < this.size; i++) {
+            if ("UTF-8".equals(this.charset) && i % 64 == 63) {
+                buffer.append('\u00e9');
+            } else {
+                buffer.append((char) ('a' + i % 26));
+            }
+        }
+        this.content = buffer.toString().getBytes(this.charset);
+        this.decoder = new ByteArrayContentDecoder(this.content, 8 * 1024);
+    }
+
+    private HttpResponse createResponse(long contentLength) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContentLength(contentLength);
+        entity.setContentType("text/plain; charset=" + this.charset);
+        response.setEntity(entity);
+        return response;
+    }
+
+    @Benchmark
+    public HttpResponse basicConsumer() throws Exception {
+        this.decoder.reset();
+        BasicHttpAsyncResponseConsumer consumer = new BasicHttpAsyncResponseConsumer();
+        consumer.responseReceived(createResponse(this.content.length));
+        while (!this.decoder.isCompleted()) {
+            consumer.consumeContent(this.decoder, ByteArrayContentDecoder.NO_IO_CONTROL);
+        }
+        consumer.responseCompleted();
+        return consumer.getResult();
+    }
+
+    @Benchmark
+    public HttpResponse basicConsumerUnknownLength() throws Exception {
+        this.decoder.reset();
+        BasicHttpAsyncResponseConsumer consumer = new BasicHttpAsyncResponseConsumer();
+        consumer.responseReceived(createResponse(-1));
+        while (!this.decoder.isCompleted()) {
+            consumer.consumeContent(this.decoder, ByteArrayContentDecoder.NO_IO_CONTROL);
+        }
+        consumer.responseCompleted();
+        return consumer.getResult();
+    }
+
+    @Benchmark
+    public Long charConsumer() throws Exception {
+        this.decoder.reset();
+        CountingCharConsumer consumer = new CountingCharConsumer();
+        consumer.responseReceived(createResponse(this.content.length));
+        while (!this.decoder.isCompleted()) {
+            consumer.consumeContent(this.decoder, ByteArrayContentDecoder.NO_IO_CONTROL);
+        }
+        consumer.responseCompleted();
+        return consumer.getResult();
+    }
+
+    /**
+     * Baseline for {@link #charConsumer()}: decodes the same content with
+     * a generic {@link CharsetDecoder}, the way
+     * {@link AsyncCharConsumer} handles charsets without a fast path.
+     */
+    @Benchmark
+    public long charsetDecoder() throws Exception {
+        this.decoder.reset();
+        CharsetDecoder chardecoder = Charset.forName(this.charset).newDecoder();
+        ByteBuffer bbuf = ByteBuffer.allocate(8 * 1024);
+        CharBuffer cbuf = CharBuffer.allocate(8 * 1024);
+        long count = 0;
+        for (;;) {
+            int bytesRead = this.decoder.read(bbuf);
+            if (bytesRead <= 0) {
+                break;
+            }
+            bbuf.flip();
+            boolean completed = this.decoder.isCompleted();
+            CoderResult result = chardecoder.decode(bbuf, cbuf, completed);
+            if (result.isError()) {
+                result.throwException();
+            }
+            bbuf.compact();
+            if (completed) {
+                chardecoder.flush(cbuf);
+            }
+            cbuf.flip();
+            count += cbuf.remaining();
+            cbuf.clear();
+        }
+        return count;
+    }
+
+}
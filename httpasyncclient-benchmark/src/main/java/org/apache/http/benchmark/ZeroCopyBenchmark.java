@@ -0,0 +1,137 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.localserver.LocalNIOTestServer;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.client.methods.ZeroCopyConsumer;
+import org.apache.http.nio.client.methods.ZeroCopyPost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures file upload with {@link ZeroCopyPost} and file download with
+ * {@link ZeroCopyConsumer} against the in-process non-blocking server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ZeroCopyBenchmark {
+
+    static class FileConsumer extends ZeroCopyConsumer<Long> {
+
+        FileConsumer(final File file) {
+            super(file);
+        }
+
+        @Override
+        protected Long process(final HttpResponse response, final File file) {
+            return Long.valueOf(file.length());
+        }
+
+    }
+
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    private LocalNIOTestServer server;
+    private DefaultHttpAsyncClient httpclient;
+    private String baseURI;
+    private File upload;
+    private File download;
+
+    @Setup
+    public void setup() throws Exception {
+        this.server = new LocalNIOTestServer();
+        this.server.registerDefaultHandlers();
+        this.server.start();
+        InetSocketAddress address = this.server.getServiceAddress();
+        this.baseURI = "http://localhost:" + address.getPort();
+
+        this.upload = File.createTempFile("upload", ".bin");
+        this.upload.deleteOnExit();
+        byte[] chunk = new byte[8 * 1024];
+        FileOutputStream outstream = new FileOutputStream(this.upload);
+        try {
+            for (int i = 0; i < this.size; i += chunk.length) {
+                outstream.write(chunk, 0, Math.min(chunk.length, this.size - i));
+            }
+        } finally {
+            outstream.close();
+        }
+        this.download = File.createTempFile("download", ".bin");
+        this.download.deleteOnExit();
+
+        this.httpclient = new DefaultHttpAsyncClient();
+        this.httpclient.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.httpclient.shutdown();
+        this.server.stop();
+        this.upload.delete();
+        this.download.delete();
+    }
+
+    @Benchmark
+    public HttpResponse upload() throws Exception {
+        ZeroCopyPost httppost = new ZeroCopyPost(
+                this.baseURI + "/bytes/16", this.upload, ContentType.create("application/octet-stream", null));
+        return this.httpclient.execute(
+                httppost, HttpAsyncMethods.createConsumer(), null).get();
+    }
+
+    @Benchmark
+    public Long download() throws Exception {
+        return this.httpclient.execute(
+                HttpAsyncMethods.createGet(this.baseURI + "/bytes/" + this.size),
+                new FileConsumer(this.download), null).get();
+    }
+
+}
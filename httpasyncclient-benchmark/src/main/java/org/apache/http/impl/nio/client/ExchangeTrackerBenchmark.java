@@ -0,0 +1,157 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.client.ExchangeListener;
+import org.apache.http.nio.client.ExchangePhase;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of exchange lifecycle reporting for the sequence of
+ * events emitted by a typical exchange over a pooled connection. With
+ * no listener registered the cost is expected to be indistinguishable
+ * from the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ExchangeTrackerBenchmark {
+
+    static class NoopExchangeListener implements ExchangeListener {
+
+        public void exchangeStarted(
+                final HttpRoute route, final HttpRequest request,
+                final HttpContext context, long nanoTime) {
+        }
+
+        public void phaseStarted(
+                final ExchangePhase phase, final HttpRoute route,
+                final HttpContext context, long nanoTime) {
+        }
+
+        public void phaseCompleted(
+                final ExchangePhase phase, final HttpRoute route,
+                final HttpContext context, long nanoTime) {
+        }
+
+        public void exchangeCompleted(
+                final HttpRoute route, final HttpResponse response,
+                final HttpContext context, long nanoTime) {
+        }
+
+        public void exchangeFailed(
+                final HttpRoute route, final Exception ex,
+                final HttpContext context, long nanoTime) {
+        }
+
+        public void exchangeCancelled(
+                final HttpRoute route, final HttpContext context, long nanoTime) {
+        }
+
+    }
+
+    @Param({"none", "noop"})
+    public String listenerType;
+
+    private ExchangeListener listener;
+    private HttpContext context;
+    private HttpRoute route;
+    private HttpRequest request;
+    private HttpResponse response;
+
+    @Setup
+    public void setup() {
+        this.listener = "noop".equals(this.listenerType) ? new NoopExchangeListener() : null;
+        this.context = new BasicHttpContext();
+        this.route = new HttpRoute(new HttpHost("localhost", 8080));
+        this.request = new BasicHttpRequest("GET", "/");
+        this.response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    }
+
+    @Benchmark
+    public Object baseline() {
+        return this.response;
+    }
+
+    @Benchmark
+    public Object exchange() {
+        // Mirrors the calls made by DefaultAsyncRequestDirector
+        ExchangeTracker tracker = null;
+        if (this.listener != null) {
+            tracker = new ExchangeTracker(this.listener, this.context);
+            tracker.exchangeStarted(this.route, this.request);
+        }
+        if (tracker != null) {
+            tracker.setRoute(this.route);
+            tracker.phaseStarted(ExchangePhase.POOL_WAIT);
+        }
+        if (tracker != null) {
+            tracker.phaseCompleted(ExchangePhase.POOL_WAIT);
+        }
+        if (tracker != null) {
+            tracker.phaseStarted(ExchangePhase.REQUEST_WRITE);
+        }
+        if (tracker != null) {
+            tracker.phaseStarted(ExchangePhase.RESPONSE_WAIT);
+        }
+        if (tracker != null) {
+            tracker.phaseStarted(ExchangePhase.RESPONSE_BODY);
+        }
+        if (tracker != null) {
+            tracker.phaseCompleted(ExchangePhase.RESPONSE_BODY);
+        }
+        if (tracker != null) {
+            tracker.exchangeCompleted(this.response);
+        }
+        return tracker != null ? tracker : this.response;
+    }
+
+}
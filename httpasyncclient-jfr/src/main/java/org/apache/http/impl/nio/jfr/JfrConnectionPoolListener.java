@@ -0,0 +1,80 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.jfr;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.nio.conn.ConnectionPoolListener;
+
+/**
+ * {@link ConnectionPoolListener} emitting Java Flight Recorder events for
+ * connections being opened, leased, released and closed.
+ */
+public class JfrConnectionPoolListener implements ConnectionPoolListener {
+
+    public void connectionOpened(
+            final HttpRoute route, final String id,
+            long lookupStart, long lookupEnd, long connectEnd) {
+        ConnectionOpenEvent event = new ConnectionOpenEvent();
+        if (event.isEnabled()) {
+            event.route = String.valueOf(route);
+            event.connectionId = id;
+            event.lookupTime = lookupEnd - lookupStart;
+            event.connectTime = connectEnd - lookupEnd;
+            event.commit();
+        }
+    }
+
+    public void connectionLeased(final HttpRoute route, final String id, long nanoTime) {
+        ConnectionLeaseEvent event = new ConnectionLeaseEvent();
+        if (event.isEnabled()) {
+            event.route = String.valueOf(route);
+            event.connectionId = id;
+            event.commit();
+        }
+    }
+
+    public void connectionReleased(
+            final HttpRoute route, final String id, boolean reusable, long nanoTime) {
+        ConnectionReleaseEvent event = new ConnectionReleaseEvent();
+        if (event.isEnabled()) {
+            event.route = String.valueOf(route);
+            event.connectionId = id;
+            event.reusable = reusable;
+            event.commit();
+        }
+    }
+
+    public void connectionClosed(final HttpRoute route, final String id, long nanoTime) {
+        ConnectionCloseEvent event = new ConnectionCloseEvent();
+        if (event.isEnabled()) {
+            event.route = String.valueOf(route);
+            event.connectionId = id;
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.jfr;
+
+import jdk.jfr.Event;
+
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.nio.NHttpConnection;
+import org.apache.http.nio.client.ExchangeListener;
+import org.apache.http.nio.client.ExchangePhase;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * {@link ExchangeListener} emitting Java Flight Recorder events for HTTP
+ * exchanges, pool waits and TLS handshakes. Events are only created if
+ * they are enabled in the running recording, so the listener costs little
+ * more than a disabled event check when no recording is active.
+ * <pre>
+ * httpclient.setExchangeListener(new JfrExchangeListener());
+ * connmgr.setConnectionPoolListener(new JfrConnectionPoolListener());
+ * </pre>
+ * Use a {@link org.apache.http.impl.nio.client.CompositeExchangeListener}
+ * to emit events while also collecting metrics with an
+ * {@link org.apache.http.impl.nio.client.ExchangeMetricsRegistry}.
+ */
+public class JfrExchangeListener implements ExchangeListener {
+
+    private static final String EXCHANGE_EVENT = "http.nio.jfr.exchange";
+    private static final String POOL_WAIT_EVENT = "http.nio.jfr.pool-wait";
+    private static final String TLS_HANDSHAKE_EVENT = "http.nio.jfr.tls-handshake";
+    private static final String CONNECTION_BASELINE = "http.nio.jfr.baseline";
+
+    public void exchangeStarted(
+            final HttpRoute route, final HttpRequest request,
+            final HttpContext context, long nanoTime) {
+        ExchangeEvent event = new ExchangeEvent();
+        if (!event.isEnabled() || context == null) {
+            return;
+        }
+        event.begin();
+        event.route = String.valueOf(route);
+        if (request != null) {
+            event.method = request.getRequestLine().getMethod();
+            event.uri = request.getRequestLine().getUri();
+        }
+        context.setAttribute(EXCHANGE_EVENT, event);
+    }
+
+    public void phaseStarted(
+            final ExchangePhase phase, final HttpRoute route,
+            final HttpContext context, long nanoTime) {
+        if (context == null) {
+            return;
+        }
+        switch (phase) {
+        case POOL_WAIT:
+            PoolWaitEvent poolWait = new PoolWaitEvent();
+            if (poolWait.isEnabled()) {
+                poolWait.begin();
+                poolWait.route = String.valueOf(route);
+                context.setAttribute(POOL_WAIT_EVENT, poolWait);
+            }
+            break;
+        case TLS_HANDSHAKE:
+            TlsHandshakeEvent handshake = new TlsHandshakeEvent();
+            if (handshake.isEnabled()) {
+                handshake.begin();
+                handshake.route = String.valueOf(route);
+                context.setAttribute(TLS_HANDSHAKE_EVENT, handshake);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    public void phaseCompleted(
+            final ExchangePhase phase, final HttpRoute route,
+            final HttpContext context, long nanoTime) {
+        if (context == null) {
+            return;
+        }
+        Object event = null;
+        switch (phase) {
+        case POOL_WAIT:
+            event = context.removeAttribute(POOL_WAIT_EVENT);
+            break;
+        case TLS_HANDSHAKE:
+            event = context.removeAttribute(TLS_HANDSHAKE_EVENT);
+            break;
+        default:
+            break;
+        }
+        if (event != null) {
+            ((Event) event).commit();
+        }
+    }
+
+    private static ExchangeEvent endExchange(final HttpContext context) {
+        if (context == null) {
+            return null;
+        }
+        ExchangeEvent event = (ExchangeEvent) context.removeAttribute(EXCHANGE_EVENT);
+        if (event == null) {
+            return null;
+        }
+        event.end();
+        return event.shouldCommit() ? event : null;
+    }
+
+    private static void updateTransferred(final ExchangeEvent event, final HttpContext context) {
+        Object conn = context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+        if (!(conn instanceof NHttpConnection)) {
+            return;
+        }
+        NHttpConnection nconn = (NHttpConnection) conn;
+        HttpConnectionMetrics metrics;
+        HttpContext connContext;
+        try {
+            metrics = nconn.getMetrics();
+            connContext = nconn.getContext();
+        } catch (RuntimeException ex) {
+            // Connection already released
+            return;
+        }
+        long sent = metrics.getSentBytesCount();
+        long received = metrics.getReceivedBytesCount();
+        long[] baseline = (long[]) connContext.getAttribute(CONNECTION_BASELINE);
+        if (baseline == null) {
+            baseline = new long[2];
+            connContext.setAttribute(CONNECTION_BASELINE, baseline);
+        }
+        event.bytesSent = sent - baseline[0];
+        event.bytesReceived = received - baseline[1];
+        baseline[0] = sent;
+        baseline[1] = received;
+    }
+
+    public void exchangeCompleted(
+            final HttpRoute route, final HttpResponse response,
+            final HttpContext context, long nanoTime) {
+        ExchangeEvent event = endExchange(context);
+        if (event != null) {
+            event.outcome = "completed";
+            if (response != null) {
+                event.status = response.getStatusLine().getStatusCode();
+            }
+            updateTransferred(event, context);
+            event.commit();
+        }
+    }
+
+    public void exchangeFailed(
+            final HttpRoute route, final Exception ex,
+            final HttpContext context, long nanoTime) {
+        ExchangeEvent event = endExchange(context);
+        if (event != null) {
+            event.outcome = "failed";
+            event.error = String.valueOf(ex);
+            updateTransferred(event, context);
+            event.commit();
+        }
+    }
+
+    public void exchangeCancelled(
+            final HttpRoute route, final HttpContext context, long nanoTime) {
+        ExchangeEvent event = endExchange(context);
+        if (event != null) {
+            event.outcome = "cancelled";
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.jfr;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Flight recorder event test cases.
+ */
+public class TestJfrEvents extends AsyncHttpTestBase {
+
+    @Test
+    public void testExchangeEvents() throws Exception {
+        this.httpclient.setExchangeListener(new JfrExchangeListener());
+        this.sessionManager.setConnectionPoolListener(new JfrConnectionPoolListener());
+
+        File file = File.createTempFile("httpasyncclient", ".jfr");
+        file.deleteOnExit();
+        Recording recording = new Recording();
+        try {
+            recording.enable(ExchangeEvent.class);
+            recording.enable(PoolWaitEvent.class);
+            recording.enable(ConnectionOpenEvent.class);
+            recording.enable(ConnectionLeaseEvent.class);
+            recording.enable(ConnectionReleaseEvent.class);
+            recording.start();
+
+            Future<HttpResponse> future = this.httpclient.execute(
+                    this.target, new HttpGet("/random/2048"), null);
+            HttpResponse response = future.get();
+            Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+            // Wait for the connection to be released
+            Thread.sleep(200);
+
+            recording.stop();
+            recording.dump(file.toPath());
+        } finally {
+            recording.close();
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+        Map<String, RecordedEvent> byName = new HashMap<String, RecordedEvent>();
+        for (RecordedEvent event: events) {
+            byName.put(event.getEventType().getName(), event);
+        }
+        RecordedEvent exchange = byName.get("org.apache.http.nio.Exchange");
+        Assert.assertNotNull(exchange);
+        Assert.assertEquals(HttpStatus.SC_OK, exchange.getInt("status"));
+        Assert.assertEquals("GET", exchange.getString("method"));
+        Assert.assertEquals("completed", exchange.getString("outcome"));
+        Assert.assertTrue(exchange.getLong("bytesReceived") >= 2048);
+        Assert.assertTrue(exchange.getDuration().toNanos() > 0);
+        Assert.assertNotNull(byName.get("org.apache.http.nio.PoolWait"));
+        Assert.assertNotNull(byName.get("org.apache.http.nio.ConnectionOpen"));
+        Assert.assertNotNull(byName.get("org.apache.http.nio.ConnectionLease"));
+        Assert.assertNotNull(byName.get("org.apache.http.nio.ConnectionRelease"));
+    }
+
+    @Test
+    public void testNoRecording() throws Exception {
+        this.httpclient.setExchangeListener(new JfrExchangeListener());
+        Future<HttpResponse> future = this.httpclient.execute(
+                this.target, new HttpGet("/random/100"), null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+    }
+
+}
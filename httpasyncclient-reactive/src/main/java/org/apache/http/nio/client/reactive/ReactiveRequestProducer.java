@@ -0,0 +1,280 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.reactive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.HttpAsyncRequestProducer;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Request producer that streams the request content from a Reactive
+ * Streams {@link Publisher} of {@link ByteBuffer}s. The publisher is
+ * subscribed to once the connection is ready to send content.
+ * <p>
+ * At most a given number of buffers is requested ahead of the connection;
+ * further buffers are requested as earlier ones are written out. While
+ * no content is available output is suspended. The buffers must not be
+ * modified by the publisher once they have been passed on.
+ * <p>
+ * Content is sent chunk coded unless its length is given up front, in
+ * which case the request fails if the publisher completes short of it. The
+ * request cannot be repeated.
+ */
+public class ReactiveRequestProducer implements HttpAsyncRequestProducer {
+
+    private final HttpHost target;
+    private final HttpEntityEnclosingRequest request;
+    private final Publisher<ByteBuffer> publisher;
+    private final ContentType contentType;
+    private final long contentLength;
+    private final int window;
+    private final ContentSubscriber subscriber;
+
+    private final LinkedList<ByteBuffer> queue;
+    private long sent;
+    private Subscription subscription;
+    private boolean subscribed;
+    private boolean completed;
+    private Throwable error;
+    private boolean closed;
+    private IOControl ioctrl;
+    private boolean outputSuspended;
+
+    public ReactiveRequestProducer(
+            final HttpHost target,
+            final HttpEntityEnclosingRequest request,
+            final Publisher<ByteBuffer> publisher,
+            final ContentType contentType,
+            long contentLength,
+            int window) {
+        super();
+        if (target == null) {
+            throw new IllegalArgumentException("HTTP host may not be null");
+        }
+        if (request == null) {
+            throw new IllegalArgumentException("HTTP request may not be null");
+        }
+        if (publisher == null) {
+            throw new IllegalArgumentException("Content publisher may not be null");
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window size may not be negative or zero");
+        }
+        this.target = target;
+        this.request = request;
+        this.publisher = publisher;
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+        this.window = window;
+        this.subscriber = new ContentSubscriber();
+        this.queue = new LinkedList<ByteBuffer>();
+    }
+
+    public ReactiveRequestProducer(
+            final HttpHost target,
+            final HttpEntityEnclosingRequest request,
+            final Publisher<ByteBuffer> publisher,
+            final ContentType contentType) {
+        this(target, request, publisher, contentType, -1, 4);
+    }
+
+    Subscriber<ByteBuffer> getSubscriber() {
+        return this.subscriber;
+    }
+
+    public HttpHost getTarget() {
+        return this.target;
+    }
+
+    public HttpRequest generateRequest() throws IOException, HttpException {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        if (this.contentLength >= 0) {
+            entity.setChunked(false);
+            entity.setContentLength(this.contentLength);
+        } else {
+            entity.setChunked(true);
+            entity.setContentLength(-1);
+        }
+        if (this.contentType != null) {
+            entity.setContentType(this.contentType.toString());
+        }
+        this.request.setEntity(entity);
+        return this.request;
+    }
+
+    public void produceContent(
+            final ContentEncoder encoder, final IOControl ioctrl) throws IOException {
+        boolean subscribeNow = false;
+        synchronized (this) {
+            this.ioctrl = ioctrl;
+            if (!this.subscribed) {
+                this.subscribed = true;
+                subscribeNow = true;
+            }
+        }
+        if (subscribeNow) {
+            this.publisher.subscribe(this.subscriber);
+        }
+        int written = 0;
+        Subscription s;
+        synchronized (this) {
+            while (!this.queue.isEmpty()) {
+                ByteBuffer buf = this.queue.getFirst();
+                this.sent += encoder.write(buf);
+                if (buf.hasRemaining()) {
+                    if (encoder.isCompleted()) {
+                        throw new IOException("Content exceeds the declared content length");
+                    }
+                    break;
+                }
+                this.queue.removeFirst();
+                written++;
+            }
+            if (this.queue.isEmpty()) {
+                if (this.error != null) {
+                    IOException ex = new IOException("Content publisher failed");
+                    ex.initCause(this.error);
+                    throw ex;
+                }
+                if (this.completed) {
+                    if (!encoder.isCompleted()) {
+                        if (this.contentLength >= 0 && this.sent < this.contentLength) {
+                            throw new IOException("Content is shorter than the declared content length");
+                        }
+                        encoder.complete();
+                    }
+                } else if (!encoder.isCompleted()) {
+                    this.outputSuspended = true;
+                    ioctrl.suspendOutput();
+                }
+            }
+            s = this.subscription;
+        }
+        if (written > 0 && s != null) {
+            s.request(written);
+        }
+    }
+
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    /**
+     * Cancels the subscription unless the publisher has already completed
+     * and discards content not written out yet.
+     */
+    public void resetRequest() {
+        Subscription s = null;
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            if (!this.completed && this.error == null) {
+                s = this.subscription;
+            }
+            this.queue.clear();
+            this.ioctrl = null;
+        }
+        if (s != null) {
+            s.cancel();
+        }
+    }
+
+    private void resumeOutput() {
+        if (this.outputSuspended && this.ioctrl != null) {
+            this.outputSuspended = false;
+            this.ioctrl.requestOutput();
+        }
+    }
+
+    class ContentSubscriber implements Subscriber<ByteBuffer> {
+
+        public void onSubscribe(final Subscription subscription) {
+            if (subscription == null) {
+                throw new NullPointerException("Subscription may not be null");
+            }
+            boolean accept;
+            synchronized (ReactiveRequestProducer.this) {
+                accept = ReactiveRequestProducer.this.subscription == null && !closed;
+                if (accept) {
+                    ReactiveRequestProducer.this.subscription = subscription;
+                }
+            }
+            if (accept) {
+                subscription.request(window);
+            } else {
+                subscription.cancel();
+            }
+        }
+
+        public void onNext(final ByteBuffer buf) {
+            if (buf == null) {
+                throw new NullPointerException("Content buffer may not be null");
+            }
+            synchronized (ReactiveRequestProducer.this) {
+                if (closed) {
+                    return;
+                }
+                queue.add(buf);
+                resumeOutput();
+            }
+        }
+
+        public void onError(final Throwable t) {
+            if (t == null) {
+                throw new NullPointerException("Throwable may not be null");
+            }
+            synchronized (ReactiveRequestProducer.this) {
+                error = t;
+                resumeOutput();
+            }
+        }
+
+        public void onComplete() {
+            synchronized (ReactiveRequestProducer.this) {
+                completed = true;
+                resumeOutput();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,302 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.reactive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.AbstractHttpAsyncResponseConsumer;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Response consumer that publishes the response content as a Reactive
+ * Streams {@link Publisher} of {@link ByteBuffer}s. The publisher accepts
+ * a single subscriber.
+ * <p>
+ * Content is read from the connection only while fewer than a given
+ * number of buffers are waiting for demand; beyond that input is suspended
+ * until the subscriber requests more. Cancelling the subscription before
+ * the end of content shuts down the connection.
+ * <p>
+ * The response head is available from {@link #getResponseFuture()} as
+ * soon as it has been received. The future returned by the client
+ * completes once the content has been read from the connection, which may
+ * be before the subscriber has received all of it.
+ */
+public class ReactiveResponseConsumer extends AbstractHttpAsyncResponseConsumer<HttpResponse>
+        implements Publisher<ByteBuffer> {
+
+    private final int bufSize;
+    private final BasicFuture<HttpResponse> responseFuture;
+
+    private final Queue<ByteBuffer> queue;
+    private final AtomicLong requested;
+    private final AtomicInteger wip;
+    private final AtomicBoolean subscribed;
+
+    private volatile Subscriber<? super ByteBuffer> subscriber;
+    private volatile boolean ready;
+    private volatile IOControl ioctrl;
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+    private volatile boolean aborted;
+    private volatile HttpResponse response;
+    // Accessed only while draining
+    private boolean terminated;
+    private ByteBuffer spare;
+
+    public ReactiveResponseConsumer(
+            int bufSize, int maxQueued, final FutureCallback<HttpResponse> callback) {
+        super();
+        if (bufSize <= 0) {
+            throw new IllegalArgumentException("Buffer size may not be negative or zero");
+        }
+        if (maxQueued <= 0) {
+            throw new IllegalArgumentException("Queue size may not be negative or zero");
+        }
+        this.bufSize = bufSize;
+        this.responseFuture = new BasicFuture<HttpResponse>(callback);
+        this.queue = new ConcurrentLinkedQueue<ByteBuffer>();
+        this.requested = new AtomicLong(0);
+        this.wip = new AtomicInteger(0);
+        this.subscribed = new AtomicBoolean(false);
+        // Each buffer queued uses up a unit of demand, which is granted
+        // again once the buffer has been delivered to the subscriber
+        setInitialDemand(maxQueued);
+    }
+
+    public ReactiveResponseConsumer(final FutureCallback<HttpResponse> callback) {
+        this(8 * 1024, 4, callback);
+    }
+
+    public ReactiveResponseConsumer() {
+        this(null);
+    }
+
+    /**
+     * Returns a future that completes with the response head as soon as it
+     * has been received.
+     */
+    public Future<HttpResponse> getResponseFuture() {
+        return this.responseFuture;
+    }
+
+    public void subscribe(final Subscriber<? super ByteBuffer> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber may not be null");
+        }
+        if (!this.subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+
+                public void request(long n) {
+                }
+
+                public void cancel() {
+                }
+
+            });
+            subscriber.onError(new IllegalStateException(
+                    "Response content may only be subscribed to once"));
+            return;
+        }
+        // Assigned before onSubscribe so that a cancel from within it drops
+        // the subscriber for good. Nothing is signalled until it returns.
+        this.subscriber = subscriber;
+        subscriber.onSubscribe(new ContentSubscription());
+        this.ready = true;
+        drain();
+    }
+
+    @Override
+    protected void onResponseReceived(final HttpResponse response) {
+        this.response = response;
+        this.responseFuture.completed(response);
+    }
+
+    @Override
+    protected void onContentReceived(
+            final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+        this.ioctrl = ioctrl;
+        if (this.aborted) {
+            ioctrl.shutdown();
+            return;
+        }
+        while (hasDemand(ioctrl)) {
+            ByteBuffer buf = this.spare;
+            if (buf == null) {
+                buf = ByteBuffer.allocate(this.bufSize);
+            }
+            int bytesRead = decoder.read(buf);
+            if (bytesRead <= 0) {
+                this.spare = buf;
+                break;
+            }
+            this.spare = null;
+            buf.flip();
+            this.queue.add(buf);
+            consumeDemand();
+        }
+        drain();
+    }
+
+    @Override
+    protected HttpResponse buildResult() throws Exception {
+        this.done = true;
+        drain();
+        return this.response;
+    }
+
+    @Override
+    protected void onCleanup() {
+        this.ioctrl = null;
+        this.spare = null;
+        if (!this.done) {
+            Exception ex = getException();
+            if (ex != null) {
+                this.responseFuture.failed(ex);
+            } else {
+                this.responseFuture.cancel(true);
+            }
+            // An invalid request may have aborted the exchange, in which
+            // case the subscriber is to be told about that
+            if (this.error == null) {
+                this.error = ex != null ? ex : new CancellationException("Response cancelled");
+            }
+            drain();
+        }
+    }
+
+    private void abort() {
+        this.aborted = true;
+        IOControl local = this.ioctrl;
+        if (local != null && !this.done) {
+            try {
+                local.shutdown();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Delivers queued content and terminal signals to the subscriber. Only
+     * one thread drains at a time; others leave their work to it, so
+     * signals are serialised and requests made from within
+     * {@link Subscriber#onNext(Object)} do not recurse.
+     */
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (;;) {
+            Subscriber<? super ByteBuffer> s = this.subscriber;
+            if (this.cancelled) {
+                this.queue.clear();
+            } else if (s != null && this.ready && !this.terminated) {
+                Throwable ex = this.error;
+                if (ex != null) {
+                    this.queue.clear();
+                    this.terminated = true;
+                    s.onError(ex);
+                } else {
+                    long r = this.requested.get();
+                    long emitted = 0;
+                    while (emitted != r && !this.cancelled) {
+                        ByteBuffer buf = this.queue.poll();
+                        if (buf == null) {
+                            break;
+                        }
+                        emitted++;
+                        s.onNext(buf);
+                    }
+                    if (emitted > 0) {
+                        if (r != Long.MAX_VALUE) {
+                            this.requested.addAndGet(-emitted);
+                        }
+                        request(emitted);
+                    }
+                    if (!this.cancelled && this.done && this.queue.isEmpty()) {
+                        this.terminated = true;
+                        s.onComplete();
+                    }
+                }
+            }
+            missed = this.wip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    class ContentSubscription implements Subscription {
+
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException(
+                        "Number of requested elements must be positive");
+                abort();
+                drain();
+                return;
+            }
+            for (;;) {
+                long current = requested.get();
+                long next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+                if (requested.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+            drain();
+        }
+
+        public void cancel() {
+            cancelled = true;
+            subscriber = null;
+            abort();
+            drain();
+        }
+
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.reactive;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Publishes a fixed list of chunks, honouring demand.
+ */
+class ListPublisher implements Publisher<ByteBuffer> {
+
+    private final List<byte[]> chunks;
+
+    ListPublisher(final List<byte[]> chunks) {
+        super();
+        this.chunks = chunks;
+    }
+
+    ListPublisher() {
+        this(new ArrayList<byte[]>());
+    }
+
+    public void subscribe(final Subscriber<? super ByteBuffer> subscriber) {
+        subscriber.onSubscribe(new Subscription() {
+
+            private int index;
+            private long demand;
+            private boolean emitting;
+            private boolean stopped;
+
+            public synchronized void request(long n) {
+                this.demand += n;
+                if (this.emitting) {
+                    return;
+                }
+                this.emitting = true;
+                while (this.demand > 0 && this.index < chunks.size() && !this.stopped) {
+                    this.demand--;
+                    subscriber.onNext(ByteBuffer.wrap(chunks.get(this.index++)));
+                }
+                if (this.index == chunks.size() && !this.stopped) {
+                    this.stopped = true;
+                    subscriber.onComplete();
+                }
+                this.emitting = false;
+            }
+
+            public synchronized void cancel() {
+                this.stopped = true;
+            }
+
+        });
+    }
+
+}
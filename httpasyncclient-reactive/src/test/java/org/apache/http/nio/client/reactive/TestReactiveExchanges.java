@@ -0,0 +1,237 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.reactive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.impl.nio.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.localserver.LocalTestServer;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.conn.scheme.Scheme;
+import org.apache.http.nio.conn.scheme.SchemeRegistry;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.util.EntityUtils;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestReactiveExchanges {
+
+    private LocalTestServer localServer;
+    private HttpHost target;
+    private DefaultHttpAsyncClient httpclient;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        this.localServer = new LocalTestServer(null, null);
+        this.localServer.registerDefaultHandlers();
+        this.localServer.start();
+        int port = this.localServer.getServiceAddress().getPort();
+        this.target = new HttpHost("localhost", port);
+
+        DefaultConnectingIOReactor ioreactor = new DefaultConnectingIOReactor(2, new BasicHttpParams());
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register(new Scheme("http", 80, null));
+        this.httpclient = new DefaultHttpAsyncClient(
+                new PoolingClientConnectionManager(ioreactor, schemeRegistry));
+        this.httpclient.start();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        this.httpclient.shutdown();
+        this.localServer.stop();
+    }
+
+    static class CollectingSubscriber implements Subscriber<ByteBuffer> {
+
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final int cancelAfter;
+        private Subscription subscription;
+        private volatile Throwable error;
+        private volatile int chunks;
+
+        CollectingSubscriber(int cancelAfter) {
+            super();
+            this.cancelAfter = cancelAfter;
+        }
+
+        public void onSubscribe(final Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        public void onNext(final ByteBuffer buf) {
+            byte[] b = new byte[buf.remaining()];
+            buf.get(b);
+            this.content.write(b, 0, b.length);
+            this.chunks++;
+            if (this.chunks == this.cancelAfter) {
+                this.subscription.cancel();
+                this.latch.countDown();
+            } else {
+                // One buffer at a time
+                this.subscription.request(1);
+            }
+        }
+
+        public void onError(final Throwable t) {
+            this.error = t;
+            this.latch.countDown();
+        }
+
+        public void onComplete() {
+            this.latch.countDown();
+        }
+
+    }
+
+    @Test
+    public void testResponseContentPublisher() throws Exception {
+        ReactiveResponseConsumer consumer = new ReactiveResponseConsumer(1024, 2, null);
+        CollectingSubscriber subscriber = new CollectingSubscriber(-1);
+        consumer.subscribe(subscriber);
+        Future<HttpResponse> future = this.httpclient.execute(
+                HttpAsyncMethods.create(this.target, new HttpGet("/random/100000")),
+                consumer, null);
+        HttpResponse head = consumer.getResponseFuture().get();
+        Assert.assertEquals(head.getStatusLine().getStatusCode(), HttpStatus.SC_OK);
+        Assert.assertTrue(subscriber.latch.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(subscriber.error);
+        Assert.assertEquals(subscriber.content.size(), 100000);
+        Assert.assertSame(future.get(), head);
+    }
+
+    @Test
+    public void testResponseContentCancelled() throws Exception {
+        ReactiveResponseConsumer consumer = new ReactiveResponseConsumer(1024, 2, null);
+        CollectingSubscriber subscriber = new CollectingSubscriber(3);
+        consumer.subscribe(subscriber);
+        Future<HttpResponse> future = this.httpclient.execute(
+                HttpAsyncMethods.create(this.target, new HttpGet("/random/10000000")),
+                consumer, null);
+        Assert.assertTrue(subscriber.latch.await(10, TimeUnit.SECONDS));
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("The exchange should have been aborted");
+        } catch (CancellationException expected) {
+        } catch (ExecutionException expected) {
+        }
+        Assert.assertEquals(subscriber.chunks, 3);
+    }
+
+    @Test
+    public void testSubscriberDroppedOnCancelFromOnSubscribe() throws Exception {
+        ReactiveResponseConsumer consumer = new ReactiveResponseConsumer();
+        Subscriber<ByteBuffer> subscriber = new Subscriber<ByteBuffer>() {
+
+            public void onSubscribe(final Subscription subscription) {
+                subscription.cancel();
+            }
+
+            public void onNext(final ByteBuffer buf) {
+            }
+
+            public void onError(final Throwable t) {
+            }
+
+            public void onComplete() {
+            }
+
+        };
+        WeakReference<Subscriber<ByteBuffer>> ref = new WeakReference<Subscriber<ByteBuffer>>(subscriber);
+        consumer.subscribe(subscriber);
+        subscriber = null;
+        for (int i = 0; i < 10 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(ref.get());
+    }
+
+    @Test
+    public void testRequestContentShorterThanContentLength() throws Exception {
+        List<byte[]> chunks = new ArrayList<byte[]>();
+        chunks.add(new byte[100]);
+        ReactiveRequestProducer producer = new ReactiveRequestProducer(
+                this.target, new HttpPost("/echo/stuff"), new ListPublisher(chunks),
+                ContentType.create("text/plain", "US-ASCII"), 200, 4);
+        Future<HttpResponse> future = this.httpclient.execute(
+                producer, HttpAsyncMethods.createConsumer(), null);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testRequestContentPublisher() throws Exception {
+        List<byte[]> chunks = new ArrayList<byte[]>();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 200; i++) {
+            byte[] chunk = new byte[1 + i * 37 % 2000];
+            for (int j = 0; j < chunk.length; j++) {
+                chunk[j] = (byte) ('a' + (i + j) % 26);
+            }
+            chunks.add(chunk);
+            expected.write(chunk, 0, chunk.length);
+        }
+        ReactiveRequestProducer producer = new ReactiveRequestProducer(
+                this.target, new HttpPost("/echo/stuff"), new ListPublisher(chunks),
+                ContentType.create("text/plain", "US-ASCII"));
+        Future<HttpResponse> future = this.httpclient.execute(
+                producer, HttpAsyncMethods.createConsumer(), null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(response.getStatusLine().getStatusCode(), HttpStatus.SC_OK);
+        Assert.assertEquals(EntityUtils.toByteArray(response.getEntity()), expected.toByteArray());
+    }
+
+}
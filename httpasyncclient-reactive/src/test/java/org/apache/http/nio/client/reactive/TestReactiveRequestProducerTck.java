@@ -0,0 +1,61 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.reactive;
+
+import java.nio.ByteBuffer;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.HttpPost;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.tck.SubscriberBlackboxVerification;
+import org.reactivestreams.tck.TestEnvironment;
+
+/**
+ * Runs the Reactive Streams subscriber compliance tests against the
+ * subscriber of {@link ReactiveRequestProducer}.
+ */
+public class TestReactiveRequestProducerTck extends SubscriberBlackboxVerification<ByteBuffer> {
+
+    public TestReactiveRequestProducerTck() {
+        super(new TestEnvironment());
+    }
+
+    @Override
+    public Subscriber<ByteBuffer> createSubscriber() {
+        Publisher<ByteBuffer> publisher = new ListPublisher();
+        ReactiveRequestProducer producer = new ReactiveRequestProducer(
+                new HttpHost("localhost"), new HttpPost("/"), publisher, null);
+        return producer.getSubscriber();
+    }
+
+    @Override
+    public ByteBuffer createElement(int element) {
+        return ByteBuffer.wrap(new byte[] { (byte) element });
+    }
+
+}
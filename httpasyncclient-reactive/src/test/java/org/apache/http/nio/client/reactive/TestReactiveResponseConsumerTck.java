@@ -0,0 +1,165 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.reactive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.tck.PublisherVerification;
+import org.reactivestreams.tck.TestEnvironment;
+
+/**
+ * Runs the Reactive Streams publisher compliance tests against
+ * {@link ReactiveResponseConsumer}. Content is fed to the consumer by a
+ * thread standing in for the I/O reactor, one single-byte read per
+ * element.
+ */
+public class TestReactiveResponseConsumerTck extends PublisherVerification<ByteBuffer> {
+
+    public TestReactiveResponseConsumerTck() {
+        super(new TestEnvironment());
+    }
+
+    static class SimulatedDecoder implements ContentDecoder {
+
+        private long remaining;
+        private boolean pause;
+        private boolean completed;
+
+        SimulatedDecoder(long elements) {
+            super();
+            this.remaining = elements;
+            this.completed = elements == 0;
+        }
+
+        public int read(final ByteBuffer dst) throws IOException {
+            if (this.completed) {
+                return -1;
+            }
+            // Every other read finds no data, so each input event yields one buffer
+            if (this.pause) {
+                this.pause = false;
+                return 0;
+            }
+            this.pause = true;
+            dst.put((byte) 'x');
+            this.remaining--;
+            if (this.remaining == 0) {
+                this.completed = true;
+            }
+            return 1;
+        }
+
+        public boolean isCompleted() {
+            return this.completed;
+        }
+
+    }
+
+    static class SimulatedIOControl implements IOControl {
+
+        private boolean suspended;
+        private boolean shutdown;
+
+        public synchronized void requestInput() {
+            this.suspended = false;
+            notifyAll();
+        }
+
+        public synchronized void suspendInput() {
+            this.suspended = true;
+        }
+
+        public void requestOutput() {
+        }
+
+        public void suspendOutput() {
+        }
+
+        public synchronized void shutdown() throws IOException {
+            this.shutdown = true;
+            notifyAll();
+        }
+
+        synchronized boolean awaitInput() throws InterruptedException {
+            while (this.suspended && !this.shutdown) {
+                wait();
+            }
+            return !this.shutdown;
+        }
+
+    }
+
+    static void feed(final ReactiveResponseConsumer consumer, long elements) {
+        final SimulatedDecoder decoder = new SimulatedDecoder(elements);
+        final SimulatedIOControl ioctrl = new SimulatedIOControl();
+        Thread t = new Thread("Simulated I/O reactor") {
+
+            @Override
+            public void run() {
+                try {
+                    consumer.responseReceived(
+                            new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"));
+                    while (!decoder.isCompleted()) {
+                        if (!ioctrl.awaitInput()) {
+                            consumer.cancel();
+                            return;
+                        }
+                        consumer.consumeContent(decoder, ioctrl);
+                    }
+                    consumer.responseCompleted();
+                } catch (Exception ex) {
+                    consumer.failed(ex);
+                }
+            }
+
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @Override
+    public Publisher<ByteBuffer> createPublisher(long elements) {
+        ReactiveResponseConsumer consumer = new ReactiveResponseConsumer(1024, 2, null);
+        feed(consumer, elements);
+        return consumer;
+    }
+
+    @Override
+    public Publisher<ByteBuffer> createFailedPublisher() {
+        ReactiveResponseConsumer consumer = new ReactiveResponseConsumer();
+        consumer.failed(new IOException("Connection reset"));
+        return consumer;
+    }
+
+}
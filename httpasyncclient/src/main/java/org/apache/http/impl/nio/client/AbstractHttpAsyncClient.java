@@ -31,10 +31,12 @@ import java.net.URI;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.ConnectionReuseStrategy;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpRequestInterceptor;
@@ -76,13 +78,18 @@ import org.apache.http.impl.cookie.RFC2965SpecFactory;
 import org.apache.http.impl.nio.conn.DefaultHttpAsyncRoutePlanner;
 import org.apache.http.impl.nio.conn.PoolingClientConnectionManager;
 import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.nio.client.ExchangeLimiter;
+import org.apache.http.nio.client.ExchangeListener;
+import org.apache.http.nio.client.HedgingStrategy;
 import org.apache.http.nio.client.HttpAsyncClient;
 import org.apache.http.nio.client.HttpAsyncExchangeHandler;
 import org.apache.http.nio.client.HttpAsyncRequestProducer;
 import org.apache.http.nio.client.HttpAsyncResponseConsumer;
 import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.client.params.AsyncClientPNames;
+import org.apache.http.nio.client.params.HttpAsyncClientParams;
+import org.apache.http.nio.client.protocol.AsyncClientContext;
 import org.apache.http.nio.conn.ClientConnectionManager;
-import org.apache.http.nio.reactor.IOEventDispatch;
 import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.nio.reactor.IOReactorStatus;
 import org.apache.http.params.HttpParams;
@@ -98,8 +105,12 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
     private final Log log = LogFactory.getLog(getClass());;
     private final ClientConnectionManager connmgr;
     private final Queue<HttpAsyncExchangeHandler<?>> queue;
+    private final HashedWheelTimer timer;
 
     private Thread reactorThread;
+    private volatile InternalClientEventDispatch eventDispatch;
+    private volatile ReactorWatchdog watchdog;
+    private boolean dispatchMonitored;
     private BasicHttpProcessor mutableProcessor;
     private ImmutableHttpProcessor protocolProcessor;
     private ConnectionReuseStrategy reuseStrategy;
@@ -112,6 +123,9 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
     private AuthenticationHandler proxyAuthHandler;
     private CredentialsProvider credsProvider;
     private HttpRoutePlanner routePlanner;
+    private HedgingStrategy hedgingStrategy;
+    private ExchangeLimiter exchangeLimiter;
+    private ExchangeListener exchangeListener;
     private HttpParams params;
 
     private volatile boolean terminated;
@@ -122,6 +136,7 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
         super();
         this.connmgr = connmgr;
         this.queue = new ConcurrentLinkedQueue<HttpAsyncExchangeHandler<?>>();
+        this.timer = new HashedWheelTimer(this.log, "I/O client timer");
         this.params = params;
     }
 
@@ -134,6 +149,7 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
         defaultioreactor.setExceptionHandler(new InternalIOReactorExceptionHandler(this.log));
         this.connmgr = new PoolingClientConnectionManager(defaultioreactor);
         this.queue = new ConcurrentLinkedQueue<HttpAsyncExchangeHandler<?>>();
+        this.timer = new HashedWheelTimer(this.log, "I/O client timer");
         this.params = params;
     }
 
@@ -158,6 +174,12 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
         context.setAttribute(
                 ClientContext.CREDS_PROVIDER,
                 getCredentialsProvider());
+        ExchangeListener listener = getExchangeListener();
+        if (listener != null) {
+            context.setAttribute(
+                    AsyncClientContext.EXCHANGE_LISTENER,
+                    listener);
+        }
         return context;
     }
 
@@ -352,6 +374,44 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
         this.routePlanner = routePlanner;
     }
 
+    public synchronized final HedgingStrategy getHedgingStrategy() {
+        return this.hedgingStrategy;
+    }
+
+    /**
+     * Sets the strategy used to hedge requests. Hedging is disabled
+     * if no strategy is set.
+     */
+    public synchronized void setHedgingStrategy(final HedgingStrategy hedgingStrategy) {
+        this.hedgingStrategy = hedgingStrategy;
+    }
+
+    public synchronized final ExchangeLimiter getExchangeLimiter() {
+        return this.exchangeLimiter;
+    }
+
+    /**
+     * Sets the limiter used to bound the number of exchanges in flight.
+     * The number of exchanges is unbounded if no limiter is set.
+     */
+    public synchronized void setExchangeLimiter(final ExchangeLimiter exchangeLimiter) {
+        this.exchangeLimiter = exchangeLimiter;
+    }
+
+    public synchronized final ExchangeListener getExchangeListener() {
+        return this.exchangeListener;
+    }
+
+    /**
+     * Sets the listener to be notified about the progress of all exchanges
+     * executed by this client. A listener can also be set for individual
+     * exchanges as the {@link AsyncClientContext#EXCHANGE_LISTENER}
+     * attribute of the local context.
+     */
+    public synchronized void setExchangeListener(final ExchangeListener exchangeListener) {
+        this.exchangeListener = exchangeListener;
+    }
+
     protected synchronized final BasicHttpProcessor getHttpProcessor() {
         if (this.mutableProcessor == null) {
             this.mutableProcessor = createHttpProcessor();
@@ -436,10 +496,8 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
     }
 
     private void doExecute() {
-        NHttpClientProtocolHandler handler = new NHttpClientProtocolHandler();
         try {
-            IOEventDispatch ioEventDispatch = new InternalClientEventDispatch(handler);
-            this.connmgr.execute(ioEventDispatch);
+            this.connmgr.execute(this.eventDispatch);
         } catch (Exception ex) {
             this.log.error("I/O reactor terminated abnormally", ex);
         } finally {
@@ -455,7 +513,62 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
         return this.connmgr.getStatus();
     }
 
+    /**
+     * Returns the number of exchanges submitted and not yet completed.
+     */
+    int getExchangeCount() {
+        return this.queue.size();
+    }
+
+    int getDispatcherCount() {
+        InternalClientEventDispatch local = this.eventDispatch;
+        return local != null ? local.getDispatcherCount() : 0;
+    }
+
+    /**
+     * Returns the number of I/O events whose handling exceeded the
+     * {@link AsyncClientPNames#STALL_THRESHOLD}.
+     */
+    long getStallCount() {
+        ReactorWatchdog local = this.watchdog;
+        return local != null ? local.getStallCount() : 0;
+    }
+
+    /**
+     * Returns the distribution of the time I/O dispatch threads spend
+     * handling individual I/O events. Long event handling delays all
+     * other connections served by the same thread. Events are timed only
+     * while stall detection is enabled or an {@link HttpAsyncClientMonitor}
+     * has been created for this client.
+     */
+    public HistogramSnapshot getDispatchLatency() {
+        InternalClientEventDispatch local = this.eventDispatch;
+        if (local == null) {
+            return new LatencyHistogram().getSnapshot();
+        }
+        return local.getEventLatency().getSnapshot();
+    }
+
+    /**
+     * Enables tracking of I/O event dispatch, which is otherwise only
+     * done while stall detection is enabled.
+     */
+    synchronized void enableDispatchMonitoring() {
+        this.dispatchMonitored = true;
+        if (this.eventDispatch != null) {
+            this.eventDispatch.setInstrumented(true);
+        }
+    }
+
     public synchronized void start() {
+        this.eventDispatch = new InternalClientEventDispatch(new NHttpClientProtocolHandler());
+        int stallThreshold = HttpAsyncClientParams.getStallThreshold(getParams());
+        this.eventDispatch.setInstrumented(this.dispatchMonitored || stallThreshold > 0);
+        if (stallThreshold > 0) {
+            this.watchdog = new ReactorWatchdog(this.log, this.timer, this.eventDispatch,
+                    stallThreshold, TimeUnit.MILLISECONDS);
+            this.watchdog.start();
+        }
         this.reactorThread = new Thread() {
 
             @Override
@@ -468,6 +581,10 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
     }
 
     public synchronized void shutdown() throws InterruptedException {
+        if (this.watchdog != null) {
+            this.watchdog.stop();
+        }
+        this.timer.stop();
         try {
             this.connmgr.shutdown(5000);
         } catch (IOException ex) {
@@ -478,7 +595,7 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
         }
     }
 
-    public <T> Future<T> execute(
+    <T> ExchangeFuture<T> executeExchange(
             final HttpAsyncRequestProducer requestProducer,
             final HttpAsyncResponseConsumer<T> responseConsumer,
             final HttpContext context,
@@ -486,7 +603,7 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
         if (this.terminated) {
             throw new IllegalStateException("Client has been shut down");
         }
-        BasicFuture<T> future = new BasicFuture<T>(callback);
+        ExchangeFuture<T> future = new ExchangeFuture<T>(callback);
         ResultCallback<T> resultCallback = new DefaultResultCallback<T>(future, this.queue);
         DefaultAsyncRequestDirector<T> httpexchange;
         synchronized (this) {
@@ -511,13 +628,28 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
                     getRedirectStrategy(),
                     getTargetAuthenticationHandler(),
                     getProxyAuthenticationHandler(),
-                    getParams());
+                    getParams(),
+                    this.timer,
+                    getExchangeLimiter());
         }
+        future.setExchangeHandler(httpexchange);
         this.queue.add(httpexchange);
         httpexchange.start();
         return future;
     }
 
+    void schedule(final Runnable task, long delay, final TimeUnit tunit) {
+        this.timer.newTimeout(task, delay, tunit);
+    }
+
+    public <T> Future<T> execute(
+            final HttpAsyncRequestProducer requestProducer,
+            final HttpAsyncResponseConsumer<T> responseConsumer,
+            final HttpContext context,
+            final FutureCallback<T> callback) {
+        return executeExchange(requestProducer, responseConsumer, context, callback);
+    }
+
     public <T> Future<T> execute(
             final HttpAsyncRequestProducer requestProducer,
             final HttpAsyncResponseConsumer<T> responseConsumer,
@@ -528,6 +660,17 @@ public abstract class AbstractHttpAsyncClient implements HttpAsyncClient {
     public Future<HttpResponse> execute(
             final HttpHost target, final HttpRequest request, final HttpContext context,
             final FutureCallback<HttpResponse> callback) {
+        HedgingStrategy strategy = getHedgingStrategy();
+        if (strategy != null && target != null
+                && !(request instanceof HttpEntityEnclosingRequest)) {
+            if (this.terminated) {
+                throw new IllegalStateException("Client has been shut down");
+            }
+            HedgedExecution execution = new HedgedExecution(
+                    this.log, this, strategy, target, request, context, callback);
+            execution.start();
+            return execution.getFuture();
+        }
         return execute(
                 HttpAsyncMethods.create(target, request),
                 HttpAsyncMethods.createConsumer(),
@@ -0,0 +1,441 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.nio.client.ExchangeLimiter;
+import org.apache.http.nio.client.ExchangePermit;
+
+/**
+ * {@link ExchangeLimiter} implementation that enforces a maximum number of
+ * exchanges in flight in total and per route.
+ * <p>
+ * Once a limit has been reached further requests for permits are handled
+ * according to the {@link OverflowPolicy}. Waiting requests are granted
+ * permits in the order they have been received. Requests for a route that
+ * has reached its limit do not hold up requests for other routes.
+ */
+public class BoundedExchangeLimiter implements ExchangeLimiter {
+
+    public enum OverflowPolicy {
+
+        /**
+         * Requests exceeding the limits are rejected immediately.
+         */
+        REJECT,
+
+        /**
+         * Requests exceeding the limits wait until permits become
+         * available. Requests exceeding the maximum number of waiting
+         * requests are rejected.
+         */
+        WAIT,
+
+        /**
+         * Requests exceeding the limits wait until permits become
+         * available. If the maximum number of waiting requests has been
+         * reached, the oldest waiting request is rejected to make room
+         * for the new one.
+         */
+        SHED_OLDEST
+
+    }
+
+    private final OverflowPolicy policy;
+    private final Map<HttpRoute, Integer> maxPerRoute;
+    private final Map<HttpRoute, Integer> routeInFlight;
+    private final Map<HttpRoute, Integer> routePending;
+    private final LinkedList<PendingRequest> pending;
+
+    private int maxTotal;
+    private int defaultMaxPerRoute;
+    private int maxPending;
+    private int inFlight;
+    private long rejectedCount;
+
+    public BoundedExchangeLimiter(
+            int maxTotal,
+            int defaultMaxPerRoute,
+            final OverflowPolicy policy,
+            int maxPending) {
+        super();
+        if (maxTotal <= 0) {
+            throw new IllegalArgumentException("Max total value may not be negative or zero");
+        }
+        if (defaultMaxPerRoute <= 0) {
+            throw new IllegalArgumentException("Max per route value may not be negative or zero");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Overflow policy may not be null");
+        }
+        if (maxPending < 0) {
+            throw new IllegalArgumentException("Max pending value may not be negative");
+        }
+        this.maxTotal = maxTotal;
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+        this.policy = policy;
+        this.maxPending = maxPending;
+        this.maxPerRoute = new HashMap<HttpRoute, Integer>();
+        this.routeInFlight = new HashMap<HttpRoute, Integer>();
+        this.routePending = new HashMap<HttpRoute, Integer>();
+        this.pending = new LinkedList<PendingRequest>();
+    }
+
+    public BoundedExchangeLimiter(int maxTotal, int defaultMaxPerRoute) {
+        this(maxTotal, defaultMaxPerRoute, OverflowPolicy.WAIT, Integer.MAX_VALUE);
+    }
+
+    public Future<ExchangePermit> acquire(
+            final HttpRoute route, final FutureCallback<ExchangePermit> callback) {
+        if (route == null) {
+            throw new IllegalArgumentException("HTTP route may not be null");
+        }
+        PendingRequest request = new PendingRequest(route, callback);
+        ExchangePermit permit = null;
+        PendingRequest shed = null;
+        boolean rejected = false;
+        synchronized (this) {
+            if (getRoutePending(route) == 0 && canAcquire(route)) {
+                permit = allocate(route);
+            } else if (this.policy == OverflowPolicy.REJECT) {
+                rejected = true;
+            } else if (this.pending.size() < this.maxPending) {
+                enqueue(request);
+            } else if (this.policy == OverflowPolicy.SHED_OLDEST && !this.pending.isEmpty()) {
+                shed = this.pending.removeFirst();
+                updateRoutePending(shed.route, -1);
+                enqueue(request);
+            } else {
+                rejected = true;
+            }
+            if (rejected || shed != null) {
+                this.rejectedCount++;
+            }
+        }
+        if (permit != null) {
+            if (!request.completed(permit)) {
+                permit.cancelled();
+            }
+        } else if (rejected) {
+            request.failed(new RejectedExecutionException(
+                    "Exchange limit exceeded for route " + route));
+        }
+        if (shed != null) {
+            shed.failed(new RejectedExecutionException(
+                    "Exchange shed for route " + shed.route));
+        }
+        return request;
+    }
+
+    private boolean canAcquire(final HttpRoute route) {
+        return this.inFlight < this.maxTotal
+            && getRouteInFlight(route) < getRouteLimit(route);
+    }
+
+    /**
+     * Returns the number of exchanges that can be in flight via the given
+     * route at this point. Called with the limiter locked.
+     */
+    protected int getRouteLimit(final HttpRoute route) {
+        return getMaxPerRoute(route);
+    }
+
+    /**
+     * Invoked when an exchange via the given route has completed normally,
+     * before its permit is returned.
+     *
+     * @param rtt the time in nanoseconds elapsed since the permit was granted.
+     */
+    protected void exchangeCompleted(final HttpRoute route, long rtt) {
+    }
+
+    /**
+     * Invoked when an exchange via the given route has failed, before its
+     * permit is returned.
+     */
+    protected void exchangeFailed(final HttpRoute route) {
+    }
+
+    /**
+     * Invoked once the last exchange in flight via the given route has
+     * returned its permit. Called with the limiter locked.
+     */
+    protected void routeIdle(final HttpRoute route) {
+    }
+
+    private int getRouteInFlight(final HttpRoute route) {
+        Integer count = this.routeInFlight.get(route);
+        return count != null ? count.intValue() : 0;
+    }
+
+    private int getRoutePending(final HttpRoute route) {
+        Integer count = this.routePending.get(route);
+        return count != null ? count.intValue() : 0;
+    }
+
+    private void updateRoutePending(final HttpRoute route, int delta) {
+        int count = getRoutePending(route) + delta;
+        if (count > 0) {
+            this.routePending.put(route, Integer.valueOf(count));
+        } else {
+            this.routePending.remove(route);
+        }
+    }
+
+    private void enqueue(final PendingRequest request) {
+        this.pending.addLast(request);
+        updateRoutePending(request.route, 1);
+    }
+
+    private Permit allocate(final HttpRoute route) {
+        this.inFlight++;
+        this.routeInFlight.put(route, Integer.valueOf(getRouteInFlight(route) + 1));
+        return new Permit(route);
+    }
+
+    private void release(final HttpRoute route) {
+        List<PendingRequest> granted = new ArrayList<PendingRequest>();
+        List<Permit> permits = new ArrayList<Permit>();
+        synchronized (this) {
+            this.inFlight--;
+            int count = getRouteInFlight(route) - 1;
+            if (count > 0) {
+                this.routeInFlight.put(route, Integer.valueOf(count));
+            } else {
+                this.routeInFlight.remove(route);
+                routeIdle(route);
+            }
+            Iterator<PendingRequest> it = this.pending.iterator();
+            while (it.hasNext() && this.inFlight < this.maxTotal) {
+                PendingRequest request = it.next();
+                if (canAcquire(request.route)) {
+                    it.remove();
+                    updateRoutePending(request.route, -1);
+                    granted.add(request);
+                    permits.add(allocate(request.route));
+                }
+            }
+        }
+        for (int i = 0; i < granted.size(); i++) {
+            Permit permit = permits.get(i);
+            if (!granted.get(i).completed(permit)) {
+                permit.cancelled();
+            }
+        }
+    }
+
+    private synchronized void remove(final PendingRequest request) {
+        if (this.pending.remove(request)) {
+            updateRoutePending(request.route, -1);
+        }
+    }
+
+    public synchronized int getMaxTotal() {
+        return this.maxTotal;
+    }
+
+    public void setMaxTotal(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("Max value may not be negative or zero");
+        }
+        synchronized (this) {
+            this.maxTotal = max;
+        }
+    }
+
+    public synchronized int getDefaultMaxPerRoute() {
+        return this.defaultMaxPerRoute;
+    }
+
+    public void setDefaultMaxPerRoute(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("Max value may not be negative or zero");
+        }
+        synchronized (this) {
+            this.defaultMaxPerRoute = max;
+        }
+    }
+
+    public synchronized int getMaxPerRoute(final HttpRoute route) {
+        Integer max = this.maxPerRoute.get(route);
+        return max != null ? max.intValue() : this.defaultMaxPerRoute;
+    }
+
+    public void setMaxPerRoute(final HttpRoute route, int max) {
+        if (route == null) {
+            throw new IllegalArgumentException("HTTP route may not be null");
+        }
+        if (max <= 0) {
+            throw new IllegalArgumentException("Max value may not be negative or zero");
+        }
+        synchronized (this) {
+            this.maxPerRoute.put(route, Integer.valueOf(max));
+        }
+    }
+
+    public synchronized int getMaxPending() {
+        return this.maxPending;
+    }
+
+    public void setMaxPending(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Max value may not be negative");
+        }
+        synchronized (this) {
+            this.maxPending = max;
+        }
+    }
+
+    /**
+     * Returns the total number of exchanges currently in flight.
+     */
+    public synchronized int getInFlightCount() {
+        return this.inFlight;
+    }
+
+    /**
+     * Returns the number of exchanges currently in flight via the given route.
+     */
+    public synchronized int getInFlightCount(final HttpRoute route) {
+        return getRouteInFlight(route);
+    }
+
+    /**
+     * Returns the number of exchanges waiting for a permit.
+     */
+    public synchronized int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Returns the number of exchanges waiting for a permit for the given route.
+     */
+    public synchronized int getPendingCount(final HttpRoute route) {
+        return getRoutePending(route);
+    }
+
+    /**
+     * Returns the total number of exchanges rejected or shed so far.
+     */
+    public synchronized long getRejectedCount() {
+        return this.rejectedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("[in flight: ").append(this.inFlight);
+        buffer.append("; pending: ").append(this.pending.size());
+        buffer.append("; max total: ").append(this.maxTotal);
+        buffer.append("; rejected: ").append(this.rejectedCount);
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    class PendingRequest extends BasicFuture<ExchangePermit> {
+
+        private final HttpRoute route;
+
+        PendingRequest(final HttpRoute route, final FutureCallback<ExchangePermit> callback) {
+            super(callback);
+            this.route = route;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                remove(this);
+            }
+            return cancelled;
+        }
+
+    }
+
+    class Permit implements ExchangePermit {
+
+        private final HttpRoute route;
+        private final long startTime;
+        private final AtomicBoolean released;
+
+        Permit(final HttpRoute route) {
+            super();
+            this.route = route;
+            this.startTime = System.nanoTime();
+            this.released = new AtomicBoolean(false);
+        }
+
+        public HttpRoute getRoute() {
+            return this.route;
+        }
+
+        public void completed() {
+            if (this.released.compareAndSet(false, true)) {
+                try {
+                    exchangeCompleted(this.route, System.nanoTime() - this.startTime);
+                } finally {
+                    release(this.route);
+                }
+            }
+        }
+
+        public void failed() {
+            if (this.released.compareAndSet(false, true)) {
+                try {
+                    exchangeFailed(this.route);
+                } finally {
+                    release(this.route);
+                }
+            }
+        }
+
+        public void cancelled() {
+            if (this.released.compareAndSet(false, true)) {
+                release(this.route);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "[permit for " + this.route + "]";
+        }
+
+    }
+
+}
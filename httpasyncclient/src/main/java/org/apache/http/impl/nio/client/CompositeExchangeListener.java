@@ -0,0 +1,121 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.nio.client.ExchangeListener;
+import org.apache.http.nio.client.ExchangePhase;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * {@link ExchangeListener} that forwards every event to each of a number of
+ * listeners in the order given, so that for instance metrics can be
+ * collected while flight recorder events are emitted.
+ * <pre>
+ * httpclient.setExchangeListener(new CompositeExchangeListener(
+ *         new ExchangeMetricsRegistry(), new JfrExchangeListener()));
+ * </pre>
+ */
+public class CompositeExchangeListener implements ExchangeListener {
+
+    private final ExchangeListener[] listeners;
+
+    public CompositeExchangeListener(final ExchangeListener... listeners) {
+        super();
+        if (listeners == null) {
+            throw new IllegalArgumentException("Exchange listeners may not be null");
+        }
+        for (ExchangeListener listener: listeners) {
+            if (listener == null) {
+                throw new IllegalArgumentException("Exchange listener may not be null");
+            }
+        }
+        this.listeners = listeners.clone();
+    }
+
+    public List<ExchangeListener> getListeners() {
+        List<ExchangeListener> list = new ArrayList<ExchangeListener>(this.listeners.length);
+        for (ExchangeListener listener: this.listeners) {
+            list.add(listener);
+        }
+        return list;
+    }
+
+    public void exchangeStarted(
+            final HttpRoute route, final HttpRequest request,
+            final HttpContext context, long nanoTime) {
+        for (ExchangeListener listener: this.listeners) {
+            listener.exchangeStarted(route, request, context, nanoTime);
+        }
+    }
+
+    public void phaseStarted(
+            final ExchangePhase phase, final HttpRoute route,
+            final HttpContext context, long nanoTime) {
+        for (ExchangeListener listener: this.listeners) {
+            listener.phaseStarted(phase, route, context, nanoTime);
+        }
+    }
+
+    public void phaseCompleted(
+            final ExchangePhase phase, final HttpRoute route,
+            final HttpContext context, long nanoTime) {
+        for (ExchangeListener listener: this.listeners) {
+            listener.phaseCompleted(phase, route, context, nanoTime);
+        }
+    }
+
+    public void exchangeCompleted(
+            final HttpRoute route, final HttpResponse response,
+            final HttpContext context, long nanoTime) {
+        for (ExchangeListener listener: this.listeners) {
+            listener.exchangeCompleted(route, response, context, nanoTime);
+        }
+    }
+
+    public void exchangeFailed(
+            final HttpRoute route, final Exception ex,
+            final HttpContext context, long nanoTime) {
+        for (ExchangeListener listener: this.listeners) {
+            listener.exchangeFailed(route, ex, context, nanoTime);
+        }
+    }
+
+    public void exchangeCancelled(
+            final HttpRoute route,
+            final HttpContext context, long nanoTime) {
+        for (ExchangeListener listener: this.listeners) {
+            listener.exchangeCancelled(route, context, nanoTime);
+        }
+    }
+
+}
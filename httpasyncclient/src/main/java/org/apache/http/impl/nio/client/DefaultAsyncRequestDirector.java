@@ -76,12 +76,20 @@ import org.apache.http.message.BasicHttpRequest;
 import org.apache.http.nio.ContentDecoder;
 import org.apache.http.nio.ContentEncoder;
 import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.ExchangeLimiter;
+import org.apache.http.nio.client.ExchangeListener;
+import org.apache.http.nio.client.ExchangePhase;
+import org.apache.http.nio.client.ExchangePermit;
+import org.apache.http.nio.client.ExchangeTimeoutException;
 import org.apache.http.nio.client.HttpAsyncExchangeHandler;
 import org.apache.http.nio.client.HttpAsyncRequestProducer;
 import org.apache.http.nio.client.HttpAsyncResponseConsumer;
+import org.apache.http.nio.client.params.HttpAsyncClientParams;
+import org.apache.http.nio.client.protocol.AsyncClientContext;
 import org.apache.http.nio.conn.ClientConnectionManager;
 import org.apache.http.nio.conn.ManagedClientConnection;
 import org.apache.http.nio.conn.scheme.Scheme;
+import org.apache.http.nio.conn.ssl.SSLLayeringStrategy;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.params.HttpProtocolParams;
@@ -89,7 +97,8 @@ import org.apache.http.protocol.ExecutionContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpProcessor;
 
-class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
+class DefaultAsyncRequestDirector<T>
+    implements HttpAsyncExchangeHandler<T>, RequestCompletionAware {
 
     public static final String HTTP_EXCHANGE_HANDLER = "http.nio.async-exchange-handler";
 
@@ -111,6 +120,8 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
     private final AuthState targetAuthState;
     private final AuthState proxyAuthState;
     private final HttpParams clientParams;
+    private final HashedWheelTimer timer;
+    private final ExchangeLimiter exchangeLimiter;
 
     private RoutedRequest mainRequest;
     private RoutedRequest followup;
@@ -126,6 +137,12 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
     private ByteBuffer tmpbuf;
     private boolean requestContentProduced;
     private int execCount;
+    private HashedWheelTimer.Timeout deadline;
+    private Future<ExchangePermit> permitFuture;
+    private ExchangePermit permit;
+    private ExchangePermit releasedPermit;
+    private boolean releasedPermitFailed;
+    private ExchangeTracker tracker;
 
     public DefaultAsyncRequestDirector(
             final Log log,
@@ -141,7 +158,9 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
             final RedirectStrategy redirectStrategy,
             final AuthenticationHandler targetAuthHandler,
             final AuthenticationHandler proxyAuthHandler,
-            final HttpParams clientParams) {
+            final HttpParams clientParams,
+            final HashedWheelTimer timer,
+            final ExchangeLimiter exchangeLimiter) {
         super();
         this.log = log;
         this.requestProducer = requestProducer;
@@ -160,19 +179,47 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
         this.targetAuthState = new AuthState();
         this.proxyAuthState = new AuthState();
         this.clientParams = clientParams;
+        this.timer = timer;
+        this.exchangeLimiter = exchangeLimiter;
     }
 
-    public synchronized void start() {
+    public void start() {
+        try {
+            doStart();
+        } finally {
+            returnPermit();
+        }
+    }
+
+    private synchronized void doStart() {
+        if (isDone()) {
+            // Cancelled before the exchange could be started
+            return;
+        }
         try {
             HttpHost target = this.requestProducer.getTarget();
             HttpRequest request = this.requestProducer.generateRequest();
             this.params = new ClientParamsStack(null, this.clientParams, request.getParams(), null);
+            int timeout = HttpAsyncClientParams.getExchangeTimeout(this.params);
+            if (timeout > 0) {
+                scheduleDeadline(timeout);
+            }
             RequestWrapper wrapper = wrapRequest(request);
             wrapper.setParams(this.params);
             HttpRoute route = determineRoute(target, wrapper, this.localContext);
             this.mainRequest = new RoutedRequest(wrapper, route);
+            ExchangeListener listener = (ExchangeListener) this.localContext.getAttribute(
+                    AsyncClientContext.EXCHANGE_LISTENER);
+            if (listener != null) {
+                this.tracker = new ExchangeTracker(listener, this.localContext);
+                this.tracker.exchangeStarted(route, request);
+            }
             this.requestContentProduced = false;
-            requestConnection();
+            if (this.exchangeLimiter != null) {
+                requestPermit();
+            } else {
+                requestConnection();
+            }
         } catch (Exception ex) {
             failed(ex);
         }
@@ -183,6 +230,9 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
     }
 
     public synchronized HttpRequest generateRequest() throws IOException, HttpException {
+        if (this.tracker != null) {
+            this.tracker.phaseStarted(ExchangePhase.REQUEST_WRITE);
+        }
         HttpRoute route = this.mainRequest.getRoute();
         if (!this.routeEstablished) {
             int step;
@@ -255,6 +305,10 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
 
     public synchronized void produceContent(
             final ContentEncoder encoder, final IOControl ioctrl) throws IOException {
+        if (this.managedConn == null) {
+            // Exchange aborted
+            return;
+        }
         this.requestContentProduced = true;
         this.requestProducer.produceContent(encoder, ioctrl);
         if (encoder.isCompleted()) {
@@ -262,6 +316,12 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
         }
     }
 
+    public synchronized void requestCompleted() {
+        if (this.tracker != null) {
+            this.tracker.phaseStarted(ExchangePhase.RESPONSE_WAIT);
+        }
+    }
+
     public boolean isRepeatable() {
         return this.requestProducer.isRepeatable();
     }
@@ -272,6 +332,13 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
 
     public synchronized void responseReceived(
             final HttpResponse response) throws IOException, HttpException {
+        if (this.managedConn == null) {
+            // Exchange aborted
+            return;
+        }
+        if (this.tracker != null) {
+            this.tracker.phaseStarted(ExchangePhase.RESPONSE_BODY);
+        }
         if (this.log.isDebugEnabled()) {
             this.log.debug("Response: " + response.getStatusLine());
         }
@@ -305,6 +372,10 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
 
     public synchronized void consumeContent(
             final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+        if (this.managedConn == null) {
+            // Exchange aborted
+            return;
+        }
         if (this.finalResponse != null) {
             this.responseConsumer.consumeContent(decoder, ioctrl);
         } else {
@@ -328,7 +399,82 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
         }
     }
 
+    private void scheduleDeadline(final int timeout) {
+        this.localContext.setAttribute(AsyncClientContext.EXCHANGE_DEADLINE,
+                Long.valueOf(System.currentTimeMillis() + timeout));
+        this.deadline = this.timer.newTimeout(new Runnable() {
+
+            public void run() {
+                deadlineExpired(timeout);
+            }
+
+        }, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private void deadlineExpired(int timeout) {
+        synchronized (this) {
+            if (isDone()) {
+                return;
+            }
+            if (this.log.isDebugEnabled()) {
+                this.log.debug("Exchange deadline of " + timeout + " ms expired");
+            }
+            failed(new ExchangeTimeoutException("Exchange timed out after " + timeout + " ms"));
+        }
+        returnPermit();
+    }
+
+    private void cancelDeadline() {
+        if (this.deadline != null) {
+            this.deadline.cancel();
+            this.deadline = null;
+        }
+    }
+
+    private void releasePermit(boolean failure) {
+        if (this.permit != null) {
+            this.releasedPermit = this.permit;
+            this.releasedPermitFailed = failure;
+            this.permit = null;
+        }
+        if (this.permitFuture != null) {
+            // Detach the permit request first so that its cancellation does
+            // not get reported as the outcome of the exchange
+            Future<ExchangePermit> future = this.permitFuture;
+            this.permitFuture = null;
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Returns a released permit to the limiter. Doing so may grant permits to
+     * other exchanges and run their callbacks, which must not happen while the
+     * lock of this exchange is being held.
+     */
+    private void returnPermit() {
+        if (Thread.holdsLock(this)) {
+            // The outermost caller returns the permit once it has let go of the lock
+            return;
+        }
+        ExchangePermit local;
+        boolean failure;
+        synchronized (this) {
+            local = this.releasedPermit;
+            failure = this.releasedPermitFailed;
+            this.releasedPermit = null;
+        }
+        if (local != null) {
+            if (failure) {
+                local.failed();
+            } else {
+                local.cancelled();
+            }
+        }
+    }
+
     private void releaseResources() {
+        cancelDeadline();
+        releasePermit(false);
         if (this.managedConn != null) {
             try {
                 this.managedConn.abortConnection();
@@ -344,24 +490,74 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
         this.requestProducer.resetRequest();
     }
 
-    public synchronized void failed(final Exception ex) {
-        try {
-            this.responseConsumer.failed(ex);
-        } finally {
+    public void failed(final Exception ex) {
+        synchronized (this) {
+            if (this.tracker != null) {
+                this.tracker.exchangeFailed(ex);
+            }
+            releasePermit(true);
             try {
-                this.resultCallback.failed(ex, this);
+                this.responseConsumer.failed(ex);
             } finally {
-                releaseResources();
+                try {
+                    this.resultCallback.failed(ex, this);
+                } finally {
+                    releaseResources();
+                }
             }
         }
+        returnPermit();
     }
 
     public synchronized boolean keepAlive(final HttpResponse response) {
         return this.reuseStrategy.keepAlive(response, this.localContext);
     }
 
-    public synchronized void responseCompleted() {
+    public void responseCompleted() {
+        try {
+            ExchangePermit completedPermit;
+            synchronized (this) {
+                if (!finishResponse()) {
+                    return;
+                }
+                completedPermit = this.permit;
+                this.permit = null;
+            }
+            // Return the permit before the result gets published but without
+            // holding the lock, as this may grant permits to other exchanges
+            if (completedPermit != null) {
+                completedPermit.completed();
+            }
+            synchronized (this) {
+                if (isDone()) {
+                    // Exchange cancelled in the meantime
+                    return;
+                }
+                try {
+                    completeExchange();
+                } catch (RuntimeException runex) {
+                    failed(runex);
+                    throw runex;
+                }
+            }
+        } finally {
+            returnPermit();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the final response has been fully read and
+     * the exchange is ready to be completed.
+     */
+    private boolean finishResponse() {
+        if (this.managedConn == null) {
+            // Exchange aborted
+            return false;
+        }
         this.log.debug("Response fully read");
+        if (this.tracker != null) {
+            this.tracker.phaseCompleted(ExchangePhase.RESPONSE_BODY);
+        }
         try {
             if (this.managedConn.isOpen()) {
                 long duration = this.keepaliveStrategy.getKeepAliveDuration(
@@ -384,16 +580,10 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
             }
 
             if (this.finalResponse != null) {
-                this.responseConsumer.responseCompleted();
-                this.log.debug("Response processed");
-                T result = this.responseConsumer.getResult();
-                Exception ex = this.responseConsumer.getException();
-                if (ex == null) {
-                    this.resultCallback.completed(result, this);
-                } else {
-                    this.resultCallback.failed(ex, this);
-                }
-                releaseConnection();
+                cancelDeadline();
+                this.currentRequest = null;
+                this.currentResponse = null;
+                return true;
             } else {
                 if (this.followup != null) {
                     HttpRoute actualRoute = this.mainRequest.getRoute();
@@ -412,14 +602,45 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
             this.followup = null;
             this.currentRequest = null;
             this.currentResponse = null;
+            return false;
         } catch (RuntimeException runex) {
             failed(runex);
             throw runex;
         }
     }
 
-    public synchronized void cancel() {
+    private void completeExchange() {
+        this.responseConsumer.responseCompleted();
+        this.log.debug("Response processed");
+        T result = this.responseConsumer.getResult();
+        Exception ex = this.responseConsumer.getException();
+        if (ex == null) {
+            if (this.tracker != null) {
+                this.tracker.exchangeCompleted(this.finalResponse);
+            }
+            this.resultCallback.completed(result, this);
+        } else {
+            if (this.tracker != null) {
+                this.tracker.exchangeFailed(ex);
+            }
+            this.resultCallback.failed(ex, this);
+        }
+        releaseConnection();
+    }
+
+    public void cancel() {
+        try {
+            doCancel();
+        } finally {
+            returnPermit();
+        }
+    }
+
+    private synchronized void doCancel() {
         this.log.debug("HTTP exchange cancelled");
+        if (this.tracker != null) {
+            this.tracker.exchangeCancelled();
+        }
         try {
             this.responseConsumer.cancel();
             this.resultCallback.cancelled(this);
@@ -447,10 +668,29 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
         if (this.log.isDebugEnabled()) {
             this.log.debug("Connection request suceeded: " + conn);
         }
+        if (isDone()) {
+            // Exchange cancelled while the connection was being leased
+            try {
+                conn.releaseConnection();
+            } catch (IOException ioex) {
+                this.log.debug("I/O error releasing connection", ioex);
+            }
+            return;
+        }
         try {
             HttpRoute route = this.mainRequest.getRoute();
+            boolean opened = false;
             if (!conn.isOpen()) {
+                // Reports the DNS lookup and connect phases of the new
+                // connection, which fall within the pool wait
                 conn.open(route, this.localContext, this.params);
+                opened = true;
+            }
+            if (this.tracker != null) {
+                this.tracker.phaseCompleted(ExchangePhase.POOL_WAIT);
+                if (opened && conn.isSecure()) {
+                    tlsHandshakeStarted(conn);
+                }
             }
             this.managedConn = conn;
             this.managedConn.getContext().setAttribute(HTTP_EXCHANGE_HANDLER, this);
@@ -464,8 +704,30 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
         }
     }
 
+    private void tlsHandshakeStarted(final ManagedClientConnection conn) {
+        this.tracker.phaseStarted(ExchangePhase.TLS_HANDSHAKE);
+        conn.getContext().setAttribute(SSLLayeringStrategy.HANDSHAKE_CALLBACK, new Runnable() {
+
+            public void run() {
+                tlsHandshakeCompleted();
+            }
+
+        });
+    }
+
+    private synchronized void tlsHandshakeCompleted() {
+        if (this.tracker != null) {
+            this.tracker.phaseCompleted(ExchangePhase.TLS_HANDSHAKE);
+        }
+    }
+
     private synchronized void connectionRequestFailed(final Exception ex) {
         this.log.debug("Connection request failed", ex);
+        if (this.tracker != null) {
+            this.tracker.exchangeFailed(ex);
+        }
+        cancelDeadline();
+        releasePermit(true);
         try {
             this.requestProducer.resetRequest();
             this.responseConsumer.failed(ex);
@@ -476,6 +738,11 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
 
     private synchronized void connectionRequestCancelled() {
         this.log.debug("Connection request cancelled");
+        if (this.tracker != null) {
+            this.tracker.exchangeCancelled();
+        }
+        cancelDeadline();
+        releasePermit(false);
         try {
             this.requestProducer.resetRequest();
             this.responseConsumer.cancel();
@@ -487,21 +754,116 @@ class DefaultAsyncRequestDirector<T> implements HttpAsyncExchangeHandler<T> {
     class InternalFutureCallback implements FutureCallback<ManagedClientConnection> {
 
         public void completed(final ManagedClientConnection session) {
-            connectionRequestCompleted(session);
+            try {
+                connectionRequestCompleted(session);
+            } finally {
+                returnPermit();
+            }
         }
 
         public void failed(final Exception ex) {
-            connectionRequestFailed(ex);
+            try {
+                connectionRequestFailed(ex);
+            } finally {
+                returnPermit();
+            }
         }
 
         public void cancelled() {
-            connectionRequestCancelled();
+            try {
+                connectionRequestCancelled();
+            } finally {
+                returnPermit();
+            }
         }
 
     }
 
+    private synchronized void permitRequestCompleted(final ExchangePermit permit) {
+        this.permitFuture = null;
+        if (isDone()) {
+            // Exchange cancelled while waiting for a permit
+            this.releasedPermit = permit;
+            this.releasedPermitFailed = false;
+            return;
+        }
+        if (this.log.isDebugEnabled()) {
+            this.log.debug("Exchange permit granted: " + permit);
+        }
+        this.permit = permit;
+        try {
+            requestConnection();
+        } catch (RuntimeException runex) {
+            failed(runex);
+            throw runex;
+        }
+    }
+
+    private synchronized void permitRequestFailed(final Exception ex) {
+        this.log.debug("Exchange permit request failed", ex);
+        if (this.tracker != null) {
+            this.tracker.exchangeFailed(ex);
+        }
+        this.permitFuture = null;
+        cancelDeadline();
+        try {
+            this.requestProducer.resetRequest();
+            this.responseConsumer.failed(ex);
+        } finally {
+            this.resultCallback.failed(ex, this);
+        }
+    }
+
+    private synchronized void permitRequestCancelled() {
+        if (this.permitFuture == null) {
+            // Cancelled by this exchange while releasing its resources
+            return;
+        }
+        this.log.debug("Exchange permit request cancelled");
+        if (this.tracker != null) {
+            this.tracker.exchangeCancelled();
+        }
+        this.permitFuture = null;
+        cancelDeadline();
+        try {
+            this.requestProducer.resetRequest();
+            this.responseConsumer.cancel();
+        } finally {
+            this.resultCallback.cancelled(this);
+        }
+    }
+
+    class InternalPermitCallback implements FutureCallback<ExchangePermit> {
+
+        public void completed(final ExchangePermit permit) {
+            try {
+                permitRequestCompleted(permit);
+            } finally {
+                returnPermit();
+            }
+        }
+
+        public void failed(final Exception ex) {
+            permitRequestFailed(ex);
+        }
+
+        public void cancelled() {
+            permitRequestCancelled();
+        }
+
+    }
+
+    private void requestPermit() {
+        HttpRoute route = this.mainRequest.getRoute();
+        this.permitFuture = this.exchangeLimiter.acquire(route, new InternalPermitCallback());
+    }
+
     private void requestConnection() {
         HttpRoute route = this.mainRequest.getRoute();
+        if (this.tracker != null) {
+            this.tracker.setRoute(route);
+            this.tracker.phaseStarted(ExchangePhase.POOL_WAIT);
+        }
         long connectTimeout = HttpConnectionParams.getConnectionTimeout(this.params);
         Object userToken = this.localContext.getAttribute(ClientContext.USER_TOKEN);
         this.connFuture = this.connmgr.leaseConnection(
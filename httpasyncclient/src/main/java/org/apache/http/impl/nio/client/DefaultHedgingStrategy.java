@@ -0,0 +1,263 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.nio.client.HedgingStrategy;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Default {@link HedgingStrategy} implementation.
+ * <p>
+ * Safe requests (<code>GET</code>, <code>HEAD</code>, <code>OPTIONS</code>
+ * and <code>TRACE</code>) are hedged after a fixed delay or, if a percentile
+ * has been configured, after the given percentile of recently observed response
+ * times for the target host. Hedged requests are sent to the original target.
+ * <p>
+ * The share of hedged requests is limited to the given ratio of all hedgeable
+ * requests by means of a token bucket. The bucket starts full so that a burst
+ * of slow responses can be hedged right after start-up.
+ * <p>
+ * Response times are sampled from the original request only. If a hedged
+ * request wins, the time the original request had been pending for is
+ * recorded instead, so that the hedge delay does not drift towards the
+ * response times of the fastest attempts.
+ */
+public class DefaultHedgingStrategy implements HedgingStrategy {
+
+    private static final int MAX_TARGETS = 1024;
+    private static final int MIN_SAMPLES = 20;
+
+    private final long delay;
+    private final double percentile;
+    private final double maxHedgeRatio;
+    private final double maxBurst;
+    private final Map<HttpHost, LatencyWindow> latencies;
+
+    private final AtomicLong requestCount;
+    private final AtomicLong hedgeCount;
+    private final AtomicLong hedgeWinCount;
+    private final AtomicLong hedgeDeniedCount;
+
+    private double tokens;
+
+    /**
+     * @param delay the delay after which requests are hedged.
+     * @param tunit the time unit of the delay.
+     * @param percentile percentile of observed response times (for instance
+     *   <code>0.95</code>) to be used as a hedge delay, or <code>0</code>
+     *   to always use the fixed delay.
+     * @param maxHedgeRatio maximum share of requests that can be hedged
+     *   (for instance <code>0.05</code>).
+     */
+    public DefaultHedgingStrategy(
+            long delay, final TimeUnit tunit,
+            double percentile,
+            double maxHedgeRatio) {
+        super();
+        if (tunit == null) {
+            throw new IllegalArgumentException("Time unit may not be null");
+        }
+        if (percentile < 0 || percentile >= 1) {
+            throw new IllegalArgumentException("Percentile must be in range [0, 1)");
+        }
+        if (maxHedgeRatio < 0 || maxHedgeRatio > 1) {
+            throw new IllegalArgumentException("Hedge ratio must be in range [0, 1]");
+        }
+        this.delay = tunit.toMillis(delay);
+        this.percentile = percentile;
+        this.maxHedgeRatio = maxHedgeRatio;
+        this.maxBurst = 10;
+        this.latencies = new ConcurrentHashMap<HttpHost, LatencyWindow>();
+        this.requestCount = new AtomicLong();
+        this.hedgeCount = new AtomicLong();
+        this.hedgeWinCount = new AtomicLong();
+        this.hedgeDeniedCount = new AtomicLong();
+        this.tokens = maxHedgeRatio > 0 ? this.maxBurst : 0;
+    }
+
+    public DefaultHedgingStrategy(long delay, final TimeUnit tunit) {
+        this(delay, tunit, 0, 0.05);
+    }
+
+    protected boolean isHedgeable(final HttpRequest request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            return false;
+        }
+        String method = request.getRequestLine().getMethod();
+        return method.equalsIgnoreCase("GET")
+            || method.equalsIgnoreCase("HEAD")
+            || method.equalsIgnoreCase("OPTIONS")
+            || method.equalsIgnoreCase("TRACE");
+    }
+
+    public long getHedgeDelay(
+            final HttpHost target, final HttpRequest request, final HttpContext context) {
+        if (!isHedgeable(request)) {
+            return -1;
+        }
+        this.requestCount.incrementAndGet();
+        synchronized (this) {
+            this.tokens = Math.min(this.maxBurst, this.tokens + this.maxHedgeRatio);
+        }
+        if (this.percentile > 0) {
+            LatencyWindow window = this.latencies.get(target);
+            if (window != null) {
+                long estimate = window.getPercentile(this.percentile);
+                if (estimate >= 0) {
+                    return Math.max(estimate, 1);
+                }
+            }
+        }
+        return this.delay;
+    }
+
+    public HttpHost getHedgeTarget(
+            final HttpHost target, final HttpRequest request, final HttpContext context) {
+        return target;
+    }
+
+    public boolean tryHedge(final HttpHost target) {
+        synchronized (this) {
+            if (this.tokens >= 1) {
+                this.tokens -= 1;
+                this.hedgeCount.incrementAndGet();
+                return true;
+            }
+        }
+        this.hedgeDeniedCount.incrementAndGet();
+        return false;
+    }
+
+    public void responseStarted(final HttpHost target, long duration, final TimeUnit tunit) {
+        if (this.percentile <= 0) {
+            return;
+        }
+        LatencyWindow window = this.latencies.get(target);
+        if (window == null) {
+            if (this.latencies.size() >= MAX_TARGETS) {
+                this.latencies.clear();
+            }
+            window = new LatencyWindow(128);
+            this.latencies.put(target, window);
+        }
+        window.add(tunit.toMillis(duration));
+    }
+
+    public void hedgeCompleted(final HttpHost target, boolean hedgeWon) {
+        if (hedgeWon) {
+            this.hedgeWinCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the total number of requests eligible for hedging.
+     */
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    /**
+     * Returns the total number of hedged requests sent.
+     */
+    public long getHedgeCount() {
+        return this.hedgeCount.get();
+    }
+
+    /**
+     * Returns the number of hedged requests whose response arrived first.
+     */
+    public long getHedgeWinCount() {
+        return this.hedgeWinCount.get();
+    }
+
+    /**
+     * Returns the number of hedged requests denied by the rate limit.
+     */
+    public long getHedgeDeniedCount() {
+        return this.hedgeDeniedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("[requests: ").append(this.requestCount);
+        buffer.append("; hedged: ").append(this.hedgeCount);
+        buffer.append("; won: ").append(this.hedgeWinCount);
+        buffer.append("; denied: ").append(this.hedgeDeniedCount);
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    static class LatencyWindow {
+
+        private final long[] samples;
+        private int idx;
+        private int count;
+        private int sinceSorted;
+        private long[] sorted;
+
+        LatencyWindow(int size) {
+            super();
+            this.samples = new long[size];
+        }
+
+        synchronized void add(long sample) {
+            this.samples[this.idx] = sample;
+            this.idx = (this.idx + 1) % this.samples.length;
+            if (this.count < this.samples.length) {
+                this.count++;
+            }
+            this.sinceSorted++;
+        }
+
+        synchronized long getPercentile(double p) {
+            if (this.count < MIN_SAMPLES) {
+                return -1;
+            }
+            if (this.sorted == null || this.sinceSorted >= 16) {
+                long[] copy = new long[this.count];
+                System.arraycopy(this.samples, 0, copy, 0, this.count);
+                Arrays.sort(copy);
+                this.sorted = copy;
+                this.sinceSorted = 0;
+            }
+            int i = (int) Math.ceil(p * this.sorted.length) - 1;
+            return this.sorted[Math.max(0, Math.min(i, this.sorted.length - 1))];
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+/**
+ * Progress of a single I/O dispatch thread. The start time of the event
+ * being handled is set while the thread executes protocol handler code
+ * and cleared once control returns to the I/O reactor, so that a thread
+ * stuck in a callback can be detected from another thread.
+ */
+class DispatcherHeartbeat {
+
+    private final Thread thread;
+
+    private volatile long eventStart;
+    private volatile long reportedEventStart;
+
+    DispatcherHeartbeat(final Thread thread) {
+        super();
+        this.thread = thread;
+    }
+
+    Thread getThread() {
+        return this.thread;
+    }
+
+    void eventStarted(long now) {
+        this.eventStart = now;
+    }
+
+    /**
+     * Marks the current event as completed and returns its duration.
+     */
+    long eventCompleted(long now) {
+        long start = this.eventStart;
+        this.eventStart = 0;
+        return now - start;
+    }
+
+    /**
+     * Returns the start time of the event being handled or <code>0</code>
+     * if the thread is not handling an event.
+     */
+    long getEventStart() {
+        return this.eventStart;
+    }
+
+    /**
+     * Marks the event started at the given time as reported. Returns
+     * <code>false</code> if it has already been reported.
+     */
+    boolean markReported(long start) {
+        if (this.reportedEventStart == start) {
+            return false;
+        }
+        this.reportedEventStart = start;
+        return true;
+    }
+
+}
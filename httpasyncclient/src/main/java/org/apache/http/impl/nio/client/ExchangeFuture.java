@@ -0,0 +1,87 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.client.HttpAsyncExchangeHandler;
+
+/**
+ * Future of an HTTP exchange. Cancelling the future aborts the exchange:
+ * a pending connection request gets cancelled, a leased connection
+ * gets shut down and returned to the pool. Waiting for the result of a
+ * cancelled exchange throws a {@link CancellationException}.
+ */
+class ExchangeFuture<T> extends BasicFuture<T> {
+
+    private volatile HttpAsyncExchangeHandler<T> exchangeHandler;
+
+    ExchangeFuture(final FutureCallback<T> callback) {
+        super(callback);
+    }
+
+    void setExchangeHandler(final HttpAsyncExchangeHandler<T> exchangeHandler) {
+        this.exchangeHandler = exchangeHandler;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            HttpAsyncExchangeHandler<T> handler = this.exchangeHandler;
+            if (handler != null) {
+                handler.cancel();
+            }
+        }
+        return cancelled;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        T result = super.get();
+        if (isCancelled()) {
+            throw new CancellationException("Exchange cancelled");
+        }
+        return result;
+    }
+
+    @Override
+    public T get(long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        T result = super.get(timeout, unit);
+        if (isCancelled()) {
+            throw new CancellationException("Exchange cancelled");
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,278 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.nio.NHttpConnection;
+import org.apache.http.nio.client.ExchangeListener;
+import org.apache.http.nio.client.ExchangePhase;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * {@link ExchangeListener} that aggregates exchange events into per-route
+ * metrics: exchange counts, response status classes, bytes sent and
+ * received and a latency histogram. In addition a latency histogram is kept
+ * for each {@link ExchangePhase} across all routes.
+ * <p>
+ * Metrics are kept for a bounded number of routes. When a new route is
+ * seen and the limit has been reached, the metrics of the least recently
+ * used route are discarded.
+ */
+public class ExchangeMetricsRegistry implements ExchangeListener {
+
+    private static final String EXCHANGE_TIMES = "http.nio.exchange-metrics.times";
+    private static final String CONNECTION_BASELINE = "http.nio.exchange-metrics.baseline";
+    private static final int EXCHANGE_START = ExchangePhase.values().length;
+
+    private final int maxRoutes;
+    private final ConcurrentHashMap<HttpRoute, RouteMetrics> routes;
+    private final Map<ExchangePhase, LatencyHistogram> phases;
+    private final AtomicLong evictedCount;
+
+    public ExchangeMetricsRegistry(int maxRoutes) {
+        super();
+        if (maxRoutes <= 0) {
+            throw new IllegalArgumentException("Max routes may not be negative or zero");
+        }
+        this.maxRoutes = maxRoutes;
+        this.routes = new ConcurrentHashMap<HttpRoute, RouteMetrics>();
+        this.phases = new EnumMap<ExchangePhase, LatencyHistogram>(ExchangePhase.class);
+        for (ExchangePhase phase: ExchangePhase.values()) {
+            this.phases.put(phase, new LatencyHistogram());
+        }
+        this.evictedCount = new AtomicLong();
+    }
+
+    public ExchangeMetricsRegistry() {
+        this(100);
+    }
+
+    public int getMaxRoutes() {
+        return this.maxRoutes;
+    }
+
+    /**
+     * Returns the number of routes whose metrics have been discarded in
+     * order to stay within the route limit.
+     */
+    public long getEvictedRouteCount() {
+        return this.evictedCount.get();
+    }
+
+    public Set<HttpRoute> getRoutes() {
+        return new HashSet<HttpRoute>(this.routes.keySet());
+    }
+
+    /**
+     * Returns a snapshot of the metrics of the given route or
+     * <code>null</code> if no metrics are kept for it.
+     */
+    public RouteMetricsSnapshot getSnapshot(final HttpRoute route) {
+        RouteMetrics metrics = this.routes.get(route);
+        return metrics != null ? metrics.getSnapshot() : null;
+    }
+
+    public List<RouteMetricsSnapshot> getSnapshots() {
+        List<RouteMetricsSnapshot> snapshots = new ArrayList<RouteMetricsSnapshot>();
+        for (RouteMetrics metrics: this.routes.values()) {
+            snapshots.add(metrics.getSnapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Returns a snapshot of the durations of the given phase across all
+     * routes.
+     */
+    public HistogramSnapshot getPhaseSnapshot(final ExchangePhase phase) {
+        if (phase == null) {
+            throw new IllegalArgumentException("Exchange phase may not be null");
+        }
+        return this.phases.get(phase).getSnapshot();
+    }
+
+    public void removeRoute(final HttpRoute route) {
+        this.routes.remove(route);
+    }
+
+    /**
+     * Discards the metrics of routes that have not been used for the given
+     * time.
+     */
+    public void removeIdleRoutes(long idleTime, final TimeUnit tunit) {
+        if (tunit == null) {
+            throw new IllegalArgumentException("Time unit may not be null");
+        }
+        long deadline = System.nanoTime() - tunit.toNanos(idleTime);
+        for (RouteMetrics metrics: this.routes.values()) {
+            if (metrics.getLastUsed() - deadline < 0) {
+                this.routes.remove(metrics.getRoute());
+            }
+        }
+    }
+
+    private RouteMetrics getRouteMetrics(final HttpRoute route, long now) {
+        if (route == null) {
+            return null;
+        }
+        RouteMetrics metrics = this.routes.get(route);
+        if (metrics == null) {
+            metrics = new RouteMetrics(route, now);
+            RouteMetrics existing = this.routes.putIfAbsent(route, metrics);
+            if (existing != null) {
+                metrics = existing;
+            } else if (this.routes.size() > this.maxRoutes) {
+                evictLeastRecentlyUsed(metrics);
+            }
+        } else {
+            metrics.touch(now);
+        }
+        return metrics;
+    }
+
+    private void evictLeastRecentlyUsed(final RouteMetrics keep) {
+        RouteMetrics oldest = null;
+        for (RouteMetrics metrics: this.routes.values()) {
+            if (metrics != keep
+                    && (oldest == null || metrics.getLastUsed() - oldest.getLastUsed() < 0)) {
+                oldest = metrics;
+            }
+        }
+        if (oldest != null && this.routes.remove(oldest.getRoute()) != null) {
+            this.evictedCount.incrementAndGet();
+        }
+    }
+
+    private static long[] getExchangeTimes(final HttpContext context) {
+        return context != null ? (long[]) context.getAttribute(EXCHANGE_TIMES) : null;
+    }
+
+    private static void updateTransferred(final RouteMetrics metrics, final HttpContext context) {
+        Object conn = context != null ? context.getAttribute(ExecutionContext.HTTP_CONNECTION) : null;
+        if (!(conn instanceof NHttpConnection)) {
+            return;
+        }
+        NHttpConnection nconn = (NHttpConnection) conn;
+        HttpConnectionMetrics connMetrics;
+        HttpContext connContext;
+        try {
+            connMetrics = nconn.getMetrics();
+            connContext = nconn.getContext();
+        } catch (RuntimeException ex) {
+            // Connection already released
+            return;
+        }
+        // Connection metrics are cumulative: report the difference to the
+        // counts seen at the end of the previous exchange on the connection
+        long sent = connMetrics.getSentBytesCount();
+        long received = connMetrics.getReceivedBytesCount();
+        long[] baseline = (long[]) connContext.getAttribute(CONNECTION_BASELINE);
+        if (baseline == null) {
+            baseline = new long[2];
+            connContext.setAttribute(CONNECTION_BASELINE, baseline);
+        }
+        metrics.transferred(sent - baseline[0], received - baseline[1]);
+        baseline[0] = sent;
+        baseline[1] = received;
+    }
+
+    public void exchangeStarted(
+            final HttpRoute route, final HttpRequest request,
+            final HttpContext context, long nanoTime) {
+        if (context != null) {
+            long[] times = new long[EXCHANGE_START + 1];
+            times[EXCHANGE_START] = nanoTime;
+            context.setAttribute(EXCHANGE_TIMES, times);
+        }
+    }
+
+    public void phaseStarted(
+            final ExchangePhase phase, final HttpRoute route,
+            final HttpContext context, long nanoTime) {
+        long[] times = getExchangeTimes(context);
+        if (times != null) {
+            times[phase.ordinal()] = nanoTime;
+        }
+    }
+
+    public void phaseCompleted(
+            final ExchangePhase phase, final HttpRoute route,
+            final HttpContext context, long nanoTime) {
+        long[] times = getExchangeTimes(context);
+        if (times != null && times[phase.ordinal()] != 0) {
+            this.phases.get(phase).record(nanoTime - times[phase.ordinal()]);
+            times[phase.ordinal()] = 0;
+        }
+    }
+
+    public void exchangeCompleted(
+            final HttpRoute route, final HttpResponse response,
+            final HttpContext context, long nanoTime) {
+        RouteMetrics metrics = getRouteMetrics(route, nanoTime);
+        if (metrics == null) {
+            return;
+        }
+        long[] times = getExchangeTimes(context);
+        long duration = times != null ? nanoTime - times[EXCHANGE_START] : 0;
+        int status = response != null ? response.getStatusLine().getStatusCode() : 0;
+        metrics.exchangeCompleted(status, duration);
+        updateTransferred(metrics, context);
+    }
+
+    public void exchangeFailed(
+            final HttpRoute route, final Exception ex,
+            final HttpContext context, long nanoTime) {
+        RouteMetrics metrics = getRouteMetrics(route, nanoTime);
+        if (metrics != null) {
+            metrics.exchangeFailed();
+            updateTransferred(metrics, context);
+        }
+    }
+
+    public void exchangeCancelled(
+            final HttpRoute route, final HttpContext context, long nanoTime) {
+        RouteMetrics metrics = getRouteMetrics(route, nanoTime);
+        if (metrics != null) {
+            metrics.exchangeCancelled();
+        }
+    }
+
+}
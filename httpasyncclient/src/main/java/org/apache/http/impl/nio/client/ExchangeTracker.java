@@ -0,0 +1,106 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.nio.client.ExchangeListener;
+import org.apache.http.nio.client.ExchangePhase;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Reports the progress of a single exchange to an {@link ExchangeListener}.
+ * Only created if a listener is present, so that exchanges without one pay
+ * no more than a null check per event. Not thread safe; expected to be
+ * used with the request director locked.
+ */
+class ExchangeTracker {
+
+    private final ExchangeListener listener;
+    private final HttpContext context;
+
+    private HttpRoute route;
+    private ExchangePhase phase;
+    private boolean terminated;
+
+    ExchangeTracker(final ExchangeListener listener, final HttpContext context) {
+        super();
+        this.listener = listener;
+        this.context = context;
+    }
+
+    void exchangeStarted(final HttpRoute route, final HttpRequest request) {
+        this.route = route;
+        this.listener.exchangeStarted(route, request, this.context, System.nanoTime());
+    }
+
+    void setRoute(final HttpRoute route) {
+        this.route = route;
+    }
+
+    /**
+     * Completes the current phase, if any, and starts the given one.
+     */
+    void phaseStarted(final ExchangePhase phase) {
+        long now = System.nanoTime();
+        if (this.phase != null) {
+            this.listener.phaseCompleted(this.phase, this.route, this.context, now);
+        }
+        this.phase = phase;
+        this.listener.phaseStarted(phase, this.route, this.context, now);
+    }
+
+    void phaseCompleted(final ExchangePhase phase) {
+        if (this.phase == phase) {
+            this.phase = null;
+            this.listener.phaseCompleted(phase, this.route, this.context, System.nanoTime());
+        }
+    }
+
+    void exchangeCompleted(final HttpResponse response) {
+        if (!this.terminated) {
+            this.terminated = true;
+            this.listener.exchangeCompleted(this.route, response, this.context, System.nanoTime());
+        }
+    }
+
+    void exchangeFailed(final Exception ex) {
+        if (!this.terminated) {
+            this.terminated = true;
+            this.listener.exchangeFailed(this.route, ex, this.context, System.nanoTime());
+        }
+    }
+
+    void exchangeCancelled() {
+        if (!this.terminated) {
+            this.terminated = true;
+            this.listener.exchangeCancelled(this.route, this.context, System.nanoTime());
+        }
+    }
+
+}
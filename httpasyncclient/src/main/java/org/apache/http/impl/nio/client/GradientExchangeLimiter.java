@@ -0,0 +1,232 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * {@link BoundedExchangeLimiter} that adapts the number of exchanges allowed
+ * in flight per route to the observed latency of the route.
+ * <p>
+ * For every route the limiter keeps an estimate of the no-load round trip
+ * time. The estimate is the shortest exchange time observed. It can only
+ * increase through samples taken while the route is lightly loaded. Each
+ * completed exchange yields a gradient equal to the no-load RTT divided by
+ * the RTT of that exchange. A gradient close to <code>1</code> means no
+ * requests are queueing at the server. In that case the limit grows by a
+ * queue allowance of roughly the square root of the current limit. A
+ * lower gradient shrinks the limit in proportion. Failed exchanges cut the
+ * limit by a fixed backoff ratio. A route counts as lightly loaded while it
+ * uses less than half of its limit. Samples taken then never change the
+ * limit.
+ * <p>
+ * The adaptive limit never exceeds the static per route maximum. The state
+ * kept for a route is discarded once the route has been idle for longer than
+ * the idle route expiry (one minute by default).
+ */
+public class GradientExchangeLimiter extends BoundedExchangeLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final ConcurrentHashMap<HttpRoute, RouteLimit> limits;
+
+    private volatile long idleExpiry;
+    private long lastPurge;
+
+    public GradientExchangeLimiter(
+            int maxTotal,
+            int maxPerRoute,
+            int initialLimit,
+            int minLimit,
+            final OverflowPolicy policy,
+            int maxPending) {
+        super(maxTotal, maxPerRoute, policy, maxPending);
+        if (minLimit <= 0) {
+            throw new IllegalArgumentException("Min limit may not be negative or zero");
+        }
+        if (initialLimit < minLimit) {
+            throw new IllegalArgumentException("Initial limit may not be less than min limit");
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.limits = new ConcurrentHashMap<HttpRoute, RouteLimit>();
+        this.idleExpiry = TimeUnit.SECONDS.toNanos(60);
+        this.lastPurge = System.nanoTime();
+    }
+
+    public GradientExchangeLimiter(int maxTotal, int maxPerRoute) {
+        this(maxTotal, maxPerRoute, Math.min(20, maxPerRoute), 1,
+                OverflowPolicy.WAIT, Integer.MAX_VALUE);
+    }
+
+    private RouteLimit getRouteLimitState(final HttpRoute route) {
+        RouteLimit limit = this.limits.get(route);
+        if (limit == null) {
+            limit = new RouteLimit(this.initialLimit);
+            RouteLimit existing = this.limits.putIfAbsent(route, limit);
+            if (existing != null) {
+                limit = existing;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Sets the time after which the adaptive limit of an idle route is
+     * discarded. A route that becomes active again starts over with the
+     * initial limit.
+     */
+    public void setIdleRouteExpiry(long expiry, final TimeUnit tunit) {
+        if (tunit == null) {
+            throw new IllegalArgumentException("Time unit may not be null");
+        }
+        if (expiry <= 0) {
+            throw new IllegalArgumentException("Expiry may not be negative or zero");
+        }
+        this.idleExpiry = tunit.toNanos(expiry);
+    }
+
+    @Override
+    protected int getRouteLimit(final HttpRoute route) {
+        return Math.min(getRouteLimitState(route).getLimit(), super.getRouteLimit(route));
+    }
+
+    @Override
+    protected void exchangeCompleted(final HttpRoute route, long rtt) {
+        int inFlight = getInFlightCount(route);
+        getRouteLimitState(route).sample(rtt, inFlight, super.getRouteLimit(route));
+    }
+
+    @Override
+    protected void exchangeFailed(final HttpRoute route) {
+        getRouteLimitState(route).drop();
+    }
+
+    @Override
+    protected void routeIdle(final HttpRoute route) {
+        long now = System.nanoTime();
+        RouteLimit limit = this.limits.get(route);
+        if (limit != null) {
+            limit.idleSince = now;
+        }
+        long expiry = this.idleExpiry;
+        if (now - this.lastPurge < expiry) {
+            return;
+        }
+        this.lastPurge = now;
+        Iterator<Map.Entry<HttpRoute, RouteLimit>> it = this.limits.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<HttpRoute, RouteLimit> entry = it.next();
+            HttpRoute candidate = entry.getKey();
+            if (now - entry.getValue().idleSince > expiry
+                    && getInFlightCount(candidate) == 0
+                    && getPendingCount(candidate) == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of routes an adaptive limit is kept for.
+     */
+    int getRouteCount() {
+        return this.limits.size();
+    }
+
+    /**
+     * Returns the current adaptive limit for the given route.
+     */
+    public int getLimit(final HttpRoute route) {
+        RouteLimit limit = this.limits.get(route);
+        return limit != null ? limit.getLimit() : Math.max(this.minLimit, this.initialLimit);
+    }
+
+    /**
+     * Returns the current estimate of the no-load round trip time for the
+     * given route or <code>-1</code> if no exchange has completed yet.
+     */
+    public long getNoLoadRtt(final HttpRoute route, final TimeUnit tunit) {
+        RouteLimit limit = this.limits.get(route);
+        long rtt = limit != null ? limit.getNoLoadRtt() : 0;
+        return rtt > 0 ? tunit.convert(rtt, TimeUnit.NANOSECONDS) : -1;
+    }
+
+    class RouteLimit {
+
+        private volatile double limit;
+        private volatile long idleSince;
+        private long noLoadRtt;
+
+        RouteLimit(int initialLimit) {
+            super();
+            this.limit = initialLimit;
+            this.idleSince = System.nanoTime();
+        }
+
+        int getLimit() {
+            return Math.max(minLimit, (int) this.limit);
+        }
+
+        synchronized long getNoLoadRtt() {
+            return this.noLoadRtt;
+        }
+
+        synchronized void sample(long rtt, int inFlight, int maxLimit) {
+            if (rtt <= 0) {
+                rtt = 1;
+            }
+            if (this.noLoadRtt == 0 || rtt < this.noLoadRtt) {
+                this.noLoadRtt = rtt;
+            }
+            double current = this.limit;
+            if (inFlight * 2 < current) {
+                // Light load: let the no-load RTT follow genuine increases
+                // but do not judge the limit
+                this.noLoadRtt = (long) (this.noLoadRtt * (1 - SMOOTHING) + rtt * SMOOTHING);
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, (double) this.noLoadRtt / rtt));
+            double newLimit = current * gradient + Math.sqrt(current);
+            newLimit = current * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            this.limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        }
+
+        synchronized void drop() {
+            this.limit = Math.max(minLimit, this.limit * BACKOFF_RATIO);
+        }
+
+    }
+
+}
@@ -0,0 +1,256 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Timer optimized for large numbers of short lived timeouts most of which
+ * get cancelled before they expire, such as exchange deadlines. Timeouts
+ * are kept in a wheel of buckets, one bucket per tick, which makes adding
+ * and cancelling a timeout a constant time operation. A single worker
+ * thread, started when the first timeout is scheduled, advances the wheel
+ * once per tick and executes expired tasks. Tasks are expected to complete
+ * quickly as they hold up the expiry of all other timeouts.
+ * <p>
+ * Timeouts expire with a precision of one tick.
+ */
+class HashedWheelTimer {
+
+    private final Log log;
+    private final String name;
+    private final long tickNanos;
+    private final LinkedList<Timeout>[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pending;
+
+    private volatile Thread worker;
+    private volatile boolean shutdown;
+    private long startTime;
+
+    @SuppressWarnings("unchecked")
+    HashedWheelTimer(
+            final Log log,
+            final String name,
+            long tickDuration, final TimeUnit tunit,
+            int ticksPerWheel) {
+        super();
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        if (ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("Ticks per wheel must be positive");
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.log = log;
+        this.name = name;
+        this.tickNanos = tunit.toNanos(tickDuration);
+        this.wheel = new LinkedList[size];
+        for (int i = 0; i < size; i++) {
+            this.wheel[i] = new LinkedList<Timeout>();
+        }
+        this.mask = size - 1;
+        this.pending = new ConcurrentLinkedQueue<Timeout>();
+    }
+
+    HashedWheelTimer(final Log log, final String name) {
+        this(log, name, 10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * Schedules the task for execution after the given delay.
+     *
+     * @throws IllegalStateException if the timer has been stopped.
+     */
+    Timeout newTimeout(final Runnable task, long delay, final TimeUnit tunit) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task may not be null");
+        }
+        if (this.shutdown) {
+            throw new IllegalStateException("Timer has been stopped");
+        }
+        ensureStarted();
+        Timeout timeout = new Timeout(task, System.nanoTime() + tunit.toNanos(Math.max(delay, 0)));
+        this.pending.add(timeout);
+        return timeout;
+    }
+
+    private void ensureStarted() {
+        if (this.worker != null) {
+            return;
+        }
+        synchronized (this) {
+            if (this.worker == null) {
+                this.startTime = System.nanoTime();
+                Thread t = new Thread(new Worker(this.startTime), this.name);
+                t.setDaemon(true);
+                t.start();
+                this.worker = t;
+            }
+        }
+    }
+
+    /**
+     * Stops the timer. Pending timeouts are discarded.
+     */
+    void stop() {
+        this.shutdown = true;
+        Thread t = this.worker;
+        if (t != null) {
+            t.interrupt();
+        }
+        this.pending.clear();
+    }
+
+    class Worker implements Runnable {
+
+        private final long startTime;
+        private long tick;
+
+        Worker(long startTime) {
+            super();
+            this.startTime = startTime;
+        }
+
+        public void run() {
+            while (!shutdown) {
+                if (!awaitTick()) {
+                    break;
+                }
+                transferPending();
+                expire(wheel[(int) (this.tick & mask)]);
+                this.tick++;
+            }
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i].clear();
+            }
+        }
+
+        private boolean awaitTick() {
+            long deadline = this.startTime + (this.tick + 1) * tickNanos;
+            for (;;) {
+                long sleepNanos = deadline - System.nanoTime();
+                if (sleepNanos <= 0) {
+                    return true;
+                }
+                try {
+                    Thread.sleep(sleepNanos / 1000000, (int) (sleepNanos % 1000000));
+                } catch (InterruptedException ex) {
+                    return false;
+                }
+            }
+        }
+
+        private void transferPending() {
+            Timeout timeout;
+            while ((timeout = pending.poll()) != null) {
+                if (timeout.isCancelled()) {
+                    continue;
+                }
+                long ticks = (timeout.deadline - this.startTime + tickNanos - 1) / tickNanos;
+                timeout.rounds = (ticks - this.tick) / wheel.length;
+                int idx = (int) (Math.max(ticks, this.tick) & mask);
+                wheel[idx].add(timeout);
+            }
+        }
+
+        private void expire(final LinkedList<Timeout> bucket) {
+            Iterator<Timeout> it = bucket.iterator();
+            while (it.hasNext()) {
+                Timeout timeout = it.next();
+                if (timeout.isCancelled()) {
+                    it.remove();
+                } else if (timeout.rounds <= 0) {
+                    it.remove();
+                    timeout.expire();
+                } else {
+                    timeout.rounds--;
+                }
+            }
+        }
+
+    }
+
+    class Timeout {
+
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state;
+
+        private long rounds;
+
+        Timeout(final Runnable task, long deadline) {
+            super();
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(INIT);
+        }
+
+        /**
+         * Cancels the timeout. Returns <code>false</code> if the timeout
+         * has already expired or been cancelled.
+         */
+        boolean cancel() {
+            return this.state.compareAndSet(INIT, CANCELLED);
+        }
+
+        boolean isCancelled() {
+            return this.state.get() == CANCELLED;
+        }
+
+        boolean isExpired() {
+            return this.state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!this.state.compareAndSet(INIT, EXPIRED)) {
+                return;
+            }
+            try {
+                this.task.run();
+            } catch (RuntimeException ex) {
+                log.error("Unexpected exception executing timer task", ex);
+            }
+        }
+
+    }
+
+}
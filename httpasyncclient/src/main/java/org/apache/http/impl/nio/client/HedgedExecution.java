@@ -0,0 +1,325 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.HedgingStrategy;
+import org.apache.http.nio.client.HttpAsyncResponseConsumer;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Executes a request and, if no response has started arriving within the
+ * delay given by the {@link HedgingStrategy}, a duplicate of it. The first
+ * response to arrive wins; the other exchange gets cancelled in order to
+ * release its connection as soon as possible. Cancelling the future of
+ * the hedged execution cancels all pending exchanges.
+ */
+class HedgedExecution implements Runnable {
+
+    private final Log log;
+    private final AbstractHttpAsyncClient client;
+    private final HedgingStrategy strategy;
+    private final HttpHost target;
+    private final HttpRequest request;
+    private final HttpContext context;
+    private final HedgedFuture future;
+
+    private Attempt primary;
+    private Attempt hedge;
+    private Attempt winner;
+
+    HedgedExecution(
+            final Log log,
+            final AbstractHttpAsyncClient client,
+            final HedgingStrategy strategy,
+            final HttpHost target,
+            final HttpRequest request,
+            final HttpContext context,
+            final FutureCallback<HttpResponse> callback) {
+        super();
+        this.log = log;
+        this.client = client;
+        this.strategy = strategy;
+        this.target = target;
+        this.request = request;
+        this.context = context;
+        this.future = new HedgedFuture(callback);
+    }
+
+    public Future<HttpResponse> getFuture() {
+        return this.future;
+    }
+
+    public void start() {
+        long delay = this.strategy.getHedgeDelay(this.target, this.request, this.context);
+        Attempt attempt = new Attempt(this.target, false);
+        synchronized (this) {
+            this.primary = attempt;
+        }
+        attempt.execute(this.context);
+        if (delay >= 0) {
+            this.client.schedule(this, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void run() {
+        Attempt attempt;
+        synchronized (this) {
+            if (this.future.isDone() || this.winner != null || this.hedge != null
+                    || this.primary.done) {
+                return;
+            }
+            if (!this.strategy.tryHedge(this.target)) {
+                this.log.debug("Hedged request denied");
+                return;
+            }
+            HttpHost hedgeTarget = this.strategy.getHedgeTarget(
+                    this.target, this.request, this.context);
+            if (hedgeTarget == null) {
+                hedgeTarget = this.target;
+            }
+            attempt = new Attempt(hedgeTarget, true);
+            this.hedge = attempt;
+        }
+        if (this.log.isDebugEnabled()) {
+            this.log.debug("Sending hedged request to " + attempt.target);
+        }
+        attempt.execute(this.context != null ? new BasicHttpContext(this.context) : null);
+    }
+
+    private void cancelAttempts() {
+        Attempt first;
+        Attempt second;
+        synchronized (this) {
+            first = this.primary;
+            second = this.hedge;
+        }
+        if (first != null) {
+            first.cancel();
+        }
+        if (second != null) {
+            second.cancel();
+        }
+    }
+
+    private boolean responseStarted(final Attempt attempt) {
+        Attempt original;
+        Attempt loser;
+        synchronized (this) {
+            if (this.winner != null) {
+                return this.winner == attempt;
+            }
+            this.winner = attempt;
+            original = this.primary;
+            loser = attempt == this.primary ? this.hedge : this.primary;
+        }
+        // Always sample the original request, even if it lost, as the hedge
+        // delay would otherwise only ever shrink
+        this.strategy.responseStarted(this.target,
+                System.currentTimeMillis() - original.startTime, TimeUnit.MILLISECONDS);
+        if (loser != null) {
+            this.strategy.hedgeCompleted(this.target, attempt.hedge);
+            if (this.log.isDebugEnabled()) {
+                this.log.debug((attempt.hedge ? "Hedged" : "Original") + " request won");
+            }
+            loser.cancel();
+        }
+        return true;
+    }
+
+    private void attemptCompleted(final Attempt attempt, final HttpResponse response) {
+        synchronized (this) {
+            attempt.done = true;
+            if (this.winner != attempt) {
+                return;
+            }
+        }
+        this.future.completed(response);
+    }
+
+    private void attemptFailed(final Attempt attempt, final Exception ex) {
+        synchronized (this) {
+            attempt.done = true;
+            if (this.winner != null && this.winner != attempt) {
+                return;
+            }
+            Attempt other = attempt == this.primary ? this.hedge : this.primary;
+            if (this.winner == null && other != null && !other.done) {
+                // Let the other exchange complete
+                return;
+            }
+        }
+        this.future.failed(ex);
+    }
+
+    private void attemptCancelled(final Attempt attempt) {
+        synchronized (this) {
+            attempt.done = true;
+            if (this.winner != null && this.winner != attempt) {
+                return;
+            }
+            Attempt other = attempt == this.primary ? this.hedge : this.primary;
+            if (this.winner == null && other != null && !other.done) {
+                return;
+            }
+        }
+        this.future.cancel(true);
+    }
+
+    class HedgedFuture extends BasicFuture<HttpResponse> {
+
+        HedgedFuture(final FutureCallback<HttpResponse> callback) {
+            super(callback);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                cancelAttempts();
+            }
+            return cancelled;
+        }
+
+    }
+
+    class Attempt implements FutureCallback<HttpResponse> {
+
+        private final HttpHost target;
+        private final boolean hedge;
+
+        private volatile long startTime;
+        private volatile Future<HttpResponse> exchangeFuture;
+        private volatile boolean done;
+
+        Attempt(final HttpHost target, boolean hedge) {
+            super();
+            this.target = target;
+            this.hedge = hedge;
+        }
+
+        void execute(final HttpContext localContext) {
+            this.startTime = System.currentTimeMillis();
+            try {
+                this.exchangeFuture = client.executeExchange(
+                        HttpAsyncMethods.create(this.target, request),
+                        new HedgedResponseConsumer(this, HttpAsyncMethods.createConsumer()),
+                        localContext,
+                        this);
+            } catch (RuntimeException ex) {
+                failed(ex);
+                return;
+            }
+            if (future.isCancelled()) {
+                cancel();
+            }
+        }
+
+        void cancel() {
+            Future<HttpResponse> local = this.exchangeFuture;
+            if (local != null) {
+                local.cancel(true);
+            }
+        }
+
+        public void completed(final HttpResponse response) {
+            attemptCompleted(this, response);
+        }
+
+        public void failed(final Exception ex) {
+            attemptFailed(this, ex);
+        }
+
+        public void cancelled() {
+            attemptCancelled(this);
+        }
+
+    }
+
+    class HedgedResponseConsumer implements HttpAsyncResponseConsumer<HttpResponse> {
+
+        private final Attempt attempt;
+        private final HttpAsyncResponseConsumer<HttpResponse> consumer;
+
+        HedgedResponseConsumer(
+                final Attempt attempt,
+                final HttpAsyncResponseConsumer<HttpResponse> consumer) {
+            super();
+            this.attempt = attempt;
+            this.consumer = consumer;
+        }
+
+        public void responseReceived(
+                final HttpResponse response) throws IOException, HttpException {
+            if (!responseStarted(this.attempt)) {
+                throw new IOException("Hedged execution already received a response");
+            }
+            this.consumer.responseReceived(response);
+        }
+
+        public void consumeContent(
+                final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+            this.consumer.consumeContent(decoder, ioctrl);
+        }
+
+        public void responseCompleted() {
+            this.consumer.responseCompleted();
+        }
+
+        public void failed(final Exception ex) {
+            this.consumer.failed(ex);
+        }
+
+        public void cancel() {
+            this.consumer.cancel();
+        }
+
+        public HttpResponse getResult() {
+            return this.consumer.getResult();
+        }
+
+        public Exception getException() {
+            return this.consumer.getException();
+        }
+
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable copy of a {@link LatencyHistogram}. All values are in
+ * nanoseconds unless a time unit is given. Percentiles are reported as the
+ * highest value of the bucket the percentile falls into.
+ */
+public class HistogramSnapshot {
+
+    private final long[] buckets;
+    private final long count;
+    private final long sum;
+
+    HistogramSnapshot(final long[] buckets, long sum) {
+        super();
+        this.buckets = buckets;
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i];
+        }
+        this.count = total;
+        this.sum = sum;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the mean of all recorded values or <code>0</code> if the
+     * histogram is empty.
+     */
+    public double getMean() {
+        return this.count > 0 ? (double) this.sum / this.count : 0;
+    }
+
+    public long getMin() {
+        for (int i = 0; i < this.buckets.length; i++) {
+            if (this.buckets[i] > 0) {
+                return LatencyHistogram.lowestValue(i);
+            }
+        }
+        return 0;
+    }
+
+    public long getMax() {
+        for (int i = this.buckets.length - 1; i >= 0; i--) {
+            if (this.buckets[i] > 0) {
+                return LatencyHistogram.highestValue(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the value below which the given share of recorded values
+     * fall, for instance <code>0.99</code> for the 99th percentile.
+     */
+    public long getPercentile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be in range [0, 1]");
+        }
+        if (this.count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * this.count));
+        long seen = 0;
+        for (int i = 0; i < this.buckets.length; i++) {
+            seen += this.buckets[i];
+            if (seen >= rank) {
+                return LatencyHistogram.highestValue(i);
+            }
+        }
+        return getMax();
+    }
+
+    public long getPercentile(double quantile, final TimeUnit tunit) {
+        if (tunit == null) {
+            throw new IllegalArgumentException("Time unit may not be null");
+        }
+        return tunit.convert(getPercentile(quantile), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("[count: ").append(this.count);
+        buffer.append("; mean: ").append(Math.round(getMean()));
+        buffer.append("; p50: ").append(getPercentile(0.5));
+        buffer.append("; p99: ").append(getPercentile(0.99));
+        buffer.append("; max: ").append(getMax());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
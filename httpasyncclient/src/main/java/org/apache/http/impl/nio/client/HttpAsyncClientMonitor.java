@@ -0,0 +1,142 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.impl.nio.conn.PoolingClientConnectionManager;
+import org.apache.http.nio.conn.ClientConnectionManager;
+
+/**
+ * Standard MBean exposing the state of an {@link AbstractHttpAsyncClient}.
+ * Attributes are read from a snapshot collected at most once per refresh
+ * interval. Creating a monitor makes the client time the handling of
+ * I/O events.
+ */
+public class HttpAsyncClientMonitor implements HttpAsyncClientMonitorMBean {
+
+    private final AbstractHttpAsyncClient client;
+    private final long refreshInterval;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param client the client to monitor.
+     * @param refreshInterval the maximum age of the statistics in
+     *   milliseconds.
+     */
+    public HttpAsyncClientMonitor(final AbstractHttpAsyncClient client, long refreshInterval) {
+        super();
+        if (client == null) {
+            throw new IllegalArgumentException("HTTP client may not be null");
+        }
+        this.client = client;
+        this.refreshInterval = refreshInterval;
+        client.enableDispatchMonitoring();
+    }
+
+    public HttpAsyncClientMonitor(final AbstractHttpAsyncClient client) {
+        this(client, 1000);
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot local = this.snapshot;
+        long now = System.currentTimeMillis();
+        if (local == null || now - local.time >= this.refreshInterval) {
+            synchronized (this) {
+                local = this.snapshot;
+                if (local == null || now - local.time >= this.refreshInterval) {
+                    local = new Snapshot(now, this.client);
+                    this.snapshot = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    public String getReactorStatus() {
+        return getSnapshot().status;
+    }
+
+    public int getDispatcherCount() {
+        return getSnapshot().dispatcherCount;
+    }
+
+    public int getInFlightExchanges() {
+        return getSnapshot().exchangeCount;
+    }
+
+    public int getLeaseQueueLength() {
+        return getSnapshot().leaseQueueLength;
+    }
+
+    public long getStallCount() {
+        return getSnapshot().stallCount;
+    }
+
+    public long getDispatchLatencyP99() {
+        return getSnapshot().dispatchLatency.getPercentile(0.99, TimeUnit.MICROSECONDS);
+    }
+
+    public long getMaxDispatchLatency() {
+        return TimeUnit.NANOSECONDS.toMicros(getSnapshot().dispatchLatency.getMax());
+    }
+
+    public long getSnapshotTime() {
+        return getSnapshot().time;
+    }
+
+    static class Snapshot {
+
+        final long time;
+        final String status;
+        final int dispatcherCount;
+        final int exchangeCount;
+        final int leaseQueueLength;
+        final long stallCount;
+        final HistogramSnapshot dispatchLatency;
+
+        Snapshot(long time, final AbstractHttpAsyncClient client) {
+            super();
+            this.time = time;
+            this.status = String.valueOf(client.getStatus());
+            this.dispatcherCount = client.getDispatcherCount();
+            this.exchangeCount = client.getExchangeCount();
+            this.stallCount = client.getStallCount();
+            this.dispatchLatency = client.getDispatchLatency();
+            ClientConnectionManager connmgr = client.getConnectionManager();
+            if (connmgr instanceof PoolingClientConnectionManager) {
+                this.leaseQueueLength =
+                    ((PoolingClientConnectionManager) connmgr).getTotalStats().getPending();
+            } else {
+                this.leaseQueueLength = -1;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+/**
+ * Management interface of {@link HttpAsyncClientMonitor}.
+ */
+public interface HttpAsyncClientMonitorMBean {
+
+    String getReactorStatus();
+
+    /**
+     * Returns the number of I/O dispatch threads that have dispatched
+     * I/O events.
+     */
+    int getDispatcherCount();
+
+    /**
+     * Returns the number of exchanges submitted and not yet completed.
+     */
+    int getInFlightExchanges();
+
+    /**
+     * Returns the number of connection requests waiting for a connection
+     * or <code>-1</code> if the connection manager does not report it.
+     */
+    int getLeaseQueueLength();
+
+    /**
+     * Returns the number of I/O events whose handling blocked a dispatch
+     * thread for longer than the stall threshold.
+     */
+    long getStallCount();
+
+    /**
+     * Returns the 99th percentile of the time taken to handle an I/O
+     * event in microseconds.
+     */
+    long getDispatchLatencyP99();
+
+    /**
+     * Returns the longest time taken to handle an I/O event in
+     * microseconds.
+     */
+    long getMaxDispatchLatency();
+
+    /**
+     * Returns the time the statistics have been collected in milliseconds.
+     */
+    long getSnapshotTime();
+
+}
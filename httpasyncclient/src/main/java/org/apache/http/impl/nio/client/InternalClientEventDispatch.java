@@ -27,6 +27,10 @@
 package org.apache.http.impl.nio.client;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.http.impl.nio.reactor.SSLIOSession;
 import org.apache.http.nio.NHttpClientHandler;
@@ -38,10 +42,69 @@ import org.apache.http.protocol.ExecutionContext;
 class InternalClientEventDispatch implements IOEventDispatch {
 
     private final NHttpClientHandler handler;
+    private final Map<Thread, DispatcherHeartbeat> dispatchers;
+    private final ThreadLocal<DispatcherHeartbeat> heartbeats;
+    private final LatencyHistogram eventLatency;
+
+    private volatile boolean instrumented;
 
     InternalClientEventDispatch(final NHttpClientHandler handler) {
         super();
         this.handler = handler;
+        this.dispatchers = new ConcurrentHashMap<Thread, DispatcherHeartbeat>();
+        this.heartbeats = new ThreadLocal<DispatcherHeartbeat>();
+        this.eventLatency = new LatencyHistogram();
+    }
+
+    /**
+     * Returns the heartbeats of live I/O dispatch threads that have
+     * dispatched at least one event.
+     */
+    List<DispatcherHeartbeat> getHeartbeats() {
+        List<DispatcherHeartbeat> list = new ArrayList<DispatcherHeartbeat>();
+        for (DispatcherHeartbeat heartbeat: this.dispatchers.values()) {
+            if (heartbeat.getThread().isAlive()) {
+                list.add(heartbeat);
+            } else {
+                this.dispatchers.remove(heartbeat.getThread());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Enables tracking of the dispatch threads and of the time taken to
+     * handle I/O events. Tracking takes two clock reads per event and is
+     * off by default.
+     */
+    void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+    }
+
+    int getDispatcherCount() {
+        return getHeartbeats().size();
+    }
+
+    /**
+     * Returns the time taken to handle individual I/O events.
+     */
+    LatencyHistogram getEventLatency() {
+        return this.eventLatency;
+    }
+
+    private DispatcherHeartbeat eventStarted() {
+        DispatcherHeartbeat heartbeat = this.heartbeats.get();
+        if (heartbeat == null) {
+            heartbeat = new DispatcherHeartbeat(Thread.currentThread());
+            this.heartbeats.set(heartbeat);
+            this.dispatchers.put(heartbeat.getThread(), heartbeat);
+        }
+        heartbeat.eventStarted(System.nanoTime());
+        return heartbeat;
+    }
+
+    private void eventCompleted(final DispatcherHeartbeat heartbeat) {
+        this.eventLatency.record(heartbeat.eventCompleted(System.nanoTime()));
     }
 
     private OperatedClientConnection getConnection(final IOSession session) {
@@ -55,13 +118,44 @@ class InternalClientEventDispatch implements IOEventDispatch {
     }
 
     public void connected(final IOSession session) {
+        if (!this.instrumented) {
+            doConnected(session);
+            return;
+        }
+        DispatcherHeartbeat heartbeat = eventStarted();
+        try {
+            doConnected(session);
+        } finally {
+            eventCompleted(heartbeat);
+        }
+    }
+
+    private void doConnected(final IOSession session) {
         OperatedClientConnection conn = getConnection(session);
-        assertValid(conn);
+        if (conn == null) {
+            // The connection request was cancelled before the connection
+            // got opened, so the session is of no use
+            session.shutdown();
+            return;
+        }
         Object attachment = session.getAttribute(IOSession.ATTACHMENT_KEY);
         this.handler.connected(conn, attachment);
     }
 
     public void disconnected(final IOSession session) {
+        if (!this.instrumented) {
+            doDisconnected(session);
+            return;
+        }
+        DispatcherHeartbeat heartbeat = eventStarted();
+        try {
+            doDisconnected(session);
+        } finally {
+            eventCompleted(heartbeat);
+        }
+    }
+
+    private void doDisconnected(final IOSession session) {
         OperatedClientConnection conn = getConnection(session);
         if (conn != null) {
             this.handler.closed(conn);
@@ -69,6 +163,19 @@ class InternalClientEventDispatch implements IOEventDispatch {
     }
 
     public void inputReady(final IOSession session) {
+        if (!this.instrumented) {
+            doInputReady(session);
+            return;
+        }
+        DispatcherHeartbeat heartbeat = eventStarted();
+        try {
+            doInputReady(session);
+        } finally {
+            eventCompleted(heartbeat);
+        }
+    }
+
+    private void doInputReady(final IOSession session) {
         OperatedClientConnection conn = getConnection(session);
         assertValid(conn);
         SSLIOSession ssliosession = conn.getSSLIOSession();
@@ -88,6 +195,19 @@ class InternalClientEventDispatch implements IOEventDispatch {
     }
 
     public void outputReady(final IOSession session) {
+        if (!this.instrumented) {
+            doOutputReady(session);
+            return;
+        }
+        DispatcherHeartbeat heartbeat = eventStarted();
+        try {
+            doOutputReady(session);
+        } finally {
+            eventCompleted(heartbeat);
+        }
+    }
+
+    private void doOutputReady(final IOSession session) {
         OperatedClientConnection conn = getConnection(session);
         assertValid(conn);
         SSLIOSession ssliosession = conn.getSSLIOSession();
@@ -106,7 +226,20 @@ class InternalClientEventDispatch implements IOEventDispatch {
         }
     }
 
-    public void timeout(IOSession session) {
+    public void timeout(final IOSession session) {
+        if (!this.instrumented) {
+            doTimeout(session);
+            return;
+        }
+        DispatcherHeartbeat heartbeat = eventStarted();
+        try {
+            doTimeout(session);
+        } finally {
+            eventCompleted(heartbeat);
+        }
+    }
+
+    private void doTimeout(final IOSession session) {
         OperatedClientConnection conn = getConnection(session);
         if (conn != null) {
             SSLIOSession ssliosession = conn.getSSLIOSession();
@@ -0,0 +1,116 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histogram with log-linear buckets in the style of HDR histograms.
+ * Values are recorded in nanoseconds with a relative precision of about 3%
+ * (32 linear sub-buckets per power of two) up to roughly 73 minutes; larger
+ * values are recorded as the maximum trackable value.
+ * <p>
+ * Recording is lock-free and spread over several stripes, so that I/O
+ * dispatch threads updating the same histogram do not contend on the same
+ * counters. Use {@link #getSnapshot()} to obtain percentiles.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 6;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    static final int MAX_BITS = 42;
+    static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_BITS - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private static final int SUM = BUCKET_COUNT;
+
+    private final StripedLongArray counts;
+
+    public LatencyHistogram() {
+        super();
+        this.counts = new StripedLongArray(BUCKET_COUNT + 1);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF
+            + (int) ((value >>> shift) - SUB_BUCKET_HALF);
+    }
+
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        long sub = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return sub << shift;
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        return lowestValue(index) + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a value given in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        } else if (nanos > MAX_VALUE) {
+            nanos = MAX_VALUE;
+        }
+        this.counts.increment(bucketIndex(nanos));
+        this.counts.add(SUM, nanos);
+    }
+
+    public void record(long duration, final TimeUnit tunit) {
+        if (tunit == null) {
+            throw new IllegalArgumentException("Time unit may not be null");
+        }
+        record(tunit.toNanos(duration));
+    }
+
+    /**
+     * Returns a point in time copy of this histogram. Values recorded
+     * concurrently may or may not be included.
+     */
+    public HistogramSnapshot getSnapshot() {
+        long[] totals = this.counts.sum();
+        long[] buckets = new long[BUCKET_COUNT];
+        System.arraycopy(totals, 0, buckets, 0, BUCKET_COUNT);
+        return new HistogramSnapshot(buckets, totals[SUM]);
+    }
+
+}
@@ -171,6 +171,9 @@ class NHttpClientProtocolHandler implements NHttpClientHandler {
                 }
             } else {
                 httpexchange.setRequestState(MessageState.COMPLETED);
+                if (handler instanceof RequestCompletionAware) {
+                    ((RequestCompletionAware) handler).requestCompleted();
+                }
             }
         } catch (IOException ex) {
             if (this.log.isDebugEnabled()) {
@@ -229,6 +232,9 @@ class NHttpClientProtocolHandler implements NHttpClientHandler {
             }
             if (encoder.isCompleted()) {
                 httpexchange.setRequestState(MessageState.COMPLETED);
+                if (handler instanceof RequestCompletionAware) {
+                    ((RequestCompletionAware) handler).requestCompleted();
+                }
             }
         } catch (IOException ex) {
             if (this.log.isDebugEnabled()) {
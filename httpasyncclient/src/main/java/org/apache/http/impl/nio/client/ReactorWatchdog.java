@@ -0,0 +1,116 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Periodically checks the heartbeats of the I/O dispatch threads and
+ * reports threads that have been handling the same I/O event for longer
+ * than the stall threshold, logging the stack trace of the blocked thread.
+ * Each stalled event is reported once.
+ */
+class ReactorWatchdog implements Runnable {
+
+    private final Log log;
+    private final HashedWheelTimer timer;
+    private final InternalClientEventDispatch dispatch;
+    private final long threshold;
+    private final AtomicLong stallCount;
+
+    private volatile boolean stopped;
+
+    ReactorWatchdog(
+            final Log log,
+            final HashedWheelTimer timer,
+            final InternalClientEventDispatch dispatch,
+            long threshold, final TimeUnit tunit) {
+        super();
+        this.log = log;
+        this.timer = timer;
+        this.dispatch = dispatch;
+        this.threshold = tunit.toNanos(threshold);
+        this.stallCount = new AtomicLong();
+    }
+
+    void start() {
+        schedule();
+    }
+
+    void stop() {
+        this.stopped = true;
+    }
+
+    long getStallCount() {
+        return this.stallCount.get();
+    }
+
+    private void schedule() {
+        if (!this.stopped) {
+            this.timer.newTimeout(this, Math.max(this.threshold / 2, 1), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void run() {
+        if (this.stopped) {
+            return;
+        }
+        try {
+            check(System.nanoTime());
+        } finally {
+            schedule();
+        }
+    }
+
+    void check(long now) {
+        for (DispatcherHeartbeat heartbeat: this.dispatch.getHeartbeats()) {
+            long start = heartbeat.getEventStart();
+            if (start != 0 && now - start > this.threshold && heartbeat.markReported(start)) {
+                this.stallCount.incrementAndGet();
+                if (this.log.isWarnEnabled()) {
+                    this.log.warn(format(heartbeat.getThread(), now - start));
+                }
+            }
+        }
+    }
+
+    private static String format(final Thread thread, long duration) {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("I/O dispatch thread '").append(thread.getName());
+        buffer.append("' has been blocked for ");
+        buffer.append(TimeUnit.NANOSECONDS.toMillis(duration)).append(" ms");
+        StackTraceElement[] stack = thread.getStackTrace();
+        for (int i = 0; i < stack.length; i++) {
+            buffer.append("\n\tat ").append(stack[i]);
+        }
+        return buffer.toString();
+    }
+
+}
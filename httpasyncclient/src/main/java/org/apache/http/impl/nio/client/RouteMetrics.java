@@ -0,0 +1,109 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * Aggregated exchange metrics of a single route.
+ */
+class RouteMetrics {
+
+    static final int COMPLETED = 0;
+    static final int FAILED = 1;
+    static final int CANCELLED = 2;
+    static final int BYTES_SENT = 3;
+    static final int BYTES_RECEIVED = 4;
+    // Status classes 1xx to 5xx at indexes 5 to 9
+    static final int STATUS = 4;
+
+    private static final long TOUCH_INTERVAL = 1000000000L;
+
+    private final HttpRoute route;
+    private final StripedLongArray counters;
+    private final LatencyHistogram latency;
+
+    private volatile long lastUsed;
+
+    RouteMetrics(final HttpRoute route, long now) {
+        super();
+        this.route = route;
+        this.counters = new StripedLongArray(STATUS + 6);
+        this.latency = new LatencyHistogram();
+        this.lastUsed = now;
+    }
+
+    HttpRoute getRoute() {
+        return this.route;
+    }
+
+    long getLastUsed() {
+        return this.lastUsed;
+    }
+
+    void touch(long now) {
+        // Avoid writing the shared field on every exchange
+        if (now - this.lastUsed > TOUCH_INTERVAL) {
+            this.lastUsed = now;
+        }
+    }
+
+    void exchangeCompleted(int status, long duration) {
+        this.counters.increment(COMPLETED);
+        int statusClass = status / 100;
+        if (statusClass >= 1 && statusClass <= 5) {
+            this.counters.increment(STATUS + statusClass);
+        }
+        this.latency.record(duration);
+    }
+
+    void exchangeFailed() {
+        this.counters.increment(FAILED);
+    }
+
+    void exchangeCancelled() {
+        this.counters.increment(CANCELLED);
+    }
+
+    void transferred(long sent, long received) {
+        if (sent > 0) {
+            this.counters.add(BYTES_SENT, sent);
+        }
+        if (received > 0) {
+            this.counters.add(BYTES_RECEIVED, received);
+        }
+    }
+
+    RouteMetricsSnapshot getSnapshot() {
+        return new RouteMetricsSnapshot(
+                this.route,
+                System.currentTimeMillis(),
+                this.counters.sum(),
+                this.latency.getSnapshot());
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * Immutable copy of the exchange metrics of a route. Counts are totals
+ * since the route was first seen; rates can be derived from two snapshots
+ * taken at different points in time.
+ */
+public class RouteMetricsSnapshot {
+
+    private final HttpRoute route;
+    private final long timestamp;
+    private final long[] counters;
+    private final HistogramSnapshot latency;
+
+    RouteMetricsSnapshot(
+            final HttpRoute route,
+            long timestamp,
+            final long[] counters,
+            final HistogramSnapshot latency) {
+        super();
+        this.route = route;
+        this.timestamp = timestamp;
+        this.counters = counters;
+        this.latency = latency;
+    }
+
+    public HttpRoute getRoute() {
+        return this.route;
+    }
+
+    /**
+     * Returns the time the snapshot was taken in milliseconds.
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Returns the total number of exchanges completed, failed or cancelled.
+     */
+    public long getRequestCount() {
+        return getCompletedCount() + getFailedCount() + getCancelledCount();
+    }
+
+    /**
+     * Returns the number of exchanges that completed with a response.
+     */
+    public long getCompletedCount() {
+        return this.counters[RouteMetrics.COMPLETED];
+    }
+
+    public long getFailedCount() {
+        return this.counters[RouteMetrics.FAILED];
+    }
+
+    public long getCancelledCount() {
+        return this.counters[RouteMetrics.CANCELLED];
+    }
+
+    /**
+     * Returns the number of responses of the given status class, for
+     * instance <code>5</code> for server errors.
+     */
+    public long getStatusClassCount(int statusClass) {
+        if (statusClass < 1 || statusClass > 5) {
+            throw new IllegalArgumentException("Status class must be in range [1, 5]");
+        }
+        return this.counters[RouteMetrics.STATUS + statusClass];
+    }
+
+    public long getBytesSent() {
+        return this.counters[RouteMetrics.BYTES_SENT];
+    }
+
+    public long getBytesReceived() {
+        return this.counters[RouteMetrics.BYTES_RECEIVED];
+    }
+
+    /**
+     * Returns the latency of completed exchanges, from the start of the
+     * exchange to the end of the response.
+     */
+    public HistogramSnapshot getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * Returns the number of exchanges per second between the given earlier
+     * snapshot of the same route and this one.
+     */
+    public double getRequestRate(final RouteMetricsSnapshot earlier) {
+        if (earlier == null) {
+            throw new IllegalArgumentException("Snapshot may not be null");
+        }
+        long elapsed = this.timestamp - earlier.timestamp;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (getRequestCount() - earlier.getRequestCount()) * 1000d / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("[route: ").append(this.route);
+        buffer.append("; completed: ").append(getCompletedCount());
+        buffer.append("; failed: ").append(getFailedCount());
+        buffer.append("; cancelled: ").append(getCancelledCount());
+        buffer.append("; sent: ").append(getBytesSent());
+        buffer.append("; received: ").append(getBytesReceived());
+        buffer.append("; latency: ").append(this.latency);
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
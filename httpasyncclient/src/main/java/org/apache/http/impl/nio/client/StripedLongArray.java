@@ -0,0 +1,97 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Array of counters split into several stripes in order to reduce
+ * contention between threads updating the same counter. Each thread
+ * updates the stripe selected by its id; reading a counter sums up all
+ * stripes.
+ */
+class StripedLongArray {
+
+    private static final int STRIPES;
+
+    static {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while (stripes < cpus && stripes < 4) {
+            stripes <<= 1;
+        }
+        STRIPES = stripes;
+    }
+
+    private final AtomicLongArray cells;
+    private final int length;
+    private final int stride;
+
+    StripedLongArray(int length) {
+        super();
+        this.length = length;
+        // Pad stripes to keep them on separate cache lines
+        this.stride = ((length + 15) / 16) * 16 + 16;
+        this.cells = new AtomicLongArray(this.stride * STRIPES);
+    }
+
+    private int stripeOffset() {
+        return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * this.stride;
+    }
+
+    void add(int index, long delta) {
+        this.cells.addAndGet(stripeOffset() + index, delta);
+    }
+
+    void increment(int index) {
+        this.cells.incrementAndGet(stripeOffset() + index);
+    }
+
+    long sum(int index) {
+        long total = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            total += this.cells.get(i * this.stride + index);
+        }
+        return total;
+    }
+
+    long[] sum() {
+        long[] totals = new long[this.length];
+        for (int i = 0; i < STRIPES; i++) {
+            int offset = i * this.stride;
+            for (int n = 0; n < this.length; n++) {
+                totals[n] += this.cells.get(offset + n);
+            }
+        }
+        return totals;
+    }
+
+    int length() {
+        return this.length;
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.conn;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Standard MBean exposing the statistics of a
+ * {@link PoolingClientConnectionManager} and a few tuning operations.
+ * <p>
+ * Attributes are read from a snapshot of the pool statistics that is
+ * collected at most once per refresh interval, so that frequent polling
+ * does not contend with connection leasing on the pool lock.
+ */
+public class ConnectionPoolMonitor implements ConnectionPoolMonitorMBean {
+
+    private final PoolingClientConnectionManager connmgr;
+    private final long refreshInterval;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param connmgr the connection manager to monitor.
+     * @param refreshInterval the maximum age of the statistics in
+     *   milliseconds.
+     */
+    public ConnectionPoolMonitor(
+            final PoolingClientConnectionManager connmgr, long refreshInterval) {
+        super();
+        if (connmgr == null) {
+            throw new IllegalArgumentException("Connection manager may not be null");
+        }
+        this.connmgr = connmgr;
+        this.refreshInterval = refreshInterval;
+    }
+
+    public ConnectionPoolMonitor(final PoolingClientConnectionManager connmgr) {
+        this(connmgr, 1000);
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot local = this.snapshot;
+        long now = System.currentTimeMillis();
+        if (local == null || now - local.time >= this.refreshInterval) {
+            synchronized (this) {
+                local = this.snapshot;
+                if (local == null || now - local.time >= this.refreshInterval) {
+                    local = new Snapshot(now, this.connmgr);
+                    this.snapshot = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    private void invalidate() {
+        this.snapshot = null;
+    }
+
+    public int getLeasedConnections() {
+        return getSnapshot().totals.getLeased();
+    }
+
+    public int getAvailableConnections() {
+        return getSnapshot().totals.getAvailable();
+    }
+
+    public int getLeaseQueueLength() {
+        return getSnapshot().totals.getPending();
+    }
+
+    public int getMaxTotal() {
+        return getSnapshot().totals.getMax();
+    }
+
+    public String[] getRouteStats() {
+        return getSnapshot().routeStats.clone();
+    }
+
+    public long getSnapshotTime() {
+        return getSnapshot().time;
+    }
+
+    public void setMaxTotal(int max) {
+        this.connmgr.setMaxTotal(max);
+        invalidate();
+    }
+
+    public void setDefaultMaxPerRoute(int max) {
+        this.connmgr.setDefaultMaxPerRoute(max);
+        invalidate();
+    }
+
+    public void setMaxPerRoute(final String target, int max) {
+        URI uri;
+        try {
+            uri = new URI(target);
+        } catch (URISyntaxException ex) {
+            throw new IllegalArgumentException("Invalid target: " + target);
+        }
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("Target host not specified: " + target);
+        }
+        String scheme = uri.getScheme() != null ? uri.getScheme() : "http";
+        HttpHost host = new HttpHost(uri.getHost(), uri.getPort(), scheme);
+        HttpRoute route = new HttpRoute(host, null, scheme.equalsIgnoreCase("https"));
+        this.connmgr.setMaxPerRoute(route, max);
+        invalidate();
+    }
+
+    public void closeIdleConnections(long idleTimeMillis) {
+        this.connmgr.closeIdleConnections(idleTimeMillis, TimeUnit.MILLISECONDS);
+        invalidate();
+    }
+
+    public void closeExpiredConnections() {
+        this.connmgr.closeExpiredConnections();
+        invalidate();
+    }
+
+    static class Snapshot {
+
+        final long time;
+        final PoolStats totals;
+        final String[] routeStats;
+
+        Snapshot(long time, final PoolingClientConnectionManager connmgr) {
+            super();
+            this.time = time;
+            this.totals = connmgr.getTotalStats();
+            Set<HttpRoute> routes = connmgr.getRoutes();
+            this.routeStats = new String[routes.size()];
+            int i = 0;
+            for (HttpRoute route: routes) {
+                PoolStats stats = connmgr.getStats(route);
+                StringBuilder buffer = new StringBuilder();
+                buffer.append(route);
+                buffer.append(" [leased: ").append(stats.getLeased());
+                buffer.append("; available: ").append(stats.getAvailable());
+                buffer.append("; pending: ").append(stats.getPending());
+                buffer.append("; max: ").append(stats.getMax());
+                buffer.append("]");
+                this.routeStats[i++] = buffer.toString();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.conn;
+
+/**
+ * Management interface of {@link ConnectionPoolMonitor}.
+ */
+public interface ConnectionPoolMonitorMBean {
+
+    int getLeasedConnections();
+
+    int getAvailableConnections();
+
+    /**
+     * Returns the number of connection requests waiting for a connection.
+     */
+    int getLeaseQueueLength();
+
+    int getMaxTotal();
+
+    /**
+     * Returns one line of statistics per route with leased or available
+     * connections or pending connection requests.
+     */
+    String[] getRouteStats();
+
+    /**
+     * Returns the time the statistics have been collected in milliseconds.
+     */
+    long getSnapshotTime();
+
+    void setMaxTotal(int max);
+
+    void setDefaultMaxPerRoute(int max);
+
+    /**
+     * Sets the maximum number of connections for the direct route to the
+     * target given as an URI, for instance <code>https://host:8443</code>.
+     */
+    void setMaxPerRoute(String target, int max);
+
+    void closeIdleConnections(long idleTimeMillis);
+
+    void closeExpiredConnections();
+
+}
@@ -29,18 +29,29 @@ package org.apache.http.impl.nio.conn;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.http.HttpConnection;
 import org.apache.http.HttpHost;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.nio.conn.ConnectionPoolListener;
 import org.apache.http.nio.conn.scheme.Scheme;
 import org.apache.http.nio.conn.scheme.SchemeRegistry;
 import org.apache.http.nio.pool.AbstractNIOConnPool;
 import org.apache.http.nio.reactor.ConnectingIOReactor;
 import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.nio.reactor.SessionRequest;
 import org.apache.http.protocol.ExecutionContext;
 
 class HttpNIOConnPool extends AbstractNIOConnPool<HttpRoute, IOSession, HttpPoolEntry> {
@@ -51,6 +62,11 @@ class HttpNIOConnPool extends AbstractNIOConnPool<HttpRoute, IOSession, HttpPool
     private final SchemeRegistry schemeRegistry;
     private final long connTimeToLive;
     private final TimeUnit tunit;
+    private final Map<HttpRoute, long[]> lookups;
+    private final ConcurrentHashMap<HttpRoute, AtomicInteger> requests;
+    private final ConcurrentLinkedQueue<HttpPoolEntry> abandoned;
+
+    private volatile ConnectionPoolListener listener;
 
     HttpNIOConnPool(
             final Log log,
@@ -62,6 +78,111 @@ class HttpNIOConnPool extends AbstractNIOConnPool<HttpRoute, IOSession, HttpPool
         this.schemeRegistry = schemeRegistry;
         this.connTimeToLive = connTimeToLive;
         this.tunit = tunit;
+        this.lookups = new WeakHashMap<HttpRoute, long[]>();
+        this.requests = new ConcurrentHashMap<HttpRoute, AtomicInteger>();
+        this.abandoned = new ConcurrentLinkedQueue<HttpPoolEntry>();
+    }
+
+    ConnectionPoolListener getListener() {
+        return this.listener;
+    }
+
+    void setListener(final ConnectionPoolListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public Future<HttpPoolEntry> lease(
+            final HttpRoute route, final Object state,
+            final long connectTimeout, final TimeUnit tunit,
+            final FutureCallback<HttpPoolEntry> callback) {
+        incrementRequestCount(route);
+        try {
+            return super.lease(route, state, connectTimeout, tunit,
+                    new RouteRequestCallback(route, callback));
+        } catch (RuntimeException ex) {
+            decrementRequestCount(route);
+            throw ex;
+        }
+    }
+
+    private void incrementRequestCount(final HttpRoute route) {
+        for (;;) {
+            AtomicInteger count = this.requests.get(route);
+            if (count == null) {
+                count = new AtomicInteger(0);
+                AtomicInteger existing = this.requests.putIfAbsent(route, count);
+                if (existing != null) {
+                    count = existing;
+                }
+            }
+            int n = count.get();
+            if (n < 0) {
+                // Counter being removed
+                this.requests.remove(route, count);
+                continue;
+            }
+            if (count.compareAndSet(n, n + 1)) {
+                return;
+            }
+        }
+    }
+
+    private void decrementRequestCount(final HttpRoute route) {
+        AtomicInteger count = this.requests.get(route);
+        if (count == null) {
+            return;
+        }
+        // A counter dropping to zero is marked dead and removed, unless a
+        // new request has come in for the route in the meantime
+        if (count.decrementAndGet() == 0 && count.compareAndSet(0, -1)) {
+            this.requests.remove(route, count);
+        }
+    }
+
+    /**
+     * Returns the routes connections have been opened or requested for.
+     */
+    Set<HttpRoute> getKnownRoutes() {
+        Set<HttpRoute> routes;
+        synchronized (this.lookups) {
+            routes = new HashSet<HttpRoute>(this.lookups.keySet());
+        }
+        routes.addAll(this.requests.keySet());
+        return routes;
+    }
+
+    /**
+     * Returns the number of lease requests for the given route that have
+     * not completed yet, including those waiting for a connection to
+     * become available.
+     */
+    int getRequestCount(final HttpRoute route) {
+        AtomicInteger count = this.requests.get(route);
+        return count != null ? Math.max(count.get(), 0) : 0;
+    }
+
+    /**
+     * Releases an entry whose lease request was cancelled before the entry
+     * could be handed out. Entries of newly opened sessions are reported
+     * before the pool counts them as leased, so their release is deferred
+     * until the pool has finished processing the session request.
+     */
+    void releaseAbandoned(final HttpPoolEntry entry, boolean reusable) {
+        if (reusable) {
+            release(entry, true);
+        } else {
+            this.abandoned.add(entry);
+        }
+    }
+
+    @Override
+    protected void requestCompleted(final SessionRequest request) {
+        super.requestCompleted(request);
+        HttpPoolEntry entry;
+        while ((entry = this.abandoned.poll()) != null) {
+            release(entry, false);
+        }
     }
 
     @Override
@@ -81,20 +202,56 @@ class HttpNIOConnPool extends AbstractNIOConnPool<HttpRoute, IOSession, HttpPool
             Scheme scheme = this.schemeRegistry.getScheme(firsthop);
             port = scheme.resolvePort(port);
         }
-        return new InetSocketAddress(hostname, port);
+        long start = System.nanoTime();
+        InetSocketAddress address = new InetSocketAddress(hostname, port);
+        long end = System.nanoTime();
+        synchronized (this.lookups) {
+            this.lookups.put(route, new long[] { start, end });
+        }
+        return address;
     }
 
     @Override
     protected HttpPoolEntry createEntry(final HttpRoute route, final IOSession session) {
         String id = Long.toString(COUNTER.getAndIncrement());
-        return new HttpPoolEntry(this.log, id, route, session, this.connTimeToLive, this.tunit);
+        HttpPoolEntry entry = new HttpPoolEntry(
+                this.log, id, route, session, this.connTimeToLive, this.tunit);
+        // The most recent lookup for the route is attributed to the new
+        // connection. This is exact unless several connections to the same
+        // route are being established concurrently.
+        long[] lookup;
+        synchronized (this.lookups) {
+            lookup = this.lookups.get(route);
+        }
+        long now = System.nanoTime();
+        if (lookup != null) {
+            entry.setConnectTimes(lookup[0], lookup[1], now);
+        }
+        ConnectionPoolListener local = this.listener;
+        if (local != null) {
+            if (lookup != null) {
+                local.connectionOpened(route, id, lookup[0], lookup[1], now);
+            } else {
+                local.connectionOpened(route, id, now, now, now);
+            }
+        }
+        return entry;
     }
 
     @Override
     protected void closeEntry(final HttpPoolEntry entry) {
+        ConnectionPoolListener local = this.listener;
+        if (local != null) {
+            local.connectionClosed(entry.getRoute(), entry.getId(), System.nanoTime());
+        }
         IOSession session = entry.getConnection();
         HttpConnection conn = (HttpConnection) session.getAttribute(
                 ExecutionContext.HTTP_CONNECTION);
+        if (conn == null) {
+            // Session never bound to a connection
+            session.shutdown();
+            return;
+        }
         try {
             conn.shutdown();
         } catch (IOException ex) {
@@ -109,4 +266,38 @@ class HttpNIOConnPool extends AbstractNIOConnPool<HttpRoute, IOSession, HttpPool
         return session;
     }
 
+    class RouteRequestCallback implements FutureCallback<HttpPoolEntry> {
+
+        private final HttpRoute route;
+        private final FutureCallback<HttpPoolEntry> callback;
+
+        RouteRequestCallback(final HttpRoute route, final FutureCallback<HttpPoolEntry> callback) {
+            super();
+            this.route = route;
+            this.callback = callback;
+        }
+
+        public void completed(final HttpPoolEntry entry) {
+            decrementRequestCount(this.route);
+            if (this.callback != null) {
+                this.callback.completed(entry);
+            }
+        }
+
+        public void failed(final Exception ex) {
+            decrementRequestCount(this.route);
+            if (this.callback != null) {
+                this.callback.failed(ex);
+            }
+        }
+
+        public void cancelled() {
+            decrementRequestCount(this.route);
+            if (this.callback != null) {
+                this.callback.cancelled();
+            }
+        }
+
+    }
+
 }
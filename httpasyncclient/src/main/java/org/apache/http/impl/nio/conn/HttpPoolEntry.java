@@ -40,6 +40,10 @@ class HttpPoolEntry extends PoolEntry<HttpRoute, IOSession> {
     private final Log log;
     private final RouteTracker tracker;
 
+    private volatile long lookupStart;
+    private volatile long lookupEnd;
+    private volatile long connectEnd;
+
     HttpPoolEntry(final Log log, final String id, final HttpRoute route, final IOSession session,
             final long timeToLive, final TimeUnit tunit) {
         super(id, route, session, timeToLive, tunit);
@@ -68,4 +72,26 @@ class HttpPoolEntry extends PoolEntry<HttpRoute, IOSession> {
         return this.tracker.toRoute();
     }
 
+    void setConnectTimes(long lookupStart, long lookupEnd, long connectEnd) {
+        this.lookupStart = lookupStart;
+        this.lookupEnd = lookupEnd;
+        this.connectEnd = connectEnd;
+    }
+
+    /**
+     * Returns the start of the DNS lookup preceding the connect in
+     * {@link System#nanoTime()} units, or <code>0</code> if not known.
+     */
+    long getLookupStart() {
+        return this.lookupStart;
+    }
+
+    long getLookupEnd() {
+        return this.lookupEnd;
+    }
+
+    long getConnectEnd() {
+        return this.connectEnd;
+    }
+
 }
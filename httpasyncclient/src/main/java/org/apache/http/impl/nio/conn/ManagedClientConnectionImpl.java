@@ -44,14 +44,22 @@ import org.apache.http.impl.DefaultHttpResponseFactory;
 import org.apache.http.impl.conn.ConnectionShutdownException;
 import org.apache.http.impl.nio.reactor.SSLIOSession;
 import org.apache.http.impl.nio.reactor.SSLMode;
+import org.apache.http.nio.client.ExchangeListener;
+import org.apache.http.nio.client.ExchangePhase;
+import org.apache.http.nio.client.params.HttpAsyncClientParams;
+import org.apache.http.nio.client.protocol.AsyncClientContext;
 import org.apache.http.nio.conn.ClientConnectionManager;
 import org.apache.http.nio.conn.ManagedClientConnection;
 import org.apache.http.nio.conn.OperatedClientConnection;
 import org.apache.http.nio.conn.scheme.LayeringStrategy;
 import org.apache.http.nio.conn.scheme.Scheme;
+import org.apache.http.nio.conn.ssl.SSLLayeringStrategy;
 import org.apache.http.nio.reactor.IOSession;
 import org.apache.http.nio.util.ByteBufferAllocator;
 import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.DefaultedHttpParams;
+import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.ExecutionContext;
 import org.apache.http.protocol.HttpContext;
@@ -291,6 +299,47 @@ class ManagedClientConnectionImpl implements ManagedClientConnection {
         return new DefaultHttpResponseFactory();
     }
 
+    /**
+     * Session buffers are sized from the socket buffer size and cannot be
+     * shrunk or handed back once the connection exists, so a connection
+     * that sits idle in the pool keeps them for its whole life. Starting
+     * them at {@link HttpAsyncClientParams#getConnectionBufferSize} lets
+     * them grow only as far as the messages actually exchanged require.
+     */
+    private static HttpParams createConnectionParams(final HttpParams params) {
+        int bufferSize = HttpAsyncClientParams.getConnectionBufferSize(params);
+        int socketBufferSize = HttpConnectionParams.getSocketBufferSize(params);
+        if (bufferSize <= 0 || (socketBufferSize > 0 && bufferSize >= socketBufferSize)) {
+            return params;
+        }
+        HttpParams local = new BasicHttpParams();
+        HttpConnectionParams.setSocketBufferSize(local, bufferSize);
+        return new DefaultedHttpParams(local, params);
+    }
+
+    private static ExchangeListener getExchangeListener(final HttpContext context) {
+        if (context == null) {
+            return null;
+        }
+        return (ExchangeListener) context.getAttribute(AsyncClientContext.EXCHANGE_LISTENER);
+    }
+
+    private static void tlsHandshakeStarted(
+            final IOSession iosession,
+            final ExchangeListener listener,
+            final HttpRoute route,
+            final HttpContext context) {
+        listener.phaseStarted(ExchangePhase.TLS_HANDSHAKE, route, context, System.nanoTime());
+        iosession.setAttribute(SSLLayeringStrategy.HANDSHAKE_CALLBACK, new Runnable() {
+
+            public void run() {
+                listener.phaseCompleted(
+                        ExchangePhase.TLS_HANDSHAKE, route, context, System.nanoTime());
+            }
+
+        });
+    }
+
     public synchronized void open(
             final HttpRoute route,
             final HttpContext context, final HttpParams params) throws IOException {
@@ -304,6 +353,17 @@ class ManagedClientConnectionImpl implements ManagedClientConnection {
         HttpHost proxy = route.getProxyHost();
         IOSession iosession = entry.getConnection();
 
+        // Reported as sub-phases of the pool wait, which the caller is
+        // expected to complete once the connection has been opened. The
+        // TLS handshake, if any, is left to the caller to report.
+        ExchangeListener listener = getExchangeListener(context);
+        if (listener != null && entry.getConnectEnd() != 0) {
+            listener.phaseStarted(ExchangePhase.DNS_LOOKUP, route, context, entry.getLookupStart());
+            listener.phaseCompleted(ExchangePhase.DNS_LOOKUP, route, context, entry.getLookupEnd());
+            listener.phaseStarted(ExchangePhase.CONNECT, route, context, entry.getLookupEnd());
+            listener.phaseCompleted(ExchangePhase.CONNECT, route, context, entry.getConnectEnd());
+        }
+
         if (proxy == null) {
             Scheme scheme = this.manager.getSchemeRegistry().getScheme(target);
             LayeringStrategy layeringStrategy = scheme.getLayeringStrategy();
@@ -319,7 +379,7 @@ class ManagedClientConnectionImpl implements ManagedClientConnection {
                 iosession,
                 createHttpResponseFactory(),
                 createByteBufferAllocator(),
-                params);
+                createConnectionParams(params));
         iosession.setAttribute(ExecutionContext.HTTP_CONNECTION, conn);
 
         if (proxy == null) {
@@ -373,6 +433,10 @@ class ManagedClientConnectionImpl implements ManagedClientConnection {
                     " scheme does not provider support for protocol layering");
         }
         IOSession iosession = entry.getConnection();
+        ExchangeListener listener = getExchangeListener(context);
+        if (listener != null) {
+            tlsHandshakeStarted(iosession, listener, entry.getPlannedRoute(), context);
+        }
         SSLIOSession ssliosession = (SSLIOSession) layeringStrategy.layer(iosession);
         ssliosession.bind(SSLMode.CLIENT, params);
 
@@ -27,6 +27,8 @@
 package org.apache.http.impl.nio.conn;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -37,6 +39,7 @@ import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.nio.conn.ManagedClientConnection;
 import org.apache.http.nio.conn.ClientConnectionManager;
+import org.apache.http.nio.conn.ConnectionPoolListener;
 import org.apache.http.nio.conn.scheme.SchemeRegistry;
 import org.apache.http.nio.reactor.ConnectingIOReactor;
 import org.apache.http.nio.reactor.IOEventDispatch;
@@ -44,6 +47,7 @@ import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.nio.reactor.IOReactorStatus;
 import org.apache.http.pool.ConnPoolControl;
 import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.ExecutionContext;
 
 public class PoolingClientConnectionManager implements ClientConnectionManager, ConnPoolControl<HttpRoute> {
 
@@ -96,6 +100,18 @@ public class PoolingClientConnectionManager implements ClientConnectionManager,
         return this.schemeRegistry;
     }
 
+    public ConnectionPoolListener getConnectionPoolListener() {
+        return this.pool.getListener();
+    }
+
+    /**
+     * Sets the listener to be notified of connections being opened,
+     * leased, released and closed, or <code>null</code> to remove it.
+     */
+    public void setConnectionPoolListener(final ConnectionPoolListener listener) {
+        this.pool.setListener(listener);
+    }
+
     public void execute(final IOEventDispatch eventDispatch) throws IOException {
         this.ioreactor.execute(eventDispatch);
     }
@@ -218,6 +234,11 @@ public class PoolingClientConnectionManager implements ClientConnectionManager,
                     this.log.debug("Connection " + format(entry) + " can be kept alive " + s);
                 }
             } finally {
+                ConnectionPoolListener listener = this.pool.getListener();
+                if (listener != null) {
+                    listener.connectionReleased(entry.getRoute(), entry.getId(),
+                            managedConn.isMarkedReusable(), System.nanoTime());
+                }
                 this.pool.release(entry, managedConn.isMarkedReusable());
             }
             if (this.log.isDebugEnabled()) {
@@ -234,6 +255,23 @@ public class PoolingClientConnectionManager implements ClientConnectionManager,
         return this.pool.getStats(route);
     }
 
+    /**
+     * Returns the routes with leased or available connections or pending
+     * connection requests, including requests waiting for a connection
+     * to become available.
+     */
+    public Set<HttpRoute> getRoutes() {
+        Set<HttpRoute> routes = new HashSet<HttpRoute>();
+        for (HttpRoute route: this.pool.getKnownRoutes()) {
+            PoolStats stats = this.pool.getStats(route);
+            if (stats.getLeased() + stats.getAvailable() + stats.getPending() > 0
+                    || this.pool.getRequestCount(route) > 0) {
+                routes.add(route);
+            }
+        }
+        return routes;
+    }
+
     @Deprecated
     public void setTotalMax(int max) {
         this.pool.setMaxTotal(max);
@@ -290,8 +328,22 @@ public class PoolingClientConnectionManager implements ClientConnectionManager,
             ManagedClientConnection conn = new ManagedClientConnectionImpl(
                     PoolingClientConnectionManager.this,
                     entry);
+            ConnectionPoolListener listener = pool.getListener();
+            if (listener != null) {
+                listener.connectionLeased(entry.getRoute(), entry.getId(), System.nanoTime());
+            }
             if (!this.future.completed(conn)) {
-                pool.release(entry, true);
+                // A connection that has not been opened yet cannot be
+                // handed out later, as nothing would bind it to the session
+                boolean reusable = entry.getConnection().getAttribute(
+                        ExecutionContext.HTTP_CONNECTION) != null;
+                if (log.isDebugEnabled()) {
+                    log.debug("Connection request already cancelled: " + format(entry));
+                }
+                if (listener != null) {
+                    listener.connectionReleased(entry.getRoute(), entry.getId(), reusable, System.nanoTime());
+                }
+                pool.releaseAbandoned(entry, reusable);
             }
         }
 
@@ -0,0 +1,277 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.nio.util.ByteBufferAllocator;
+
+/**
+ * Size-classed {@link ByteBuffer} pool. Requests are rounded up to the
+ * next power of two between {@link #MIN_SIZE} and {@link #MAX_SIZE};
+ * larger buffers are allocated afresh and never pooled. Released buffers
+ * are first kept in a small cache local to the releasing thread, which
+ * is where an I/O dispatch thread allocating its next buffer looks first,
+ * and otherwise in a bounded queue shared by all threads.
+ * <p>
+ * A buffer must be {@link #release released} at most once, and must not
+ * be used after its release. Buffers that are never released are simply
+ * left to the garbage collector.
+ * <p>
+ * When leak detection is enabled, either with {@link #setLeakDetection}
+ * or by setting the {@link #LEAK_DETECTION} system property to
+ * <code>true</code>, the allocation site of every outstanding buffer is
+ * recorded and a buffer released twice raises an
+ * {@link IllegalStateException}. Leak detection is meant for tests only.
+ */
+public class PooledByteBufferAllocator implements ByteBufferAllocator {
+
+    public static final String LEAK_DETECTION = "org.apache.http.nio.buffer-leak-detection";
+
+    public static final int MIN_SIZE = 1024;
+    public static final int MAX_SIZE = 64 * 1024;
+
+    static final int MIN_SHIFT = 10;
+    static final int CLASS_COUNT = 7;
+    static final int LOCAL_CACHE_SIZE = 8;
+
+    /**
+     * Shared pool of heap buffers.
+     */
+    public static final PooledByteBufferAllocator HEAP = new PooledByteBufferAllocator(false, 256);
+
+    /**
+     * Shared pool of direct buffers.
+     */
+    public static final PooledByteBufferAllocator DIRECT = new PooledByteBufferAllocator(true, 256);
+
+    private final boolean direct;
+    private final int maxPooled;
+    private final Queue<ByteBuffer>[] pools;
+    private final AtomicInteger[] poolSizes;
+    private final ThreadLocal<LocalCache> localCache;
+
+    private volatile Map<ByteBuffer, Throwable> outstanding;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param direct whether to allocate direct buffers
+     * @param maxPooled maximum number of buffers per size class held in the
+     *   shared queue
+     */
+    @SuppressWarnings("unchecked")
+    public PooledByteBufferAllocator(boolean direct, int maxPooled) {
+        super();
+        this.direct = direct;
+        this.maxPooled = maxPooled;
+        this.pools = new Queue[CLASS_COUNT];
+        this.poolSizes = new AtomicInteger[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            this.pools[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+            this.poolSizes[i] = new AtomicInteger(0);
+        }
+        this.localCache = new ThreadLocal<LocalCache>() {
+
+            @Override
+            protected LocalCache initialValue() {
+                return new LocalCache();
+            }
+
+        };
+        setLeakDetection(Boolean.getBoolean(LEAK_DETECTION));
+    }
+
+    static int sizeClass(int size) {
+        if (size <= MIN_SIZE) {
+            return 0;
+        }
+        if (size > MAX_SIZE) {
+            return -1;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    public boolean isDirect() {
+        return this.direct;
+    }
+
+    /**
+     * Returns a cleared buffer with a capacity of at least the given size.
+     */
+    public ByteBuffer allocate(int size) {
+        int i = sizeClass(size);
+        ByteBuffer buffer = null;
+        if (i >= 0) {
+            buffer = this.localCache.get().poll(i);
+            if (buffer == null) {
+                buffer = this.pools[i].poll();
+                if (buffer != null) {
+                    this.poolSizes[i].decrementAndGet();
+                }
+            }
+            if (buffer == null) {
+                buffer = newBuffer(MIN_SIZE << i);
+            }
+        } else {
+            buffer = newBuffer(size);
+        }
+        Map<ByteBuffer, Throwable> local = this.outstanding;
+        if (local != null) {
+            local.put(buffer, new Throwable("Buffer allocated here"));
+        }
+        return buffer;
+    }
+
+    private ByteBuffer newBuffer(int capacity) {
+        return this.direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Returns the buffer to the pool. Buffers of other allocators and
+     * buffers too large to be pooled are ignored, unless leak detection is
+     * enabled.
+     */
+    public void release(final ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        Map<ByteBuffer, Throwable> local = this.outstanding;
+        if (local != null && local.remove(buffer) == null) {
+            throw new IllegalStateException("Buffer released twice or not allocated by this pool");
+        }
+        if (buffer.isDirect() != this.direct) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        int i = sizeClass(capacity);
+        if (i < 0 || MIN_SIZE << i != capacity) {
+            return;
+        }
+        buffer.clear();
+        if (this.localCache.get().offer(i, buffer)) {
+            return;
+        }
+        if (this.poolSizes[i].incrementAndGet() <= this.maxPooled) {
+            this.pools[i].offer(buffer);
+        } else {
+            this.poolSizes[i].decrementAndGet();
+        }
+    }
+
+    /**
+     * Enables or disables leak detection. Buffers allocated while leak
+     * detection was disabled must not be released after it is enabled.
+     */
+    public void setLeakDetection(boolean enabled) {
+        if (enabled) {
+            if (this.outstanding == null) {
+                this.outstanding = Collections.synchronizedMap(
+                        new IdentityHashMap<ByteBuffer, Throwable>());
+            }
+        } else {
+            this.outstanding = null;
+        }
+    }
+
+    public boolean isLeakDetection() {
+        return this.outstanding != null;
+    }
+
+    /**
+     * Returns the allocation sites of buffers allocated but not released
+     * since leak detection was enabled. Empty if leak detection is
+     * disabled.
+     */
+    public List<Throwable> getOutstanding() {
+        Map<ByteBuffer, Throwable> local = this.outstanding;
+        if (local == null) {
+            return Collections.emptyList();
+        }
+        synchronized (local) {
+            return new ArrayList<Throwable>(local.values());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(this.direct ? "[direct" : "[heap");
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            buffer.append(", ");
+            buffer.append(MIN_SIZE << i);
+            buffer.append(": ");
+            buffer.append(this.poolSizes[i].get());
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    static class LocalCache {
+
+        private final ByteBuffer[][] buffers;
+        private final int[] counts;
+
+        LocalCache() {
+            super();
+            this.buffers = new ByteBuffer[CLASS_COUNT][LOCAL_CACHE_SIZE];
+            this.counts = new int[CLASS_COUNT];
+        }
+
+        ByteBuffer poll(int i) {
+            int n = this.counts[i];
+            if (n == 0) {
+                return null;
+            }
+            n--;
+            ByteBuffer buffer = this.buffers[i][n];
+            this.buffers[i][n] = null;
+            this.counts[i] = n;
+            return buffer;
+        }
+
+        boolean offer(int i, final ByteBuffer buffer) {
+            int n = this.counts[i];
+            if (n == LOCAL_CACHE_SIZE) {
+                return false;
+            }
+            this.buffers[i][n] = buffer;
+            this.counts[i] = n + 1;
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client;
+
+import java.util.concurrent.Future;
+
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * Limits the number of HTTP exchanges that can be in flight at the same
+ * time. An exchange acquires a permit for its route before it requests
+ * a connection from the connection manager and releases the permit once
+ * it has completed, failed or been cancelled.
+ * <p>
+ * Requests for permits that cannot be granted immediately may be kept
+ * waiting or rejected by failing the future with
+ * {@link java.util.concurrent.RejectedExecutionException}.
+ */
+public interface ExchangeLimiter {
+
+    Future<ExchangePermit> acquire(HttpRoute route, FutureCallback<ExchangePermit> callback);
+
+}
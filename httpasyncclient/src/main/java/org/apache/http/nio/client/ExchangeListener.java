@@ -0,0 +1,59 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Listener notified about the progress of HTTP exchanges. Timestamps are
+ * given as returned by {@link System#nanoTime()}; the time spent in a phase
+ * is the difference between its completion and start timestamps.
+ * <p>
+ * Listeners are invoked on I/O dispatch and connection manager threads
+ * and must not block. They are looked up in the execution context under
+ * {@link org.apache.http.nio.client.protocol.AsyncClientContext#EXCHANGE_LISTENER},
+ * so a listener can be registered globally with the client or per
+ * exchange through the local context.
+ */
+public interface ExchangeListener {
+
+    void exchangeStarted(HttpRoute route, HttpRequest request, HttpContext context, long nanoTime);
+
+    void phaseStarted(ExchangePhase phase, HttpRoute route, HttpContext context, long nanoTime);
+
+    void phaseCompleted(ExchangePhase phase, HttpRoute route, HttpContext context, long nanoTime);
+
+    void exchangeCompleted(HttpRoute route, HttpResponse response, HttpContext context, long nanoTime);
+
+    void exchangeFailed(HttpRoute route, Exception ex, HttpContext context, long nanoTime);
+
+    void exchangeCancelled(HttpRoute route, HttpContext context, long nanoTime);
+
+}
@@ -0,0 +1,59 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client;
+
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * Permit granted by an {@link ExchangeLimiter} to a single HTTP exchange.
+ * Exactly one of the release methods is to be called when the exchange
+ * terminates. Subsequent calls have no effect.
+ * <p>
+ * Releasing a permit may grant permits to waiting exchanges and run their
+ * callbacks on the calling thread, so the release methods should not be
+ * called while holding locks.
+ */
+public interface ExchangePermit {
+
+    HttpRoute getRoute();
+
+    /**
+     * Releases the permit after the exchange has completed normally.
+     */
+    void completed();
+
+    /**
+     * Releases the permit after the exchange has failed.
+     */
+    void failed();
+
+    /**
+     * Releases the permit after the exchange has been cancelled.
+     */
+    void cancelled();
+
+}
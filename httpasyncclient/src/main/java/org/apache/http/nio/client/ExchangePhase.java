@@ -0,0 +1,64 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client;
+
+/**
+ * Phases of an HTTP exchange reported to {@link ExchangeListener}s.
+ * <p>
+ * {@link #DNS_LOOKUP}, {@link #CONNECT} and {@link #TLS_HANDSHAKE} are
+ * reported only for exchanges that open a new connection. DNS lookup and
+ * connect take place while the exchange waits for a connection, so both
+ * fall within the {@link #POOL_WAIT} phase and are reported before it
+ * completes. Phases from
+ * {@link #REQUEST_WRITE} onwards are reported once for every request
+ * message sent, including redirects, authentication retries and
+ * <code>CONNECT</code> requests.
+ */
+public enum ExchangePhase {
+
+    /** Waiting for a connection to be leased from the pool. */
+    POOL_WAIT,
+
+    /** Resolving the address of the first hop. */
+    DNS_LOOKUP,
+
+    /** Establishing the TCP connection to the first hop. */
+    CONNECT,
+
+    /** Performing the TLS handshake with the target or proxy. */
+    TLS_HANDSHAKE,
+
+    /** Transmitting the request head and body. */
+    REQUEST_WRITE,
+
+    /** Waiting for the response head once the request has been sent. */
+    RESPONSE_WAIT,
+
+    /** Receiving the response body. */
+    RESPONSE_BODY
+
+}
@@ -0,0 +1,79 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Strategy that decides whether and when a duplicate (hedged) request
+ * should be sent if the original request has not received a response
+ * within a given period of time. The first response to arrive wins,
+ * the other exchange gets cancelled.
+ * <p>
+ * Only requests that do not enclose an entity are ever hedged.
+ */
+public interface HedgingStrategy {
+
+    /**
+     * Returns the delay in milliseconds after which a hedged request
+     * is to be sent if no response has been received by then, or
+     * a negative value if the request must not be hedged.
+     */
+    long getHedgeDelay(HttpHost target, HttpRequest request, HttpContext context);
+
+    /**
+     * Returns the target host the hedged request is to be sent to.
+     * This can be the original target or another replica of it.
+     */
+    HttpHost getHedgeTarget(HttpHost target, HttpRequest request, HttpContext context);
+
+    /**
+     * Asks permission to send a hedged request to the given target.
+     * Implementations are expected to limit the rate of hedged requests.
+     */
+    boolean tryHedge(HttpHost target);
+
+    /**
+     * Records the time it took for a response to start arriving from
+     * the given target. If a hedged request won, the duration is the time
+     * the original request had been pending for until then.
+     */
+    void responseStarted(HttpHost target, long duration, TimeUnit tunit);
+
+    /**
+     * Notifies the strategy of the outcome of a hedged execution.
+     *
+     * @param hedgeWon <code>true</code> if the response to the hedged request
+     *   arrived first, <code>false</code> otherwise.
+     */
+    void hedgeCompleted(HttpHost target, boolean hedgeWon);
+
+}
@@ -27,6 +27,8 @@
 package org.apache.http.nio.client.methods;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.http.HttpException;
 import org.apache.http.HttpResponse;
@@ -36,6 +38,15 @@ import org.apache.http.nio.client.HttpAsyncResponseConsumer;
 
 public abstract class AbstractHttpAsyncResponseConsumer<T> implements HttpAsyncResponseConsumer<T> {
 
+    /**
+     * Demand value meaning content is consumed as fast as it arrives.
+     */
+    public static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final AtomicLong demand = new AtomicLong(UNBOUNDED);
+    private final AtomicBoolean suspended = new AtomicBoolean(false);
+    private volatile IOControl ioctrl;
+
     private volatile HttpResponse response;
     private volatile Exception ex;
     private volatile boolean completed;
@@ -54,7 +65,103 @@ public abstract class AbstractHttpAsyncResponseConsumer<T> implements HttpAsyncR
 
     protected abstract T buildResult() throws Exception;
 
+    /**
+     * Makes content delivery demand-driven. Content is then read only while
+     * there is outstanding demand; once it is used up, input from the
+     * connection is suspended until more is granted with
+     * {@link #request(long)}. Each read of content delivered to the
+     * subclass uses up one unit of demand. Memory held by a slow recipient
+     * is thus bounded by the demand it grants.
+     * <p>
+     * Demand is {@link #UNBOUNDED} by default. This method is meant to be
+     * called before any content has been received, typically from the
+     * constructor of a subclass.
+     */
+    protected void setInitialDemand(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Demand may not be negative");
+        }
+        this.demand.set(n);
+    }
+
+    /**
+     * Grants demand for <code>n</code> further reads of content, resuming
+     * input if it has been suspended for lack of demand. This method may be
+     * called from any thread. Note that the response completes only once
+     * the end of content has been read, which may take a further unit of
+     * demand.
+     */
+    public void request(long n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Demand must be positive");
+        }
+        for (;;) {
+            long current = this.demand.get();
+            if (current == UNBOUNDED) {
+                return;
+            }
+            long next = current + n;
+            if (next < 0) {
+                next = UNBOUNDED;
+            }
+            if (this.demand.compareAndSet(current, next)) {
+                break;
+            }
+        }
+        // Whoever clears the suspended flag resumes input
+        if (this.suspended.compareAndSet(true, false)) {
+            IOControl local = this.ioctrl;
+            if (local != null) {
+                local.requestInput();
+            }
+        }
+    }
+
+    /**
+     * Returns the outstanding demand.
+     */
+    public long getDemand() {
+        return this.demand.get();
+    }
+
+    /**
+     * Returns <code>true</code> if there is outstanding demand. Otherwise
+     * suspends input and returns <code>false</code>, in which case the
+     * subclass should stop reading content.
+     */
+    protected boolean hasDemand(final IOControl ioctrl) {
+        if (this.demand.get() > 0) {
+            return true;
+        }
+        this.ioctrl = ioctrl;
+        // Input is suspended before the flag is published, so that a
+        // request seeing the flag always resumes suspended input
+        ioctrl.suspendInput();
+        this.suspended.set(true);
+        // Demand may have been granted before the flag was published
+        if (this.demand.get() > 0 && this.suspended.compareAndSet(true, false)) {
+            ioctrl.requestInput();
+        }
+        return false;
+    }
+
+    /**
+     * Uses up one unit of demand.
+     */
+    protected void consumeDemand() {
+        for (;;) {
+            long current = this.demand.get();
+            if (current == UNBOUNDED || current == 0) {
+                return;
+            }
+            if (this.demand.compareAndSet(current, current - 1)) {
+                return;
+            }
+        }
+    }
+
     void releaseResources() {
+        this.ioctrl = null;
         onCleanup();
     }
 
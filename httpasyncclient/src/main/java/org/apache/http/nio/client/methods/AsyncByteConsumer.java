@@ -29,23 +29,43 @@ package org.apache.http.nio.client.methods;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import org.apache.http.impl.nio.util.PooledByteBufferAllocator;
 import org.apache.http.nio.ContentDecoder;
 import org.apache.http.nio.IOControl;
 
 public abstract class AsyncByteConsumer<T> extends AbstractHttpAsyncResponseConsumer<T> {
 
     private final int bufSize;
+    private final PooledByteBufferAllocator allocator;
     private ByteBuffer bbuf;
 
-    public AsyncByteConsumer(int bufSize) {
+    /**
+     * Creates a consumer whose content buffer is taken from the given pool.
+     * Pass {@link PooledByteBufferAllocator#DIRECT} for consumers that
+     * never access the backing array of the buffer.
+     */
+    public AsyncByteConsumer(int bufSize, final PooledByteBufferAllocator allocator) {
         super();
+        if (allocator == null) {
+            throw new IllegalArgumentException("Buffer allocator may not be null");
+        }
         this.bufSize = bufSize;
+        this.allocator = allocator;
+    }
+
+    public AsyncByteConsumer(int bufSize) {
+        this(bufSize, PooledByteBufferAllocator.HEAP);
     }
 
     public AsyncByteConsumer() {
         this(8 * 1024);
     }
 
+    /**
+     * Invoked with each chunk of content received. The buffer is returned
+     * to its pool once the response has been consumed, so it must not be
+     * retained beyond this call.
+     */
     protected abstract void onByteReceived(
             final ByteBuffer buf, final IOControl ioctrl) throws IOException;
 
@@ -53,14 +73,18 @@ public abstract class AsyncByteConsumer<T> extends AbstractHttpAsyncResponseCons
     protected void onContentReceived(
             final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
         if (this.bbuf == null) {
-            this.bbuf = ByteBuffer.allocate(this.bufSize);
+            this.bbuf = this.allocator.allocate(this.bufSize);
         }
         for (;;) {
+            if (!hasDemand(ioctrl)) {
+                break;
+            }
             int bytesRead = decoder.read(this.bbuf);
             if (bytesRead <= 0) {
                 break;
             }
             this.bbuf.flip();
+            consumeDemand();
             onByteReceived(this.bbuf, ioctrl);
             this.bbuf.clear();
         }
@@ -68,6 +92,7 @@ public abstract class AsyncByteConsumer<T> extends AbstractHttpAsyncResponseCons
 
     @Override
     void releaseResources() {
+        this.allocator.release(this.bbuf);
         this.bbuf = null;
         super.releaseResources();
     }
@@ -31,24 +31,54 @@ import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
 import org.apache.http.HttpResponse;
 import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.util.PooledByteBufferAllocator;
 import org.apache.http.nio.ContentDecoder;
 import org.apache.http.nio.IOControl;
 import org.apache.http.protocol.HTTP;
 
+/**
+ * Response consumer that decodes content into characters. US-ASCII,
+ * ISO-8859-1 and UTF-8 content is decoded by a specialised loop over the
+ * buffer arrays; for UTF-8 only multi-byte sequences are passed to a
+ * {@link CharsetDecoder}. Other charsets are decoded by a
+ * {@link CharsetDecoder} throughout.
+ * <p>
+ * If content delivery is demand-driven (see {@link #setInitialDemand(long)})
+ * each read of content uses up one unit of demand, even if it ends in the
+ * middle of a character and produces no call to
+ * {@link #onCharReceived(CharBuffer, IOControl)}.
+ */
 public abstract class AsyncCharConsumer<T> extends AbstractHttpAsyncResponseConsumer<T> {
 
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAX_CACHED_CHARSETS = 64;
+    private static final Map<String, Charset> CHARSETS = new ConcurrentHashMap<String, Charset>();
+
+    private static final int GENERIC = 0;
+    private static final int ASCII_MODE = 1;
+    private static final int ISO_8859_1_MODE = 2;
+    private static final int UTF_8_MODE = 3;
+
     private final int bufSize;
     private ContentType contentType;
     private Charset charset;
     private CharsetDecoder chardecoder;
+    private int mode;
     private ByteBuffer bbuf;
     private CharBuffer cbuf;
 
@@ -64,6 +94,17 @@ public abstract class AsyncCharConsumer<T> extends AbstractHttpAsyncResponseCons
     protected abstract void onCharReceived(
             final CharBuffer buf, final IOControl ioctrl) throws IOException;
 
+    static Charset lookupCharset(final String name) {
+        Charset charset = CHARSETS.get(name);
+        if (charset == null) {
+            charset = Charset.forName(name);
+            if (CHARSETS.size() < MAX_CACHED_CHARSETS) {
+                CHARSETS.put(name, charset);
+            }
+        }
+        return charset;
+    }
+
     @Override
     public synchronized void responseReceived(
             final HttpResponse response) throws IOException, HttpException {
@@ -81,28 +122,145 @@ public abstract class AsyncCharConsumer<T> extends AbstractHttpAsyncResponseCons
                 if (cs == null) {
                     cs = HTTP.DEFAULT_CONTENT_CHARSET;
                 }
-                this.charset = Charset.forName(cs);
+                this.charset = lookupCharset(cs);
             } catch (UnsupportedCharsetException ex) {
                 throw new UnsupportedEncodingException(this.contentType.getCharset());
             }
-            this.chardecoder = this.charset.newDecoder();
-            this.bbuf = ByteBuffer.allocate(this.bufSize);
-            this.cbuf = CharBuffer.allocate(this.bufSize);
+            if (this.charset.equals(ASCII)) {
+                this.mode = ASCII_MODE;
+            } else if (this.charset.equals(ISO_8859_1)) {
+                this.mode = ISO_8859_1_MODE;
+            } else if (this.charset.equals(UTF_8)) {
+                this.mode = UTF_8_MODE;
+                this.chardecoder = this.charset.newDecoder();
+            } else {
+                this.mode = GENERIC;
+                this.chardecoder = this.charset.newDecoder();
+            }
+            this.bbuf = PooledByteBufferAllocator.HEAP.allocate(this.bufSize);
+            this.cbuf = CharBuffer.allocate(this.bbuf.capacity());
         }
         for (;;) {
+            if (!hasDemand(ioctrl)) {
+                break;
+            }
             int bytesRead = decoder.read(this.bbuf);
             if (bytesRead <= 0) {
                 break;
             }
             this.bbuf.flip();
+            consumeDemand();
             boolean completed = decoder.isCompleted();
-            CoderResult result = this.chardecoder.decode(this.bbuf, this.cbuf, completed);
-            handleDecodingResult(result, ioctrl);
-            this.bbuf.compact();
-            if (completed) {
-                result = this.chardecoder.flush(this.cbuf);
+            switch (this.mode) {
+            case ASCII_MODE:
+                decodeSingleByte(true);
+                break;
+            case ISO_8859_1_MODE:
+                decodeSingleByte(false);
+                break;
+            case UTF_8_MODE:
+                decodeUTF8(completed);
+                break;
+            default:
+                CoderResult result = this.chardecoder.decode(this.bbuf, this.cbuf, completed);
                 handleDecodingResult(result, ioctrl);
+                this.bbuf.compact();
+                if (completed) {
+                    result = this.chardecoder.flush(this.cbuf);
+                    handleDecodingResult(result, ioctrl);
+                }
+                continue;
             }
+            this.bbuf.compact();
+            flushChars(ioctrl);
+        }
+    }
+
+    /**
+     * Decodes all input. The char buffer is empty and at least as large as
+     * the byte buffer, so it cannot overflow.
+     */
+    private void decodeSingleByte(boolean ascii) throws CharacterCodingException {
+        byte[] src = this.bbuf.array();
+        int soff = this.bbuf.arrayOffset();
+        int sp = soff + this.bbuf.position();
+        int sl = soff + this.bbuf.limit();
+        char[] dst = this.cbuf.array();
+        int doff = this.cbuf.arrayOffset();
+        int dp = doff + this.cbuf.position();
+        if (ascii) {
+            while (sp < sl) {
+                byte b = src[sp++];
+                if (b < 0) {
+                    throw new MalformedInputException(1);
+                }
+                dst[dp++] = (char) b;
+            }
+        } else {
+            while (sp < sl) {
+                dst[dp++] = (char) (src[sp++] & 0xff);
+            }
+        }
+        this.bbuf.position(sp - soff);
+        this.cbuf.position(dp - doff);
+    }
+
+    private static int sequenceLength(byte b) {
+        int u = b & 0xff;
+        if (u >= 0xf0) {
+            return 4;
+        } else if (u >= 0xe0) {
+            return 3;
+        } else if (u >= 0xc0) {
+            return 2;
+        } else {
+            return 1;
+        }
+    }
+
+    /**
+     * Decodes runs of ASCII bytes directly and hands each multi-byte
+     * sequence to the charset decoder. An incomplete sequence at the end of
+     * the input is left in the byte buffer until more input arrives.
+     */
+    private void decodeUTF8(boolean completed) throws CharacterCodingException {
+        byte[] src = this.bbuf.array();
+        int soff = this.bbuf.arrayOffset();
+        int sp = soff + this.bbuf.position();
+        int sl = soff + this.bbuf.limit();
+        char[] dst = this.cbuf.array();
+        int doff = this.cbuf.arrayOffset();
+        int dp = doff + this.cbuf.position();
+        while (sp < sl) {
+            byte b = src[sp];
+            if (b >= 0) {
+                dst[dp++] = (char) b;
+                sp++;
+                continue;
+            }
+            int n = sequenceLength(b);
+            if (sl - sp < n) {
+                break;
+            }
+            this.bbuf.limit(sp - soff + n);
+            this.bbuf.position(sp - soff);
+            this.cbuf.position(dp - doff);
+            CoderResult result = this.chardecoder.decode(this.bbuf, this.cbuf, false);
+            this.bbuf.limit(sl - soff);
+            if (result.isError()) {
+                result.throwException();
+            }
+            int consumed = soff + this.bbuf.position() - sp;
+            if (consumed == 0) {
+                throw new MalformedInputException(n);
+            }
+            sp += consumed;
+            dp = doff + this.cbuf.position();
+        }
+        this.bbuf.position(sp - soff);
+        this.cbuf.position(dp - doff);
+        if (completed && this.bbuf.hasRemaining()) {
+            throw new MalformedInputException(this.bbuf.remaining());
         }
     }
 
@@ -111,6 +269,10 @@ public abstract class AsyncCharConsumer<T> extends AbstractHttpAsyncResponseCons
         if (result.isError()) {
             result.throwException();
         }
+        flushChars(ioctrl);
+    }
+
+    private void flushChars(final IOControl ioctrl) throws IOException {
         this.cbuf.flip();
         if (this.cbuf.hasRemaining()) {
             onCharReceived(this.cbuf, ioctrl);
@@ -122,6 +284,7 @@ public abstract class AsyncCharConsumer<T> extends AbstractHttpAsyncResponseCons
     void releaseResources() {
         this.charset = null;
         this.chardecoder = null;
+        PooledByteBufferAllocator.HEAP.release(this.bbuf);
         this.bbuf = null;
         this.cbuf = null;
         super.releaseResources();
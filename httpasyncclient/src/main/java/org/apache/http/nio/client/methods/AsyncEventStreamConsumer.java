@@ -0,0 +1,178 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.nio.IOControl;
+
+/**
+ * Response consumer for <code>text/event-stream</code> content as defined
+ * by the Server-Sent Events specification. Comment lines are ignored and
+ * the <code>event</code>, <code>data</code>, <code>id</code> and
+ * <code>retry</code> fields are interpreted; an event is dispatched at
+ * each blank line. An event left incomplete at the end of the content is
+ * discarded. The content is always decoded as UTF-8, whatever charset
+ * the response declares.
+ * <p>
+ * To resume a stream after the connection has been lost, pass
+ * {@link #getLastEventId()} to
+ * {@link HttpAsyncMethods#createEventStreamGet(java.net.URI, String)} and
+ * to the constructor of the consumer for the new request, waiting
+ * {@link #getRetryInterval()} milliseconds first if the server has set
+ * one.
+ */
+public abstract class AsyncEventStreamConsumer<T> extends AsyncLineConsumer<T> {
+
+    private final StringBuilder data;
+    private String eventType;
+    private volatile String lastEventId;
+    private volatile long retryInterval;
+    private boolean firstLine;
+
+    public AsyncEventStreamConsumer(int bufSize, int maxLineLength, final String lastEventId) {
+        super(bufSize, maxLineLength);
+        this.data = new StringBuilder();
+        this.lastEventId = lastEventId;
+        this.retryInterval = -1;
+        this.firstLine = true;
+    }
+
+    public AsyncEventStreamConsumer(final String lastEventId) {
+        this(8 * 1024, 1024 * 1024, lastEventId);
+    }
+
+    public AsyncEventStreamConsumer() {
+        this(null);
+    }
+
+    /**
+     * Invoked with each event dispatched by the stream.
+     */
+    protected abstract void onEvent(
+            final ServerSentEvent event, final IOControl ioctrl) throws IOException;
+
+    /**
+     * Returns the last event ID set by the stream, or the one this consumer
+     * was created with if the stream has not set one.
+     */
+    public String getLastEventId() {
+        return this.lastEventId;
+    }
+
+    /**
+     * Returns the reconnection time in milliseconds last set by the stream,
+     * or <code>-1</code> if it has not set one.
+     */
+    public long getRetryInterval() {
+        return this.retryInterval;
+    }
+
+    /**
+     * Returns UTF-8, the only encoding event streams may use.
+     */
+    @Override
+    protected String getCharset(final HttpResponse response) {
+        return "UTF-8";
+    }
+
+    @Override
+    protected void onLine(final String line, final IOControl ioctrl) throws IOException {
+        String s = line;
+        if (this.firstLine) {
+            this.firstLine = false;
+            if (s.length() > 0 && s.charAt(0) == '\uFEFF') {
+                s = s.substring(1);
+            }
+        }
+        if (s.length() == 0) {
+            dispatch(ioctrl);
+            return;
+        }
+        if (s.charAt(0) == ':') {
+            return;
+        }
+        String field;
+        String value;
+        int colon = s.indexOf(':');
+        if (colon < 0) {
+            field = s;
+            value = "";
+        } else {
+            field = s.substring(0, colon);
+            int i = colon + 1;
+            if (i < s.length() && s.charAt(i) == ' ') {
+                i++;
+            }
+            value = s.substring(i);
+        }
+        if (field.equals("data")) {
+            this.data.append(value).append('\n');
+        } else if (field.equals("event")) {
+            this.eventType = value;
+        } else if (field.equals("id")) {
+            if (value.indexOf('\0') < 0) {
+                this.lastEventId = value;
+            }
+        } else if (field.equals("retry")) {
+            setRetryInterval(value);
+        }
+    }
+
+    private void setRetryInterval(final String value) {
+        if (value.length() == 0) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return;
+            }
+        }
+        try {
+            this.retryInterval = Long.parseLong(value);
+        } catch (NumberFormatException ignore) {
+        }
+    }
+
+    private void dispatch(final IOControl ioctrl) throws IOException {
+        String type = this.eventType;
+        this.eventType = null;
+        if (this.data.length() == 0) {
+            return;
+        }
+        this.data.setLength(this.data.length() - 1);
+        ServerSentEvent event = new ServerSentEvent(
+                this.lastEventId,
+                type != null && type.length() > 0 ? type : "message",
+                this.data.toString());
+        this.data.setLength(0);
+        onEvent(event, ioctrl);
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+
+/**
+ * Response consumer for content consisting of a single JSON array. Each
+ * element of the array is passed to {@link #onElement(String, IOControl)}
+ * as compact JSON text as soon as it has been received, so the array as a
+ * whole is never held in memory.
+ * <p>
+ * Elements are delivered on the I/O dispatch thread. If the recipient
+ * cannot keep up it may call {@link IOControl#suspendInput()} and, once it
+ * has caught up, {@link IOControl#requestInput()}. Content already read
+ * from the connection is still delivered after input has been suspended.
+ */
+public abstract class AsyncJsonArrayConsumer<T> extends AsyncCharConsumer<T> {
+
+    private final JsonTokenizer tokenizer;
+    private final StringBuilder element;
+    private IOControl ioctrl;
+    private long count;
+
+    public AsyncJsonArrayConsumer(int bufSize) {
+        super(bufSize);
+        this.tokenizer = new JsonTokenizer(new ElementCollector());
+        this.element = new StringBuilder();
+    }
+
+    public AsyncJsonArrayConsumer() {
+        this(8 * 1024);
+    }
+
+    /**
+     * Invoked with the JSON text of each top-level array element.
+     */
+    protected abstract void onElement(
+            final String json, final IOControl ioctrl) throws IOException;
+
+    /**
+     * Returns the number of elements delivered so far.
+     */
+    protected long getElementCount() {
+        return this.count;
+    }
+
+    @Override
+    protected void onContentReceived(
+            final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+        super.onContentReceived(decoder, ioctrl);
+        if (decoder.isCompleted()) {
+            this.tokenizer.end();
+        }
+    }
+
+    @Override
+    protected void onCharReceived(
+            final CharBuffer buf, final IOControl ioctrl) throws IOException {
+        this.ioctrl = ioctrl;
+        this.tokenizer.feed(buf);
+    }
+
+    @Override
+    void releaseResources() {
+        this.ioctrl = null;
+        super.releaseResources();
+    }
+
+    static void quote(final StringBuilder buf, final String s) {
+        buf.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+            case '"':
+                buf.append("\\\"");
+                break;
+            case '\\':
+                buf.append("\\\\");
+                break;
+            case '\n':
+                buf.append("\\n");
+                break;
+            case '\r':
+                buf.append("\\r");
+                break;
+            case '\t':
+                buf.append("\\t");
+                break;
+            default:
+                if (ch < 0x20) {
+                    String hex = Integer.toHexString(ch);
+                    buf.append("\\u");
+                    for (int j = hex.length(); j < 4; j++) {
+                        buf.append('0');
+                    }
+                    buf.append(hex);
+                } else {
+                    buf.append(ch);
+                }
+            }
+        }
+        buf.append('"');
+    }
+
+    /**
+     * Rebuilds the text of each element from the tokens at depth one and
+     * below.
+     */
+    class ElementCollector implements JsonHandler {
+
+        private int depth;
+
+        private void beforeValue() throws IOException {
+            if (this.depth == 0) {
+                throw new IOException("JSON content is not an array");
+            }
+            int len = element.length();
+            if (len > 0) {
+                char last = element.charAt(len - 1);
+                if (last != '[' && last != '{' && last != ':') {
+                    element.append(',');
+                }
+            }
+        }
+
+        private void afterValue() throws IOException {
+            if (this.depth == 1) {
+                String json = element.toString();
+                element.setLength(0);
+                count++;
+                onElement(json, ioctrl);
+            }
+        }
+
+        public void startArray() throws IOException {
+            if (this.depth > 0) {
+                beforeValue();
+                element.append('[');
+            }
+            this.depth++;
+        }
+
+        public void endArray() throws IOException {
+            this.depth--;
+            if (this.depth > 0) {
+                element.append(']');
+                afterValue();
+            }
+        }
+
+        public void startObject() throws IOException {
+            beforeValue();
+            element.append('{');
+            this.depth++;
+        }
+
+        public void endObject() throws IOException {
+            this.depth--;
+            element.append('}');
+            afterValue();
+        }
+
+        public void fieldName(final String name) throws IOException {
+            beforeValue();
+            quote(element, name);
+            element.append(':');
+        }
+
+        public void stringValue(final String value) throws IOException {
+            beforeValue();
+            quote(element, value);
+            afterValue();
+        }
+
+        public void numberValue(final String value) throws IOException {
+            beforeValue();
+            element.append(value);
+            afterValue();
+        }
+
+        public void booleanValue(boolean value) throws IOException {
+            beforeValue();
+            element.append(value);
+            afterValue();
+        }
+
+        public void nullValue() throws IOException {
+            beforeValue();
+            element.append("null");
+            afterValue();
+        }
+
+    }
+
+}
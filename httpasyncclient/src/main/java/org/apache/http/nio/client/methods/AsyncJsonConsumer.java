@@ -0,0 +1,71 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+
+/**
+ * Response consumer that tokenizes JSON content as it arrives and reports
+ * each token to a {@link JsonHandler}. The body is never buffered as a
+ * whole; memory use is bounded by the content buffer and the longest
+ * single token.
+ * <p>
+ * The handler is invoked on the I/O dispatch thread.
+ */
+public abstract class AsyncJsonConsumer<T> extends AsyncCharConsumer<T> {
+
+    private final JsonTokenizer tokenizer;
+
+    public AsyncJsonConsumer(int bufSize, final JsonHandler handler) {
+        super(bufSize);
+        this.tokenizer = new JsonTokenizer(handler);
+    }
+
+    public AsyncJsonConsumer(final JsonHandler handler) {
+        this(8 * 1024, handler);
+    }
+
+    @Override
+    protected void onContentReceived(
+            final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+        super.onContentReceived(decoder, ioctrl);
+        if (decoder.isCompleted()) {
+            this.tokenizer.end();
+        }
+    }
+
+    @Override
+    protected void onCharReceived(
+            final CharBuffer buf, final IOControl ioctrl) throws IOException {
+        this.tokenizer.feed(buf);
+    }
+
+}
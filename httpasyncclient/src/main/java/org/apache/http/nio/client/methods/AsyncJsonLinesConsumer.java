@@ -0,0 +1,64 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+
+import org.apache.http.nio.IOControl;
+
+/**
+ * Response consumer for newline-delimited JSON content, one record per
+ * line. Blank lines are skipped; records are passed on as-is.
+ */
+public abstract class AsyncJsonLinesConsumer<T> extends AsyncLineConsumer<T> {
+
+    public AsyncJsonLinesConsumer(int bufSize, int maxLineLength) {
+        super(bufSize, maxLineLength);
+    }
+
+    public AsyncJsonLinesConsumer() {
+        super();
+    }
+
+    /**
+     * Invoked with the JSON text of each record.
+     */
+    protected abstract void onRecord(
+            final String json, final IOControl ioctrl) throws IOException;
+
+    @Override
+    protected void onLine(final String line, final IOControl ioctrl) throws IOException {
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch != ' ' && ch != '\t') {
+                onRecord(line, ioctrl);
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+
+/**
+ * Response consumer that splits content into lines. Lines are located in
+ * the content buffer itself and decoded straight from it; only a line
+ * that straddles two reads is copied into a carry-over buffer. Lines may
+ * be terminated by LF, CR or CRLF. The last line is delivered even if it
+ * is not terminated.
+ * <p>
+ * Content is decoded using the charset of the response entity, UTF-8 if
+ * none is given. As lines are split on the bytes of CR and LF before
+ * decoding, only charsets that encode US-ASCII characters as single bytes
+ * of the same value are supported; responses in other charsets, such as
+ * UTF-16, fail with an {@link UnsupportedEncodingException}.
+ * Lines are delivered on the I/O dispatch thread. If the
+ * recipient cannot keep up it may call {@link IOControl#suspendInput()}
+ * and, once it has caught up, {@link IOControl#requestInput()}.
+ */
+public abstract class AsyncLineConsumer<T> extends AsyncByteConsumer<T> {
+
+    private static final String ASCII_CHARS;
+
+    static {
+        StringBuilder sb = new StringBuilder(128);
+        for (char ch = 0; ch < 128; ch++) {
+            sb.append(ch);
+        }
+        ASCII_CHARS = sb.toString();
+    }
+
+    private final int maxLineLength;
+    private String charset;
+    private byte[] carry;
+    private int carryLen;
+    private boolean skipLF;
+
+    public AsyncLineConsumer(int bufSize, int maxLineLength) {
+        super(bufSize);
+        if (maxLineLength <= 0) {
+            throw new IllegalArgumentException("Maximum line length may not be negative or zero");
+        }
+        this.maxLineLength = maxLineLength;
+    }
+
+    public AsyncLineConsumer() {
+        this(8 * 1024, 1024 * 1024);
+    }
+
+    /**
+     * Invoked with each line of content, without its line terminator.
+     */
+    protected abstract void onLine(
+            final String line, final IOControl ioctrl) throws IOException;
+
+    /**
+     * Returns the name of the charset to decode the content of the given
+     * response with. This implementation returns the charset of the
+     * response entity, UTF-8 if none is given.
+     */
+    protected String getCharset(final HttpResponse response) {
+        HttpEntity entity = response.getEntity();
+        String cs = ContentType.getOrDefault(entity).getCharset();
+        return cs != null ? cs : "UTF-8";
+    }
+
+    @Override
+    public synchronized void responseReceived(
+            final HttpResponse response) throws IOException, HttpException {
+        String cs = getCharset(response);
+        Charset charset;
+        try {
+            charset = AsyncCharConsumer.lookupCharset(cs);
+        } catch (UnsupportedCharsetException ex) {
+            throw new UnsupportedEncodingException(cs);
+        } catch (IllegalCharsetNameException ex) {
+            throw new UnsupportedEncodingException(cs);
+        }
+        if (!isAsciiCompatible(charset)) {
+            throw new UnsupportedEncodingException(cs + " is not ASCII compatible");
+        }
+        this.charset = charset.name();
+        super.responseReceived(response);
+    }
+
+    static boolean isAsciiCompatible(final Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        ByteBuffer b;
+        try {
+            b = charset.newEncoder().encode(CharBuffer.wrap(ASCII_CHARS));
+        } catch (IOException ex) {
+            return false;
+        }
+        if (b.remaining() != ASCII_CHARS.length()) {
+            return false;
+        }
+        for (int i = 0; i < ASCII_CHARS.length(); i++) {
+            if (b.get(i) != ASCII_CHARS.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void onContentReceived(
+            final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+        super.onContentReceived(decoder, ioctrl);
+        if (decoder.isCompleted() && this.carryLen > 0) {
+            String line = new String(this.carry, 0, this.carryLen, this.charset);
+            this.carryLen = 0;
+            onLine(line, ioctrl);
+        }
+    }
+
+    @Override
+    protected final void onByteReceived(
+            final ByteBuffer buf, final IOControl ioctrl) throws IOException {
+        // Content buffers come from the heap pool and are backed by an array
+        byte[] b = buf.array();
+        int off = buf.arrayOffset();
+        int end = off + buf.limit();
+        int pos = off + buf.position();
+        int start = pos;
+        while (pos < end) {
+            byte ch = b[pos];
+            if (this.skipLF) {
+                this.skipLF = false;
+                if (ch == '\n') {
+                    pos++;
+                    start = pos;
+                    continue;
+                }
+            }
+            if (ch != '\n' && ch != '\r') {
+                pos++;
+                continue;
+            }
+            String line;
+            if (this.carryLen == 0) {
+                checkLength(pos - start);
+                line = new String(b, start, pos - start, this.charset);
+            } else {
+                append(b, start, pos - start);
+                line = new String(this.carry, 0, this.carryLen, this.charset);
+                this.carryLen = 0;
+            }
+            this.skipLF = ch == '\r';
+            pos++;
+            start = pos;
+            onLine(line, ioctrl);
+        }
+        append(b, start, end - start);
+        buf.position(end - off);
+    }
+
+    private void checkLength(int len) throws IOException {
+        if (len > this.maxLineLength) {
+            throw new IOException("Maximum line length limit exceeded");
+        }
+    }
+
+    private void append(final byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        int newLen = this.carryLen + len;
+        checkLength(newLen);
+        if (this.carry == null || newLen > this.carry.length) {
+            int capacity = this.carry == null ? 256 : this.carry.length;
+            while (capacity < newLen) {
+                capacity <<= 1;
+            }
+            byte[] tmp = new byte[Math.min(capacity, this.maxLineLength)];
+            if (this.carryLen > 0) {
+                System.arraycopy(this.carry, 0, tmp, 0, this.carryLen);
+            }
+            this.carry = tmp;
+        }
+        System.arraycopy(b, off, this.carry, this.carryLen, len);
+        this.carryLen = newLen;
+    }
+
+    @Override
+    void releaseResources() {
+        this.carry = null;
+        this.carryLen = 0;
+        super.releaseResources();
+    }
+
+}
@@ -28,17 +28,26 @@ package org.apache.http.nio.client.methods;
 
 import java.io.IOException;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.nio.ContentDecoder;
 import org.apache.http.nio.IOControl;
-import org.apache.http.nio.entity.BufferingNHttpEntity;
-import org.apache.http.nio.entity.ConsumingNHttpEntity;
-import org.apache.http.nio.util.HeapByteBufferAllocator;
 
+/**
+ * Buffers the response content in memory. Content is accumulated in a
+ * list of fixed-size slabs rather than in a single array that has to be
+ * reallocated and copied as it grows. If the content length is known and
+ * does not exceed {@link #MAX_PRESIZE}, a single buffer of exactly that
+ * size is used instead. The response returned carries a
+ * {@link CompositeByteBufferEntity} over the buffered content.
+ */
 public class BasicHttpAsyncResponseConsumer extends AbstractHttpAsyncResponseConsumer<HttpResponse> {
 
+    public static final int SLAB_SIZE = 8 * 1024;
+    public static final int MAX_PRESIZE = 1024 * 1024;
+
     private volatile HttpResponse response;
-    private volatile ConsumingNHttpEntity consumer;
+    private SlabBuffer buffer;
 
     public BasicHttpAsyncResponseConsumer() {
         super();
@@ -47,27 +56,34 @@ public class BasicHttpAsyncResponseConsumer extends AbstractHttpAsyncResponseCon
     @Override
     protected void onResponseReceived(final HttpResponse response) {
         this.response = response;
-        if (response.getEntity() != null) {
-            this.consumer = new BufferingNHttpEntity(
-                    response.getEntity(), new HeapByteBufferAllocator());
-        } else {
-            this.consumer = null;
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            this.buffer = new SlabBuffer(
+                    SlabBuffer.HEAP_ALLOCATOR, SLAB_SIZE, entity.getContentLength(), MAX_PRESIZE);
         }
-        this.response.setEntity(this.consumer);
     }
 
     @Override
     protected void onContentReceived(
             final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
-        this.consumer.consumeContent(decoder, ioctrl);
+        this.buffer.readAll(decoder);
     }
 
     @Override
     protected void onCleanup() {
+        this.buffer = null;
     }
 
     @Override
     protected HttpResponse buildResult() {
+        if (this.buffer != null) {
+            HttpEntity original = this.response.getEntity();
+            CompositeByteBufferEntity entity = new CompositeByteBufferEntity(this.buffer.flip());
+            entity.setContentType(original.getContentType());
+            entity.setContentEncoding(original.getContentEncoding());
+            entity.setChunked(original.isChunked());
+            this.response.setEntity(entity);
+        }
         return this.response;
     }
 
@@ -0,0 +1,189 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * Repeatable entity whose content is held in a sequence of byte buffers.
+ * Content is never copied into a single contiguous array: it can be read
+ * as a stream or accessed directly through read-only
+ * {@link #getBuffers() buffer views}.
+ */
+public class CompositeByteBufferEntity extends AbstractHttpEntity {
+
+    private final ByteBuffer[] buffers;
+    private final long length;
+
+    /**
+     * Creates an entity from buffers ready to be read, that is, with their
+     * content between position and limit. The buffers must not be modified
+     * afterwards.
+     */
+    public CompositeByteBufferEntity(final ByteBuffer[] buffers) {
+        super();
+        if (buffers == null) {
+            throw new IllegalArgumentException("Buffers may not be null");
+        }
+        this.buffers = buffers;
+        long total = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            total += buffers[i].remaining();
+        }
+        this.length = total;
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    public long getContentLength() {
+        return this.length;
+    }
+
+    /**
+     * Returns read-only views of the content buffers. The views share
+     * content with the entity but have independent positions.
+     */
+    public ByteBuffer[] getBuffers() {
+        ByteBuffer[] views = new ByteBuffer[this.buffers.length];
+        for (int i = 0; i < this.buffers.length; i++) {
+            views[i] = this.buffers[i].asReadOnlyBuffer();
+        }
+        return views;
+    }
+
+    public InputStream getContent() {
+        return new ByteBuffersInputStream(this.buffers);
+    }
+
+    public void writeTo(final OutputStream outstream) throws IOException {
+        if (outstream == null) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+        byte[] tmp = null;
+        for (int i = 0; i < this.buffers.length; i++) {
+            ByteBuffer buffer = this.buffers[i];
+            if (buffer.hasArray()) {
+                outstream.write(buffer.array(),
+                        buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                if (tmp == null) {
+                    tmp = new byte[4096];
+                }
+                ByteBuffer view = buffer.duplicate();
+                while (view.hasRemaining()) {
+                    int n = Math.min(tmp.length, view.remaining());
+                    view.get(tmp, 0, n);
+                    outstream.write(tmp, 0, n);
+                }
+            }
+        }
+        outstream.flush();
+    }
+
+    static class ByteBuffersInputStream extends InputStream {
+
+        private final ByteBuffer[] buffers;
+        private int index;
+
+        ByteBuffersInputStream(final ByteBuffer[] buffers) {
+            super();
+            this.buffers = new ByteBuffer[buffers.length];
+            for (int i = 0; i < buffers.length; i++) {
+                this.buffers[i] = buffers[i].duplicate();
+            }
+            this.index = 0;
+        }
+
+        private ByteBuffer current() {
+            while (this.index < this.buffers.length) {
+                ByteBuffer buffer = this.buffers[this.index];
+                if (buffer.hasRemaining()) {
+                    return buffer;
+                }
+                this.index++;
+            }
+            return null;
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = 0;
+            while (skipped < n) {
+                ByteBuffer buffer = current();
+                if (buffer == null) {
+                    break;
+                }
+                int chunk = (int) Math.min(n - skipped, buffer.remaining());
+                buffer.position(buffer.position() + chunk);
+                skipped += chunk;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            ByteBuffer buffer = current();
+            return buffer != null ? buffer.remaining() : 0;
+        }
+
+    }
+
+}
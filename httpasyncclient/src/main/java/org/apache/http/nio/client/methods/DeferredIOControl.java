@@ -0,0 +1,89 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+
+import org.apache.http.nio.IOControl;
+
+/**
+ * {@link IOControl} that forwards to the connection once it is known.
+ * Calls made before then are ignored; they can only come from a worker
+ * thread racing the first I/O event, which does the work anyway.
+ */
+class DeferredIOControl implements IOControl {
+
+    private volatile IOControl ioctrl;
+
+    DeferredIOControl() {
+        super();
+    }
+
+    void bind(final IOControl ioctrl) {
+        this.ioctrl = ioctrl;
+    }
+
+    boolean isBound() {
+        return this.ioctrl != null;
+    }
+
+    public void requestInput() {
+        IOControl local = this.ioctrl;
+        if (local != null) {
+            local.requestInput();
+        }
+    }
+
+    public void suspendInput() {
+        IOControl local = this.ioctrl;
+        if (local != null) {
+            local.suspendInput();
+        }
+    }
+
+    public void requestOutput() {
+        IOControl local = this.ioctrl;
+        if (local != null) {
+            local.requestOutput();
+        }
+    }
+
+    public void suspendOutput() {
+        IOControl local = this.ioctrl;
+        if (local != null) {
+            local.suspendOutput();
+        }
+    }
+
+    public void shutdown() throws IOException {
+        IOControl local = this.ioctrl;
+        if (local != null) {
+            local.shutdown();
+        }
+    }
+
+}
@@ -75,6 +75,28 @@ public final class HttpAsyncMethods {
         return create(new HttpGet(URI.create(requestURI)));
     }
 
+    /**
+     * Creates a GET request for a <code>text/event-stream</code>. If
+     * <code>lastEventId</code> is not <code>null</code> it is sent in the
+     * <code>Last-Event-ID</code> header so that the server can resume the
+     * stream where it left off.
+     */
+    public static HttpAsyncRequestProducer createEventStreamGet(
+            final URI requestURI, final String lastEventId) {
+        HttpGet httpget = new HttpGet(requestURI);
+        httpget.setHeader("Accept", "text/event-stream");
+        httpget.setHeader("Cache-Control", "no-cache");
+        if (lastEventId != null) {
+            httpget.setHeader("Last-Event-ID", lastEventId);
+        }
+        return create(httpget);
+    }
+
+    public static HttpAsyncRequestProducer createEventStreamGet(
+            final String requestURI, final String lastEventId) {
+        return createEventStreamGet(URI.create(requestURI), lastEventId);
+    }
+
     public static HttpAsyncRequestProducer createHead(final URI requestURI) {
         return create(new HttpGet(requestURI));
     }
@@ -209,6 +231,10 @@ public final class HttpAsyncMethods {
         return new BasicHttpAsyncResponseConsumer();
     }
 
+    public static HttpAsyncResponseConsumer<HttpResponse> createSpillingConsumer(int threshold) {
+        return new SpillingHttpAsyncResponseConsumer(threshold);
+    }
+
     public static HttpAsyncResponseConsumer<HttpResponse> createZeroCopyConsumer(final File file) {
         return new ZeroCopyConsumer<HttpResponse>(file) {
 
@@ -0,0 +1,211 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SharedInputBuffer;
+
+/**
+ * Response consumer that makes the response content available as a
+ * blocking {@link InputStream} to be read by a worker thread. Content is
+ * passed through a buffer of fixed capacity: input from the connection is
+ * suspended while the buffer is full and resumed as the worker drains it,
+ * so the I/O dispatch thread never blocks.
+ * <p>
+ * The response is available from {@link #getResponseFuture()} as soon as
+ * its head has been received; its entity then streams the content. The
+ * future returned by the client completes once all content has been read
+ * from the connection, which takes the worker reading all but the last
+ * buffer of it. If the exchange fails, reading the content throws an
+ * {@link IOException}. Closing the stream before the end of content shuts
+ * down the connection.
+ */
+public class InputStreamResponseConsumer extends AbstractHttpAsyncResponseConsumer<HttpResponse> {
+
+    private final DeferredIOControl ioctrl;
+    private final SharedInputBuffer buffer;
+    private final BasicFuture<HttpResponse> responseFuture;
+
+    private volatile HttpResponse response;
+    private volatile boolean completed;
+    private volatile boolean endOfStream;
+    private volatile boolean aborted;
+    private volatile IOException failure;
+
+    public InputStreamResponseConsumer(int capacity, final FutureCallback<HttpResponse> callback) {
+        super();
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Buffer capacity may not be negative or zero");
+        }
+        this.ioctrl = new DeferredIOControl();
+        this.buffer = new SharedInputBuffer(capacity, this.ioctrl, new HeapByteBufferAllocator());
+        this.responseFuture = new BasicFuture<HttpResponse>(callback);
+    }
+
+    public InputStreamResponseConsumer(int capacity) {
+        this(capacity, null);
+    }
+
+    public InputStreamResponseConsumer() {
+        this(32 * 1024);
+    }
+
+    /**
+     * Returns a future that completes with the response as soon as its head
+     * has been received.
+     */
+    public Future<HttpResponse> getResponseFuture() {
+        return this.responseFuture;
+    }
+
+    @Override
+    protected void onResponseReceived(final HttpResponse response) {
+        HttpEntity original = response.getEntity();
+        if (original != null) {
+            BasicHttpEntity entity = new BasicHttpEntity();
+            entity.setContent(new ContentStream());
+            entity.setContentLength(original.getContentLength());
+            entity.setChunked(original.isChunked());
+            entity.setContentType(original.getContentType());
+            entity.setContentEncoding(original.getContentEncoding());
+            response.setEntity(entity);
+        }
+        this.response = response;
+        this.responseFuture.completed(response);
+    }
+
+    @Override
+    protected void onContentReceived(
+            final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+        if (!this.ioctrl.isBound()) {
+            this.ioctrl.bind(ioctrl);
+        }
+        if (this.aborted) {
+            ioctrl.shutdown();
+            return;
+        }
+        this.buffer.consumeContent(decoder);
+        if (decoder.isCompleted()) {
+            this.endOfStream = true;
+        }
+    }
+
+    @Override
+    protected HttpResponse buildResult() throws Exception {
+        this.completed = true;
+        return this.response;
+    }
+
+    @Override
+    protected void onCleanup() {
+        if (this.completed) {
+            // The worker may still be reading the content buffered last
+            return;
+        }
+        Exception ex = getException();
+        IOException failure;
+        if (ex instanceof IOException) {
+            failure = (IOException) ex;
+        } else {
+            failure = new IOException("Response content incomplete");
+            if (ex != null) {
+                failure.initCause(ex);
+            }
+        }
+        this.failure = failure;
+        this.buffer.shutdown();
+        if (ex != null) {
+            this.responseFuture.failed(ex);
+        } else {
+            this.responseFuture.cancel(true);
+        }
+    }
+
+    class ContentStream extends InputStream {
+
+        private boolean closed;
+
+        private int checkResult(int n) throws IOException {
+            IOException ex = failure;
+            if (n == -1 && ex != null) {
+                throw ex;
+            }
+            return n;
+        }
+
+        private IOException checkFailure(final IOException original) {
+            IOException ex = failure;
+            return ex != null ? ex : original;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return checkResult(buffer.read());
+            } catch (IOException ex) {
+                throw checkFailure(ex);
+            }
+        }
+
+        @Override
+        public int read(final byte[] b, int off, int len) throws IOException {
+            try {
+                return checkResult(buffer.read(b, off, len));
+            } catch (IOException ex) {
+                throw checkFailure(ex);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            boolean partial = !completed && !endOfStream;
+            buffer.shutdown();
+            if (partial) {
+                // Remaining content cannot be skipped without reading it
+                aborted = true;
+                ioctrl.shutdown();
+            }
+        }
+
+    }
+
+}
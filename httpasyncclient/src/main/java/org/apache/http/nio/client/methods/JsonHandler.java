@@ -0,0 +1,56 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+
+/**
+ * Receives the structural events reported by a {@link JsonTokenizer}.
+ * String values and field names are passed unescaped; numbers are passed
+ * in their original textual form.
+ */
+public interface JsonHandler {
+
+    void startObject() throws IOException;
+
+    void endObject() throws IOException;
+
+    void startArray() throws IOException;
+
+    void endArray() throws IOException;
+
+    void fieldName(String name) throws IOException;
+
+    void stringValue(String value) throws IOException;
+
+    void numberValue(String value) throws IOException;
+
+    void booleanValue(boolean value) throws IOException;
+
+    void nullValue() throws IOException;
+
+}
@@ -0,0 +1,453 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * Push-style JSON tokenizer. Content may be fed in chunks of any size;
+ * tokens split across chunks are carried over, so only the token in
+ * progress is ever held in memory. Each token is reported to a
+ * {@link JsonHandler} as soon as it is complete.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class JsonTokenizer {
+
+    private static final byte IN_ARRAY = 0;
+    private static final byte IN_OBJECT = 1;
+
+    private static final int VALUE = 0;
+    private static final int VALUE_OR_END = 1;
+    private static final int KEY = 2;
+    private static final int KEY_OR_END = 3;
+    private static final int COLON = 4;
+    private static final int AFTER_VALUE = 5;
+    private static final int STRING = 6;
+    private static final int ESCAPE = 7;
+    private static final int UNICODE = 8;
+    private static final int NUMBER = 9;
+    private static final int LITERAL = 10;
+    private static final int DONE = 11;
+
+    private final JsonHandler handler;
+    private final StringBuilder token;
+    private byte[] stack;
+    private int depth;
+    private int state;
+    private boolean key;
+    private String literal;
+    private int literalIndex;
+    private int unicode;
+    private int unicodeDigits;
+    private long offset;
+
+    public JsonTokenizer(final JsonHandler handler) {
+        super();
+        if (handler == null) {
+            throw new IllegalArgumentException("JSON handler may not be null");
+        }
+        this.handler = handler;
+        this.token = new StringBuilder();
+        this.stack = new byte[16];
+        this.state = VALUE;
+    }
+
+    /**
+     * Returns the current nesting depth: <code>0</code> at the top level,
+     * <code>1</code> inside the outermost array or object and so on.
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Returns <code>true</code> once a complete top-level value has been
+     * tokenized.
+     */
+    public boolean isDone() {
+        return this.state == DONE;
+    }
+
+    /**
+     * Tokenizes all remaining characters of the buffer.
+     *
+     * @throws IOException if the content is not well-formed JSON or the
+     *   handler fails.
+     */
+    public void feed(final CharBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (this.state == STRING && buf.hasArray()) {
+                copyStringRun(buf);
+                if (!buf.hasRemaining()) {
+                    break;
+                }
+            }
+            process(buf.get());
+        }
+    }
+
+    /**
+     * Signals the end of content.
+     *
+     * @throws IOException if the content ended before a complete top-level
+     *   value was seen.
+     */
+    public void end() throws IOException {
+        if (this.state == NUMBER && this.depth == 0) {
+            emitNumber();
+        }
+        if (this.state != DONE) {
+            throw new IOException("Malformed JSON: unexpected end of content");
+        }
+    }
+
+    /**
+     * Appends characters up to the next quote, backslash or control
+     * character in one go.
+     */
+    private void copyStringRun(final CharBuffer buf) {
+        char[] b = buf.array();
+        int off = buf.arrayOffset();
+        int start = off + buf.position();
+        int end = off + buf.limit();
+        int i = start;
+        while (i < end) {
+            char ch = b[i];
+            if (ch == '"' || ch == '\\' || ch < 0x20) {
+                break;
+            }
+            i++;
+        }
+        this.token.append(b, start, i - start);
+        this.offset += i - start;
+        buf.position(i - off);
+    }
+
+    private void process(char ch) throws IOException {
+        this.offset++;
+        for (;;) {
+            switch (this.state) {
+            case STRING:
+                if (ch == '"') {
+                    endString();
+                } else if (ch == '\\') {
+                    this.state = ESCAPE;
+                } else if (ch < 0x20) {
+                    throw unexpected(ch);
+                } else {
+                    this.token.append(ch);
+                }
+                return;
+            case ESCAPE:
+                escape(ch);
+                return;
+            case UNICODE:
+                int digit = Character.digit(ch, 16);
+                if (digit < 0) {
+                    throw unexpected(ch);
+                }
+                this.unicode = (this.unicode << 4) | digit;
+                this.unicodeDigits++;
+                if (this.unicodeDigits == 4) {
+                    this.token.append((char) this.unicode);
+                    this.state = STRING;
+                }
+                return;
+            case NUMBER:
+                if (isNumberChar(ch)) {
+                    this.token.append(ch);
+                    return;
+                }
+                emitNumber();
+                // The terminating character belongs to the next token
+                continue;
+            case LITERAL:
+                if (ch != this.literal.charAt(this.literalIndex)) {
+                    throw unexpected(ch);
+                }
+                this.literalIndex++;
+                if (this.literalIndex == this.literal.length()) {
+                    emitLiteral();
+                }
+                return;
+            default:
+                if (ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r') {
+                    return;
+                }
+                structural(ch);
+                return;
+            }
+        }
+    }
+
+    private void structural(char ch) throws IOException {
+        switch (this.state) {
+        case VALUE_OR_END:
+            if (ch == ']') {
+                endContainer(IN_ARRAY);
+                this.handler.endArray();
+                return;
+            }
+            value(ch);
+            return;
+        case VALUE:
+            value(ch);
+            return;
+        case KEY_OR_END:
+            if (ch == '}') {
+                endContainer(IN_OBJECT);
+                this.handler.endObject();
+                return;
+            }
+            key(ch);
+            return;
+        case KEY:
+            key(ch);
+            return;
+        case COLON:
+            if (ch != ':') {
+                throw unexpected(ch);
+            }
+            this.state = VALUE;
+            return;
+        case AFTER_VALUE:
+            if (ch == ',') {
+                this.state = this.stack[this.depth - 1] == IN_ARRAY ? VALUE : KEY;
+            } else if (ch == ']') {
+                endContainer(IN_ARRAY);
+                this.handler.endArray();
+            } else if (ch == '}') {
+                endContainer(IN_OBJECT);
+                this.handler.endObject();
+            } else {
+                throw unexpected(ch);
+            }
+            return;
+        default:
+            throw unexpected(ch);
+        }
+    }
+
+    private void value(char ch) throws IOException {
+        switch (ch) {
+        case '{':
+            push(IN_OBJECT);
+            this.state = KEY_OR_END;
+            this.handler.startObject();
+            break;
+        case '[':
+            push(IN_ARRAY);
+            this.state = VALUE_OR_END;
+            this.handler.startArray();
+            break;
+        case '"':
+            this.key = false;
+            this.state = STRING;
+            break;
+        case 't':
+            startLiteral("true");
+            break;
+        case 'f':
+            startLiteral("false");
+            break;
+        case 'n':
+            startLiteral("null");
+            break;
+        default:
+            if (ch == '-' || (ch >= '0' && ch <= '9')) {
+                this.token.append(ch);
+                this.state = NUMBER;
+            } else {
+                throw unexpected(ch);
+            }
+        }
+    }
+
+    private void key(char ch) throws IOException {
+        if (ch != '"') {
+            throw unexpected(ch);
+        }
+        this.key = true;
+        this.state = STRING;
+    }
+
+    private void escape(char ch) throws IOException {
+        switch (ch) {
+        case '"':
+        case '\\':
+        case '/':
+            this.token.append(ch);
+            break;
+        case 'b':
+            this.token.append('\b');
+            break;
+        case 'f':
+            this.token.append('\f');
+            break;
+        case 'n':
+            this.token.append('\n');
+            break;
+        case 'r':
+            this.token.append('\r');
+            break;
+        case 't':
+            this.token.append('\t');
+            break;
+        case 'u':
+            this.unicode = 0;
+            this.unicodeDigits = 0;
+            this.state = UNICODE;
+            return;
+        default:
+            throw unexpected(ch);
+        }
+        this.state = STRING;
+    }
+
+    private void endString() throws IOException {
+        String s = this.token.toString();
+        this.token.setLength(0);
+        if (this.key) {
+            this.state = COLON;
+            this.handler.fieldName(s);
+        } else {
+            afterValue();
+            this.handler.stringValue(s);
+        }
+    }
+
+    private void startLiteral(final String s) {
+        this.literal = s;
+        this.literalIndex = 1;
+        this.state = LITERAL;
+    }
+
+    private void emitLiteral() throws IOException {
+        String s = this.literal;
+        this.literal = null;
+        afterValue();
+        if (s.equals("null")) {
+            this.handler.nullValue();
+        } else {
+            this.handler.booleanValue(s.equals("true"));
+        }
+    }
+
+    private static boolean isNumberChar(char ch) {
+        return (ch >= '0' && ch <= '9') || ch == '.' || ch == 'e' || ch == 'E'
+            || ch == '+' || ch == '-';
+    }
+
+    private void emitNumber() throws IOException {
+        String s = this.token.toString();
+        this.token.setLength(0);
+        if (!isValidNumber(s)) {
+            throw new IOException("Malformed JSON: invalid number '" + s
+                    + "' at offset " + this.offset);
+        }
+        afterValue();
+        this.handler.numberValue(s);
+    }
+
+    /**
+     * Checks <code>-?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?</code>.
+     */
+    static boolean isValidNumber(final String s) {
+        int len = s.length();
+        int i = 0;
+        if (i < len && s.charAt(i) == '-') {
+            i++;
+        }
+        if (i == len) {
+            return false;
+        }
+        if (s.charAt(i) == '0') {
+            i++;
+        } else {
+            int start = i;
+            i = skipDigits(s, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < len && s.charAt(i) == '.') {
+            int start = ++i;
+            i = skipDigits(s, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < len && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < len && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                i++;
+            }
+            int start = i;
+            i = skipDigits(s, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        return i == len;
+    }
+
+    private static int skipDigits(final String s, int i) {
+        while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private void push(byte type) {
+        if (this.depth == this.stack.length) {
+            byte[] tmp = new byte[this.stack.length * 2];
+            System.arraycopy(this.stack, 0, tmp, 0, this.depth);
+            this.stack = tmp;
+        }
+        this.stack[this.depth++] = type;
+    }
+
+    private void endContainer(byte type) throws IOException {
+        if (this.depth == 0 || this.stack[this.depth - 1] != type) {
+            throw unexpected(type == IN_ARRAY ? ']' : '}');
+        }
+        this.depth--;
+        afterValue();
+    }
+
+    private void afterValue() {
+        this.state = this.depth == 0 ? DONE : AFTER_VALUE;
+    }
+
+    private IOException unexpected(char ch) {
+        return new IOException("Malformed JSON: unexpected character '" + ch
+                + "' at offset " + (this.offset - 1));
+    }
+
+}
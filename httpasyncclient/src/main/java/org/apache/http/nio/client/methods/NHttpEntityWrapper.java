@@ -36,18 +36,18 @@ import java.nio.channels.ReadableByteChannel;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.nio.util.PooledByteBufferAllocator;
 import org.apache.http.nio.ContentEncoder;
 import org.apache.http.nio.IOControl;
 import org.apache.http.nio.entity.ProducingNHttpEntity;
 
 class NHttpEntityWrapper extends HttpEntityWrapper implements ProducingNHttpEntity {
 
-    private final ByteBuffer buffer;
+    private ByteBuffer buffer;
     private ReadableByteChannel channel;
 
     public NHttpEntityWrapper(final HttpEntity httpEntity) {
         super(httpEntity);
-        this.buffer = ByteBuffer.allocate(4096);
     }
 
     @Override
@@ -77,6 +77,9 @@ class NHttpEntityWrapper extends HttpEntityWrapper implements ProducingNHttpEnti
         if (this.channel == null) {
             this.channel = Channels.newChannel(this.wrappedEntity.getContent());
         }
+        if (this.buffer == null) {
+            this.buffer = PooledByteBufferAllocator.HEAP.allocate(4096);
+        }
         int i = this.channel.read(this.buffer);
         this.buffer.flip();
         encoder.write(this.buffer);
@@ -85,10 +88,17 @@ class NHttpEntityWrapper extends HttpEntityWrapper implements ProducingNHttpEnti
         if (i == -1 && !buffering) {
             encoder.complete();
             this.channel.close();
+            releaseBuffer();
         }
     }
 
+    private void releaseBuffer() {
+        PooledByteBufferAllocator.HEAP.release(this.buffer);
+        this.buffer = null;
+    }
+
     public void finish() throws IOException {
+        releaseBuffer();
         if (this.channel != null) {
             this.channel.close();
             this.channel = null;
@@ -0,0 +1,194 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.HttpAsyncRequestProducer;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SharedOutputBuffer;
+
+/**
+ * Request producer whose content is written by a worker thread to a
+ * blocking {@link OutputStream}. Content is passed through a buffer of
+ * fixed capacity: the worker blocks while the buffer is full, and output
+ * to the connection is suspended while it is empty, so the I/O dispatch
+ * thread never blocks.
+ * <p>
+ * Content is handed over to the connection whenever the buffer fills up,
+ * on {@link OutputStream#flush()} and on {@link OutputStream#close()},
+ * which ends the content. It is sent chunk coded unless its length is
+ * given up front, in which case closing the stream short of it fails
+ * the exchange. If the exchange fails, writing throws an
+ * {@link IOException}. The request cannot be repeated.
+ */
+public class OutputStreamRequestProducer implements HttpAsyncRequestProducer {
+
+    private final HttpHost target;
+    private final HttpEntityEnclosingRequest request;
+    private final ContentType contentType;
+    private final long contentLength;
+    private final DeferredIOControl ioctrl;
+    private final SharedOutputBuffer buffer;
+    private final OutputStream outstream;
+
+    private volatile long written;
+    private volatile boolean truncated;
+
+    public OutputStreamRequestProducer(
+            final HttpHost target,
+            final HttpEntityEnclosingRequest request,
+            final ContentType contentType,
+            long contentLength,
+            int capacity) {
+        super();
+        if (target == null) {
+            throw new IllegalArgumentException("HTTP host may not be null");
+        }
+        if (request == null) {
+            throw new IllegalArgumentException("HTTP request may not be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Buffer capacity may not be negative or zero");
+        }
+        this.target = target;
+        this.request = request;
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+        this.ioctrl = new DeferredIOControl();
+        this.buffer = new SharedOutputBuffer(capacity, this.ioctrl, new HeapByteBufferAllocator());
+        this.outstream = new ContentStream();
+    }
+
+    public OutputStreamRequestProducer(
+            final HttpHost target,
+            final HttpEntityEnclosingRequest request,
+            final ContentType contentType) {
+        this(target, request, contentType, -1, 32 * 1024);
+    }
+
+    /**
+     * Returns the stream the request content is to be written to. It must
+     * be closed to complete the request.
+     */
+    public OutputStream getOutputStream() {
+        return this.outstream;
+    }
+
+    public HttpHost getTarget() {
+        return this.target;
+    }
+
+    public HttpRequest generateRequest() throws IOException, HttpException {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        if (this.contentLength >= 0) {
+            entity.setChunked(false);
+            entity.setContentLength(this.contentLength);
+        } else {
+            entity.setChunked(true);
+            entity.setContentLength(-1);
+        }
+        if (this.contentType != null) {
+            entity.setContentType(this.contentType.toString());
+        }
+        this.request.setEntity(entity);
+        return this.request;
+    }
+
+    public void produceContent(
+            final ContentEncoder encoder, final IOControl ioctrl) throws IOException {
+        if (!this.ioctrl.isBound()) {
+            this.ioctrl.bind(ioctrl);
+        }
+        if (this.truncated) {
+            throw new IOException("Content is shorter than the declared content length");
+        }
+        this.buffer.produceContent(encoder);
+    }
+
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    /**
+     * Releases a worker blocked on the stream. Further writes fail.
+     */
+    public void resetRequest() {
+        this.buffer.shutdown();
+    }
+
+    class ContentStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            try {
+                buffer.write(b);
+                written++;
+            } catch (IllegalStateException ex) {
+                throw new IOException("Request content stream closed");
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            try {
+                buffer.write(b, off, len);
+                written += len;
+            } catch (IllegalStateException ex) {
+                throw new IOException("Request content stream closed");
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            buffer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (contentLength >= 0 && written < contentLength) {
+                // Completing the encoder would leave the server waiting
+                // for the rest of the content
+                truncated = true;
+                ioctrl.requestOutput();
+                throw new IOException("Content is shorter than the declared content length");
+            }
+            buffer.writeCompleted();
+        }
+
+    }
+
+}
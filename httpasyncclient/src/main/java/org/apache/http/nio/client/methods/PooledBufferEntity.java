@@ -0,0 +1,157 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.nio.util.PooledByteBufferAllocator;
+
+/**
+ * Reference-counted entity whose content is held in buffers borrowed from
+ * a {@link PooledByteBufferAllocator}. The entity starts with a reference
+ * count of one. Each {@link #retain()} must be matched by a
+ * {@link #release()}; the buffers go back to the pool when the count drops
+ * to zero, after which the content can no longer be accessed.
+ * <p>
+ * Content is best passed on through {@link #getBuffers()}, for instance
+ * with a gathering write to another channel, which does not copy it onto
+ * the heap. Views and streams obtained from the entity must not be used
+ * after its final release. Entities that are never released are reported
+ * by the allocator's leak detection.
+ */
+public class PooledBufferEntity extends AbstractHttpEntity {
+
+    private final PooledByteBufferAllocator allocator;
+    private final ByteBuffer[] buffers;
+    private final long length;
+    private final AtomicInteger refCount;
+
+    PooledBufferEntity(final PooledByteBufferAllocator allocator, final ByteBuffer[] buffers) {
+        super();
+        this.allocator = allocator;
+        this.buffers = buffers;
+        long total = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            total += buffers[i].remaining();
+        }
+        this.length = total;
+        this.refCount = new AtomicInteger(1);
+    }
+
+    public int getRefCount() {
+        return this.refCount.get();
+    }
+
+    /**
+     * Increments the reference count.
+     *
+     * @throws IllegalStateException if the entity has already been released
+     */
+    public PooledBufferEntity retain() {
+        for (;;) {
+            int n = this.refCount.get();
+            if (n <= 0) {
+                throw new IllegalStateException("Entity already released");
+            }
+            if (this.refCount.compareAndSet(n, n + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Decrements the reference count and returns the buffers to their pool
+     * once it drops to zero.
+     *
+     * @return <code>true</code> if the buffers have been returned
+     * @throws IllegalStateException if the entity has already been released
+     */
+    public boolean release() {
+        for (;;) {
+            int n = this.refCount.get();
+            if (n <= 0) {
+                throw new IllegalStateException("Entity already released");
+            }
+            if (this.refCount.compareAndSet(n, n - 1)) {
+                if (n > 1) {
+                    return false;
+                }
+                for (int i = 0; i < this.buffers.length; i++) {
+                    this.allocator.release(this.buffers[i]);
+                }
+                return true;
+            }
+        }
+    }
+
+    private void ensureAccessible() {
+        if (this.refCount.get() <= 0) {
+            throw new IllegalStateException("Entity already released");
+        }
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    public long getContentLength() {
+        return this.length;
+    }
+
+    /**
+     * Returns read-only views of the content buffers. The views share
+     * content with the entity but have independent positions.
+     */
+    public ByteBuffer[] getBuffers() {
+        ensureAccessible();
+        ByteBuffer[] views = new ByteBuffer[this.buffers.length];
+        for (int i = 0; i < this.buffers.length; i++) {
+            views[i] = this.buffers[i].asReadOnlyBuffer();
+        }
+        return views;
+    }
+
+    public InputStream getContent() {
+        ensureAccessible();
+        return new CompositeByteBufferEntity.ByteBuffersInputStream(this.buffers);
+    }
+
+    public void writeTo(final OutputStream outstream) throws IOException {
+        ensureAccessible();
+        new CompositeByteBufferEntity(this.buffers).writeTo(outstream);
+    }
+
+}
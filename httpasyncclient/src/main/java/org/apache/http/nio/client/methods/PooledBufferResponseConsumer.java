@@ -0,0 +1,106 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.nio.util.PooledByteBufferAllocator;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+
+/**
+ * Reads the response content into buffers borrowed from a pool, direct
+ * buffers by default, without going through a heap array. The response
+ * returned carries a {@link PooledBufferEntity} that the caller must
+ * {@link PooledBufferEntity#release() release} to give the buffers back.
+ * The buffers are given back automatically if the exchange fails or is
+ * cancelled.
+ */
+public class PooledBufferResponseConsumer extends AbstractHttpAsyncResponseConsumer<HttpResponse> {
+
+    public static final int SLAB_SIZE = 16 * 1024;
+
+    private final PooledByteBufferAllocator allocator;
+
+    private volatile HttpResponse response;
+    private SlabBuffer buffer;
+
+    public PooledBufferResponseConsumer(final PooledByteBufferAllocator allocator) {
+        super();
+        if (allocator == null) {
+            throw new IllegalArgumentException("Buffer allocator may not be null");
+        }
+        this.allocator = allocator;
+    }
+
+    public PooledBufferResponseConsumer() {
+        this(PooledByteBufferAllocator.DIRECT);
+    }
+
+    @Override
+    protected void onResponseReceived(final HttpResponse response) {
+        this.response = response;
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            this.buffer = new SlabBuffer(this.allocator, SLAB_SIZE,
+                    entity.getContentLength(), PooledByteBufferAllocator.MAX_SIZE);
+        }
+    }
+
+    @Override
+    protected void onContentReceived(
+            final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+        this.buffer.readAll(decoder);
+    }
+
+    @Override
+    protected void onCleanup() {
+        if (this.buffer != null) {
+            this.buffer.clear();
+            this.buffer = null;
+        }
+    }
+
+    @Override
+    protected HttpResponse buildResult() {
+        if (this.buffer == null) {
+            return this.response;
+        }
+        // The entity owns the buffers from now on
+        PooledBufferEntity entity = new PooledBufferEntity(this.allocator, this.buffer.flip());
+        this.buffer = null;
+        HttpEntity original = this.response.getEntity();
+        entity.setContentType(original.getContentType());
+        entity.setContentEncoding(original.getContentEncoding());
+        entity.setChunked(original.isChunked());
+        this.response.setEntity(entity);
+        return this.response;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+/**
+ * An event received from a <code>text/event-stream</code> response.
+ */
+public final class ServerSentEvent {
+
+    private final String id;
+    private final String type;
+    private final String data;
+
+    public ServerSentEvent(final String id, final String type, final String data) {
+        super();
+        if (type == null) {
+            throw new IllegalArgumentException("Event type may not be null");
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("Event data may not be null");
+        }
+        this.id = id;
+        this.type = type;
+        this.data = data;
+    }
+
+    /**
+     * Returns the last event ID in effect when this event was dispatched,
+     * or <code>null</code> if the stream has not set one.
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    public String getType() {
+        return this.type;
+    }
+
+    public String getData() {
+        return this.data;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("[id=");
+        buffer.append(this.id);
+        buffer.append("][type=");
+        buffer.append(this.type);
+        buffer.append("][data=");
+        buffer.append(this.data);
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
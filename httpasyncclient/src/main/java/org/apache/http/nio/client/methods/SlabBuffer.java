@@ -0,0 +1,140 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.impl.nio.util.PooledByteBufferAllocator;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.util.ByteBufferAllocator;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+
+/**
+ * Accumulates content in a list of fixed-size slabs obtained from a
+ * {@link ByteBufferAllocator}, so that buffered content never has to be
+ * reallocated and copied as it grows. Content of a known length that does
+ * not exceed a given limit goes into a single buffer of exactly that size.
+ * Slabs discarded by the buffer are given back to the allocator if it is
+ * a {@link PooledByteBufferAllocator}.
+ */
+class SlabBuffer {
+
+    static final ByteBufferAllocator HEAP_ALLOCATOR = new HeapByteBufferAllocator();
+
+    private final ByteBufferAllocator allocator;
+    private final int slabSize;
+    private final List<ByteBuffer> slabs;
+    private ByteBuffer current;
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param allocator allocator of the slabs
+     * @param slabSize size of the slabs
+     * @param len expected content length, or a negative value if unknown
+     * @param maxPresize maximum content length buffered in a single buffer
+     *   of exactly that length
+     */
+    SlabBuffer(
+            final ByteBufferAllocator allocator, int slabSize, long len, int maxPresize) {
+        super();
+        this.allocator = allocator;
+        this.slabSize = slabSize;
+        if (len > 0 && len <= maxPresize) {
+            this.slabs = new ArrayList<ByteBuffer>(1);
+            this.current = allocator.allocate((int) len);
+            this.slabs.add(this.current);
+        } else {
+            this.slabs = new ArrayList<ByteBuffer>();
+        }
+    }
+
+    /**
+     * Reads content once, into a new slab if the current one is full.
+     *
+     * @return the number of bytes read, or <code>-1</code> if the end of
+     *   content has been reached
+     */
+    int read(final ContentDecoder decoder) throws IOException {
+        if (this.current == null || !this.current.hasRemaining()) {
+            this.current = this.allocator.allocate(this.slabSize);
+            this.slabs.add(this.current);
+        }
+        return decoder.read(this.current);
+    }
+
+    /**
+     * Reads all content available from the decoder.
+     */
+    void readAll(final ContentDecoder decoder) throws IOException {
+        while (!decoder.isCompleted()) {
+            if (read(decoder) <= 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Hands out the slabs holding content, flipped for reading, and
+     * discards the others. The buffer is empty afterwards.
+     */
+    ByteBuffer[] flip() {
+        List<ByteBuffer> filled = new ArrayList<ByteBuffer>(this.slabs.size());
+        for (ByteBuffer slab: this.slabs) {
+            if (slab.position() > 0) {
+                slab.flip();
+                filled.add(slab);
+            } else {
+                discard(slab);
+            }
+        }
+        this.slabs.clear();
+        this.current = null;
+        return filled.toArray(new ByteBuffer[filled.size()]);
+    }
+
+    /**
+     * Discards all slabs.
+     */
+    void clear() {
+        for (ByteBuffer slab: this.slabs) {
+            discard(slab);
+        }
+        this.slabs.clear();
+        this.current = null;
+    }
+
+    private void discard(final ByteBuffer slab) {
+        if (this.allocator instanceof PooledByteBufferAllocator) {
+            ((PooledByteBufferAllocator) this.allocator).release(slab);
+        }
+    }
+
+}
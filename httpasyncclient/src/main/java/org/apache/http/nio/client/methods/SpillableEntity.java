@@ -0,0 +1,130 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * Repeatable entity whose content is held either in memory or in a
+ * temporary file, as decided by {@link SpillingHttpAsyncResponseConsumer}.
+ * Both cases are read through the same API. Call {@link #dispose()} once
+ * the content is no longer needed to delete the temporary file.
+ */
+public class SpillableEntity extends AbstractHttpEntity {
+
+    private final CompositeByteBufferEntity buffered;
+    private final File file;
+    private final long length;
+
+    SpillableEntity(final ByteBuffer[] buffers) {
+        super();
+        this.buffered = new CompositeByteBufferEntity(buffers);
+        this.file = null;
+        this.length = this.buffered.getContentLength();
+    }
+
+    SpillableEntity(final File file) {
+        super();
+        this.buffered = null;
+        this.file = file;
+        this.length = file.length();
+    }
+
+    /**
+     * Returns <code>true</code> if the content is held in memory.
+     */
+    public boolean isInMemory() {
+        return this.buffered != null;
+    }
+
+    /**
+     * Returns the temporary file holding the content, or <code>null</code>
+     * if the content is held in memory.
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    public long getContentLength() {
+        return this.length;
+    }
+
+    public InputStream getContent() throws IOException {
+        if (this.buffered != null) {
+            return this.buffered.getContent();
+        } else {
+            return new FileInputStream(this.file);
+        }
+    }
+
+    public void writeTo(final OutputStream outstream) throws IOException {
+        if (outstream == null) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+        if (this.buffered != null) {
+            this.buffered.writeTo(outstream);
+            return;
+        }
+        InputStream instream = new FileInputStream(this.file);
+        try {
+            byte[] tmp = new byte[4096];
+            int l;
+            while ((l = instream.read(tmp)) != -1) {
+                outstream.write(tmp, 0, l);
+            }
+            outstream.flush();
+        } finally {
+            instream.close();
+        }
+    }
+
+    /**
+     * Deletes the temporary file, if any. The content cannot be read
+     * afterwards.
+     */
+    public void dispose() {
+        if (this.file != null) {
+            this.file.delete();
+        }
+    }
+
+}
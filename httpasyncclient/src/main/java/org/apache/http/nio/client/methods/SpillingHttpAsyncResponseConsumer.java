@@ -0,0 +1,198 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.ContentDecoderChannel;
+import org.apache.http.nio.FileContentDecoder;
+import org.apache.http.nio.IOControl;
+
+/**
+ * Buffers the response content in memory up to a threshold and spills it
+ * to a temporary file beyond that. Content known from its Content-Length
+ * to exceed the threshold goes to the file straight away. Once spilled,
+ * content is transferred to the file with
+ * {@link FileContentDecoder#transfer} where the decoder supports it.
+ * <p>
+ * The response returned carries a {@link SpillableEntity}, which reads
+ * the same whether the content ended up in memory or in a file. The
+ * temporary file is deleted if the exchange fails or is cancelled;
+ * otherwise it is up to the caller to {@link SpillableEntity#dispose()
+ * dispose} of the entity.
+ */
+public class SpillingHttpAsyncResponseConsumer extends AbstractHttpAsyncResponseConsumer<HttpResponse> {
+
+    private final int threshold;
+    private final File directory;
+
+    private volatile HttpResponse response;
+    private SlabBuffer buffer;
+    private long buffered;
+    private File file;
+    private FileChannel fileChannel;
+    private long idx;
+    private boolean handedOver;
+
+    /**
+     * Creates a new consumer.
+     *
+     * @param threshold maximum number of bytes held in memory
+     * @param directory directory for temporary files, or <code>null</code>
+     *   for the default temporary file directory
+     */
+    public SpillingHttpAsyncResponseConsumer(int threshold, final File directory) {
+        super();
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold may not be negative");
+        }
+        this.threshold = threshold;
+        this.directory = directory;
+    }
+
+    public SpillingHttpAsyncResponseConsumer(int threshold) {
+        this(threshold, null);
+    }
+
+    public SpillingHttpAsyncResponseConsumer() {
+        this(BasicHttpAsyncResponseConsumer.MAX_PRESIZE, null);
+    }
+
+    @Override
+    protected void onResponseReceived(final HttpResponse response) {
+        this.response = response;
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            long len = entity.getContentLength();
+            this.buffer = new SlabBuffer(
+                    SlabBuffer.HEAP_ALLOCATOR,
+                    BasicHttpAsyncResponseConsumer.SLAB_SIZE, len, this.threshold);
+            if (len > this.threshold) {
+                // Goes to the file on the first content event
+                this.buffered = len;
+            }
+        }
+    }
+
+    @Override
+    protected void onContentReceived(
+            final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+        if (this.fileChannel == null && this.buffered <= this.threshold) {
+            for (;;) {
+                if (decoder.isCompleted()) {
+                    return;
+                }
+                int bytesRead = this.buffer.read(decoder);
+                if (bytesRead <= 0) {
+                    return;
+                }
+                this.buffered += bytesRead;
+                if (this.buffered > this.threshold) {
+                    break;
+                }
+            }
+        }
+        if (this.fileChannel == null) {
+            spill();
+        }
+        long transferred;
+        if (decoder instanceof FileContentDecoder) {
+            transferred = ((FileContentDecoder)decoder).transfer(
+                    this.fileChannel, this.idx, Integer.MAX_VALUE);
+        } else {
+            transferred = this.fileChannel.transferFrom(
+                    new ContentDecoderChannel(decoder), this.idx, Integer.MAX_VALUE);
+        }
+        if (transferred > 0) {
+            this.idx += transferred;
+        }
+        if (decoder.isCompleted()) {
+            this.fileChannel.close();
+            this.fileChannel = null;
+        }
+    }
+
+    private void spill() throws IOException {
+        this.file = File.createTempFile("httpasyncclient", ".tmp", this.directory);
+        FileOutputStream out = new FileOutputStream(this.file);
+        this.fileChannel = out.getChannel();
+        this.idx = 0;
+        for (ByteBuffer slab: this.buffer.flip()) {
+            while (slab.hasRemaining()) {
+                this.idx += this.fileChannel.write(slab, this.idx);
+            }
+        }
+    }
+
+    @Override
+    protected void onCleanup() {
+        if (this.fileChannel != null) {
+            try {
+                this.fileChannel.close();
+            } catch (IOException ignore) {
+            }
+            this.fileChannel = null;
+        }
+        if (this.file != null && !this.handedOver) {
+            this.file.delete();
+        }
+        this.file = null;
+        this.buffer = null;
+    }
+
+    @Override
+    protected HttpResponse buildResult() throws Exception {
+        if (this.buffer == null) {
+            return this.response;
+        }
+        SpillableEntity entity;
+        if (this.file != null) {
+            if (this.fileChannel != null) {
+                this.fileChannel.close();
+                this.fileChannel = null;
+            }
+            entity = new SpillableEntity(this.file);
+        } else {
+            entity = new SpillableEntity(this.buffer.flip());
+        }
+        HttpEntity original = this.response.getEntity();
+        entity.setContentType(original.getContentType());
+        entity.setContentEncoding(original.getContentEncoding());
+        entity.setChunked(original.isChunked());
+        this.response.setEntity(entity);
+        this.handedOver = true;
+        return this.response;
+    }
+
+}
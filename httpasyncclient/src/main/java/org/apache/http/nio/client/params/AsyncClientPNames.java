@@ -0,0 +1,86 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.params;
+
+/**
+ * Parameter names for HTTP async client.
+ */
+public interface AsyncClientPNames {
+
+    /**
+     * Defines the maximum period of time in milliseconds an HTTP exchange
+     * may take from the moment it is started till the response has been
+     * fully consumed. This covers waiting for a connection to be leased
+     * from the pool, connection establishment, TLS handshake, transmission
+     * of the request and reception of the response. A value of zero or
+     * less means no deadline.
+     * <p>
+     * This parameter expects a value of type {@link Integer}.
+     * </p>
+     */
+    public static final String EXCHANGE_TIMEOUT = "http.nio.exchange-timeout";
+
+    /**
+     * Defines the period of time in milliseconds an I/O dispatch thread
+     * may spend handling a single I/O event before it is reported as
+     * stalled. All connections served by a stalled dispatch thread make no
+     * progress, which usually means that a callback or a content consumer
+     * blocks. A value of zero or less disables stall detection, which is
+     * the default.
+     * <p>
+     * This parameter expects a value of type {@link Integer}.
+     * </p>
+     */
+    public static final String STALL_THRESHOLD = "http.nio.reactor-stall-threshold";
+
+    /**
+     * Defines the initial size in bytes of the session input and output
+     * buffers of a connection. The buffers grow on demand up to the size
+     * of the largest message head they have to hold, so a small initial
+     * size keeps pooled keep-alive connections that only carry small
+     * messages cheap to hold on to. Length delimited content is mostly
+     * transferred without going through the session buffers.
+     * <p>
+     * Chunk coded content, however, is always read through the session
+     * input buffer, which only grows once it is full. With a small buffer
+     * such content is read from the socket in correspondingly small reads.
+     * <code>ChunkedContentBenchmark</code> in the benchmark module compares
+     * the two settings; over the loopback interface they perform the same,
+     * but clients downloading large chunk coded responses over real
+     * networks may prefer the socket buffer size.
+     * <p>
+     * A value of zero or less, or a value not less than the socket buffer
+     * size, makes the buffers start at the socket buffer size.
+     * <p>
+     * This parameter expects a value of type {@link Integer}.
+     * </p>
+     *
+     * @see org.apache.http.params.CoreConnectionPNames#SOCKET_BUFFER_SIZE
+     */
+    public static final String CONNECTION_BUFFER_SIZE = "http.nio.connection-buffer-size";
+
+}
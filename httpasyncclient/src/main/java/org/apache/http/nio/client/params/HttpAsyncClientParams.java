@@ -0,0 +1,108 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.params;
+
+import org.apache.http.params.HttpParams;
+
+/**
+ * An adaptor for manipulating HTTP async client parameters in
+ * {@link HttpParams}.
+ */
+public class HttpAsyncClientParams {
+
+    private HttpAsyncClientParams() {
+        super();
+    }
+
+    /**
+     * Obtains the value of the {@link AsyncClientPNames#EXCHANGE_TIMEOUT}
+     * parameter. If not set, defaults to <code>0</code>.
+     */
+    public static int getExchangeTimeout(final HttpParams params) {
+        if (params == null) {
+            throw new IllegalArgumentException("HTTP parameters may not be null");
+        }
+        return params.getIntParameter(AsyncClientPNames.EXCHANGE_TIMEOUT, 0);
+    }
+
+    /**
+     * Sets the value of the {@link AsyncClientPNames#EXCHANGE_TIMEOUT}
+     * parameter.
+     */
+    public static void setExchangeTimeout(final HttpParams params, int timeout) {
+        if (params == null) {
+            throw new IllegalArgumentException("HTTP parameters may not be null");
+        }
+        params.setIntParameter(AsyncClientPNames.EXCHANGE_TIMEOUT, timeout);
+    }
+
+    /**
+     * Obtains the value of the {@link AsyncClientPNames#STALL_THRESHOLD}
+     * parameter. If not set, defaults to <code>0</code> (stall detection
+     * disabled).
+     */
+    public static int getStallThreshold(final HttpParams params) {
+        if (params == null) {
+            throw new IllegalArgumentException("HTTP parameters may not be null");
+        }
+        return params.getIntParameter(AsyncClientPNames.STALL_THRESHOLD, 0);
+    }
+
+    /**
+     * Sets the value of the {@link AsyncClientPNames#STALL_THRESHOLD}
+     * parameter.
+     */
+    public static void setStallThreshold(final HttpParams params, int threshold) {
+        if (params == null) {
+            throw new IllegalArgumentException("HTTP parameters may not be null");
+        }
+        params.setIntParameter(AsyncClientPNames.STALL_THRESHOLD, threshold);
+    }
+
+    /**
+     * Obtains the value of the {@link AsyncClientPNames#CONNECTION_BUFFER_SIZE}
+     * parameter. If not set, defaults to <code>1024</code>.
+     */
+    public static int getConnectionBufferSize(final HttpParams params) {
+        if (params == null) {
+            throw new IllegalArgumentException("HTTP parameters may not be null");
+        }
+        return params.getIntParameter(AsyncClientPNames.CONNECTION_BUFFER_SIZE, 1024);
+    }
+
+    /**
+     * Sets the value of the {@link AsyncClientPNames#CONNECTION_BUFFER_SIZE}
+     * parameter.
+     */
+    public static void setConnectionBufferSize(final HttpParams params, int size) {
+        if (params == null) {
+            throw new IllegalArgumentException("HTTP parameters may not be null");
+        }
+        params.setIntParameter(AsyncClientPNames.CONNECTION_BUFFER_SIZE, size);
+    }
+
+}
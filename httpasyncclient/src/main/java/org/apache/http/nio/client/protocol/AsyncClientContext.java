@@ -0,0 +1,52 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.protocol;
+
+/**
+ * {@link org.apache.http.protocol.HttpContext} attribute names used
+ * by HTTP async client in addition to those defined by
+ * {@link org.apache.http.client.protocol.ClientContext}.
+ */
+public interface AsyncClientContext {
+
+    /**
+     * Attribute name of a {@link Long} object that represents the point
+     * in time (in milliseconds as returned by
+     * {@link System#currentTimeMillis()}) by which the current exchange
+     * must complete. Present only if an exchange timeout has been set.
+     *
+     * @see org.apache.http.nio.client.params.AsyncClientPNames#EXCHANGE_TIMEOUT
+     */
+    public static final String EXCHANGE_DEADLINE = "http.nio.exchange-deadline";
+
+    /**
+     * Attribute name of a {@link org.apache.http.nio.client.ExchangeListener}
+     * object to be notified about the progress of the exchange.
+     */
+    public static final String EXCHANGE_LISTENER = "http.nio.exchange-listener";
+
+}
@@ -0,0 +1,57 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.conn;
+
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * Receives connection lifecycle events from a connection manager. Methods
+ * are called on I/O dispatch threads or the threads leasing and releasing
+ * connections and must not block. Timestamps are obtained from
+ * {@link System#nanoTime()}.
+ */
+public interface ConnectionPoolListener {
+
+    /**
+     * Called when a new connection has been established.
+     *
+     * @param route the route of the connection.
+     * @param id the unique id of the connection.
+     * @param lookupStart the time the resolution of the remote address started.
+     * @param lookupEnd the time the resolution of the remote address completed
+     *   and the connection attempt started.
+     * @param connectEnd the time the connection has been established.
+     */
+    void connectionOpened(HttpRoute route, String id, long lookupStart, long lookupEnd, long connectEnd);
+
+    void connectionLeased(HttpRoute route, String id, long nanoTime);
+
+    void connectionReleased(HttpRoute route, String id, boolean reusable, long nanoTime);
+
+    void connectionClosed(HttpRoute route, String id, long nanoTime);
+
+}
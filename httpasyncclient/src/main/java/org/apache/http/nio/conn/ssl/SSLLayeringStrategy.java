@@ -60,6 +60,13 @@ public class SSLLayeringStrategy implements LayeringStrategy {
     public static final String SSL   = "SSL";
     public static final String SSLV2 = "SSLv2";
 
+    /**
+     * Name of an I/O session attribute holding a {@link Runnable} to be
+     * executed once the TLS handshake has completed and the session has
+     * been verified.
+     */
+    public static final String HANDSHAKE_CALLBACK = "http.nio.ssl-handshake-callback";
+
     public static SSLLayeringStrategy getDefaultStrategy() {
         return new SSLLayeringStrategy();
     }
@@ -206,6 +213,10 @@ public class SSLLayeringStrategy implements LayeringStrategy {
                 final SSLSession sslsession) throws SSLException {
             InetSocketAddress address = (InetSocketAddress) iosession.getRemoteAddress();
             hostnameVerifier.verify(address.getHostName(), sslsession);
+            Runnable callback = (Runnable) iosession.removeAttribute(HANDSHAKE_CALLBACK);
+            if (callback != null) {
+                callback.run();
+            }
         }
 
     }
@@ -0,0 +1,196 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Properties;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.nio.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.localserver.LocalNIOTestServer;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Allocation regression test cases. Bytes allocated per request by all
+ * threads other than those of the local server are compared against the
+ * budgets in <code>allocation-budgets.properties</code>.
+ * <p>
+ * Skipped on JVMs that do not support per-thread allocation counters.
+ */
+public class TestAllocationBudgets {
+
+    private static final int WARMUP = 2000;
+    private static final int REQUESTS = 5000;
+
+    private ThreadMXBean threadMXBean;
+    private Method getThreadAllocatedBytes;
+    private Properties budgets;
+    private LocalNIOTestServer server;
+    private HttpHost target;
+    private DefaultHttpAsyncClient httpclient;
+
+    @Before
+    public void setUp() throws Exception {
+        this.threadMXBean = ManagementFactory.getThreadMXBean();
+        // Per-thread allocation counters are a HotSpot extension, looked up
+        // reflectively so that the test compiles and is skipped elsewhere
+        Class<?> extension;
+        try {
+            extension = Class.forName("com.sun.management.ThreadMXBean");
+        } catch (ClassNotFoundException ex) {
+            extension = null;
+        }
+        Assume.assumeTrue(extension != null && extension.isInstance(this.threadMXBean));
+        Method isSupported;
+        Method setEnabled;
+        try {
+            isSupported = extension.getMethod("isThreadAllocatedMemorySupported");
+            setEnabled = extension.getMethod("setThreadAllocatedMemoryEnabled", Boolean.TYPE);
+            this.getThreadAllocatedBytes = extension.getMethod("getThreadAllocatedBytes", long[].class);
+        } catch (NoSuchMethodException ex) {
+            isSupported = null;
+            setEnabled = null;
+        }
+        Assume.assumeTrue(isSupported != null);
+        Assume.assumeTrue(((Boolean) isSupported.invoke(this.threadMXBean)).booleanValue());
+        setEnabled.invoke(this.threadMXBean, Boolean.TRUE);
+
+        this.budgets = new Properties();
+        InputStream instream = getClass().getClassLoader().getResourceAsStream(
+                "allocation-budgets.properties");
+        Assert.assertNotNull("allocation-budgets.properties not found", instream);
+        try {
+            this.budgets.load(instream);
+        } finally {
+            instream.close();
+        }
+
+        this.server = new LocalNIOTestServer(null, 1);
+        this.server.registerDefaultHandlers();
+        this.server.start();
+        this.target = this.server.getServiceHost();
+        DefaultConnectingIOReactor ioreactor = new DefaultConnectingIOReactor(1, new BasicHttpParams());
+        this.httpclient = new DefaultHttpAsyncClient(new PoolingClientConnectionManager(ioreactor));
+        this.httpclient.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.httpclient != null) {
+            this.httpclient.shutdown();
+        }
+        if (this.server != null) {
+            this.server.stop();
+        }
+    }
+
+    private long[] clientThreadIds() {
+        long[] ids = this.threadMXBean.getAllThreadIds();
+        ThreadInfo[] infos = this.threadMXBean.getThreadInfo(ids);
+        int n = 0;
+        for (int i = 0; i < infos.length; i++) {
+            if (infos[i] != null && !infos[i].getThreadName().startsWith("LocalNIOTestServer")) {
+                ids[n++] = ids[i];
+            }
+        }
+        long[] result = new long[n];
+        System.arraycopy(ids, 0, result, 0, n);
+        return result;
+    }
+
+    private long[] getThreadAllocatedBytes(final long[] ids) throws Exception {
+        return (long[]) this.getThreadAllocatedBytes.invoke(this.threadMXBean, ids);
+    }
+
+    private static long sum(final long[] values) {
+        long total = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > 0) {
+                total += values[i];
+            }
+        }
+        return total;
+    }
+
+    private void execute(final HttpUriRequest request) throws Exception {
+        HttpResponse response = this.httpclient.execute(this.target, request, null).get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        EntityUtils.consume(response.getEntity());
+    }
+
+    private void assertWithinBudget(final String key, final HttpUriRequest request) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            execute(request);
+        }
+        // Threads are sampled once so that both readings cover the same set
+        long[] ids = clientThreadIds();
+        long before = sum(getThreadAllocatedBytes(ids));
+        for (int i = 0; i < REQUESTS; i++) {
+            execute(request);
+        }
+        long after = sum(getThreadAllocatedBytes(ids));
+        long perRequest = (after - before) / REQUESTS;
+        long budget = Long.parseLong(this.budgets.getProperty(key));
+        Assert.assertTrue(key + ": " + perRequest + " bytes allocated per request, budget is " + budget,
+                perRequest <= budget);
+    }
+
+    @Test
+    public void testGet1k() throws Exception {
+        assertWithinBudget("get.1k", new HttpGet("/bytes/1024"));
+    }
+
+    @Test
+    public void testGet16k() throws Exception {
+        assertWithinBudget("get.16k", new HttpGet("/bytes/16384"));
+    }
+
+    @Test
+    public void testPost1k() throws Exception {
+        HttpPost httppost = new HttpPost("/bytes/1024");
+        httppost.setEntity(new NByteArrayEntity(new byte[1024]));
+        assertWithinBudget("post.1k", httppost);
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.BoundedExchangeLimiter.OverflowPolicy;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.nio.client.ExchangePermit;
+import org.apache.http.nio.client.ExchangeTimeoutException;
+import org.apache.http.nio.client.params.HttpAsyncClientParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Exchange admission control test cases.
+ */
+public class TestExchangeLimiter extends AsyncHttpTestBase {
+
+    static class ConcurrencyTrackingService implements HttpRequestHandler {
+
+        private final long delay;
+        private final AtomicInteger concurrent = new AtomicInteger(0);
+        private final AtomicInteger maxConcurrent = new AtomicInteger(0);
+
+        ConcurrencyTrackingService(long delay) {
+            super();
+            this.delay = delay;
+        }
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            int n = this.concurrent.incrementAndGet();
+            try {
+                synchronized (this.maxConcurrent) {
+                    if (n > this.maxConcurrent.get()) {
+                        this.maxConcurrent.set(n);
+                    }
+                }
+                Thread.sleep(this.delay);
+            } catch (InterruptedException ex) {
+                throw new IOException("Interrupted");
+            } finally {
+                this.concurrent.decrementAndGet();
+            }
+            response.setStatusCode(HttpStatus.SC_OK);
+            response.setEntity(new StringEntity("done"));
+        }
+
+        int getMaxConcurrent() {
+            return this.maxConcurrent.get();
+        }
+
+    }
+
+    private ConcurrencyTrackingService service;
+
+    @Before
+    public void setUpService() throws Exception {
+        this.service = new ConcurrencyTrackingService(300);
+        this.localServer.register("/tracked", this.service);
+        this.sessionManager.setDefaultMaxPerRoute(10);
+    }
+
+    private void assertRejected(final Future<HttpResponse> future) throws Exception {
+        try {
+            future.get();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testWaitPolicy() throws Exception {
+        BoundedExchangeLimiter limiter = new BoundedExchangeLimiter(10, 2);
+        this.httpclient.setExchangeLimiter(limiter);
+
+        Future<?>[] futures = new Future<?>[6];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = this.httpclient.execute(this.target, new HttpGet("/tracked"), null);
+        }
+        Assert.assertEquals(2, limiter.getInFlightCount());
+        Assert.assertEquals(4, limiter.getPendingCount());
+        for (int i = 0; i < futures.length; i++) {
+            HttpResponse response = (HttpResponse) futures[i].get();
+            Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        }
+        Assert.assertTrue(this.service.getMaxConcurrent() <= 2);
+        Assert.assertEquals(0, limiter.getInFlightCount());
+        Assert.assertEquals(0, limiter.getPendingCount());
+        Assert.assertEquals(0, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void testRejectPolicy() throws Exception {
+        BoundedExchangeLimiter limiter = new BoundedExchangeLimiter(
+                1, 1, OverflowPolicy.REJECT, 0);
+        this.httpclient.setExchangeLimiter(limiter);
+
+        Future<HttpResponse> future1 = this.httpclient.execute(this.target, new HttpGet("/tracked"), null);
+        Future<HttpResponse> future2 = this.httpclient.execute(this.target, new HttpGet("/tracked"), null);
+        assertRejected(future2);
+        HttpResponse response = future1.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertEquals(0, limiter.getInFlightCount());
+        Assert.assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void testShedOldestPolicy() throws Exception {
+        BoundedExchangeLimiter limiter = new BoundedExchangeLimiter(
+                1, 1, OverflowPolicy.SHED_OLDEST, 1);
+        this.httpclient.setExchangeLimiter(limiter);
+
+        Future<HttpResponse> future1 = this.httpclient.execute(this.target, new HttpGet("/tracked"), null);
+        Future<HttpResponse> future2 = this.httpclient.execute(this.target, new HttpGet("/tracked"), null);
+        Future<HttpResponse> future3 = this.httpclient.execute(this.target, new HttpGet("/tracked"), null);
+        assertRejected(future2);
+        Assert.assertEquals(HttpStatus.SC_OK, future1.get().getStatusLine().getStatusCode());
+        Assert.assertEquals(HttpStatus.SC_OK, future3.get().getStatusLine().getStatusCode());
+        Assert.assertEquals(0, limiter.getInFlightCount());
+        Assert.assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void testCancelWaitingExchange() throws Exception {
+        BoundedExchangeLimiter limiter = new BoundedExchangeLimiter(1, 1);
+        this.httpclient.setExchangeLimiter(limiter);
+
+        Future<HttpResponse> future1 = this.httpclient.execute(this.target, new HttpGet("/tracked"), null);
+        Future<HttpResponse> future2 = this.httpclient.execute(this.target, new HttpGet("/tracked"), null);
+        Assert.assertEquals(1, limiter.getPendingCount());
+        Assert.assertTrue(future2.cancel(true));
+        Assert.assertEquals(0, limiter.getPendingCount());
+        Assert.assertEquals(HttpStatus.SC_OK, future1.get().getStatusLine().getStatusCode());
+        Assert.assertEquals(0, limiter.getInFlightCount());
+    }
+
+    @Test
+    public void testTimeoutWhileWaiting() throws Exception {
+        BoundedExchangeLimiter limiter = new BoundedExchangeLimiter(1, 1);
+        this.httpclient.setExchangeLimiter(limiter);
+
+        Future<HttpResponse> future1 = this.httpclient.execute(this.target, new HttpGet("/tracked"), null);
+        HttpGet httpget = new HttpGet("/tracked");
+        HttpAsyncClientParams.setExchangeTimeout(httpget.getParams(), 100);
+        Future<HttpResponse> future2 = this.httpclient.execute(this.target, httpget, null);
+        try {
+            future2.get();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof ExchangeTimeoutException);
+        }
+        Assert.assertFalse(future2.isCancelled());
+        Assert.assertEquals(0, limiter.getPendingCount());
+        Assert.assertEquals(HttpStatus.SC_OK, future1.get().getStatusLine().getStatusCode());
+        Assert.assertEquals(0, limiter.getInFlightCount());
+    }
+
+    @Test
+    public void testSaturatedRouteDoesNotBlockOtherRoutes() throws Exception {
+        BoundedExchangeLimiter limiter = new BoundedExchangeLimiter(10, 1);
+        HttpRoute route1 = new HttpRoute(new HttpHost("somehost"));
+        HttpRoute route2 = new HttpRoute(new HttpHost("otherhost"));
+
+        Future<ExchangePermit> permit1 = limiter.acquire(route1, null);
+        Future<ExchangePermit> permit2 = limiter.acquire(route1, null);
+        Future<ExchangePermit> permit3 = limiter.acquire(route2, null);
+        Assert.assertTrue(permit1.isDone());
+        Assert.assertFalse(permit2.isDone());
+        Assert.assertTrue(permit3.isDone());
+        Assert.assertEquals(1, limiter.getPendingCount());
+
+        permit1.get().completed();
+        Assert.assertTrue(permit2.isDone());
+        Assert.assertEquals(0, limiter.getPendingCount());
+        permit2.get().completed();
+        permit3.get().completed();
+        Assert.assertEquals(0, limiter.getInFlightCount());
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.nio.client.ExchangeListener;
+import org.apache.http.nio.client.ExchangePhase;
+import org.apache.http.nio.client.protocol.AsyncClientContext;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Exchange listener test cases.
+ */
+public class TestExchangeListener extends AsyncHttpTestBase {
+
+    static class RecordingListener implements ExchangeListener {
+
+        private final List<String> events = new ArrayList<String>();
+        private final List<Long> timestamps = new ArrayList<Long>();
+
+        private synchronized void record(final String event, long nanoTime) {
+            this.events.add(event);
+            this.timestamps.add(Long.valueOf(nanoTime));
+        }
+
+        public void exchangeStarted(
+                final HttpRoute route, final HttpRequest request,
+                final HttpContext context, long nanoTime) {
+            record("started", nanoTime);
+        }
+
+        public void phaseStarted(
+                final ExchangePhase phase, final HttpRoute route,
+                final HttpContext context, long nanoTime) {
+            record("+" + phase, nanoTime);
+        }
+
+        public void phaseCompleted(
+                final ExchangePhase phase, final HttpRoute route,
+                final HttpContext context, long nanoTime) {
+            record("-" + phase, nanoTime);
+        }
+
+        public void exchangeCompleted(
+                final HttpRoute route, final HttpResponse response,
+                final HttpContext context, long nanoTime) {
+            record("completed", nanoTime);
+        }
+
+        public void exchangeFailed(
+                final HttpRoute route, final Exception ex,
+                final HttpContext context, long nanoTime) {
+            record("failed", nanoTime);
+        }
+
+        public void exchangeCancelled(
+                final HttpRoute route, final HttpContext context, long nanoTime) {
+            record("cancelled", nanoTime);
+        }
+
+        synchronized List<String> getEvents() {
+            return new ArrayList<String>(this.events);
+        }
+
+        synchronized List<Long> getTimestamps() {
+            return new ArrayList<Long>(this.timestamps);
+        }
+
+    }
+
+    @Test
+    public void testPhaseSequence() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        this.httpclient.setExchangeListener(listener);
+
+        Future<HttpResponse> future = this.httpclient.execute(
+                this.target, new HttpGet("/random/2048"), null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+
+        List<String> events = listener.getEvents();
+        String[] expected = new String[] {
+                "started",
+                "+POOL_WAIT",
+                "+DNS_LOOKUP", "-DNS_LOOKUP",
+                "+CONNECT", "-CONNECT",
+                "-POOL_WAIT",
+                "+REQUEST_WRITE", "-REQUEST_WRITE",
+                "+RESPONSE_WAIT", "-RESPONSE_WAIT",
+                "+RESPONSE_BODY", "-RESPONSE_BODY",
+                "completed" };
+        Assert.assertEquals(expected.length, events.size());
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], events.get(i));
+        }
+        List<Long> timestamps = listener.getTimestamps();
+        for (int i = 1; i < timestamps.size(); i++) {
+            Assert.assertTrue(timestamps.get(i).longValue() >= timestamps.get(i - 1).longValue());
+        }
+    }
+
+    @Test
+    public void testCompositeListener() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ExchangeMetricsRegistry registry = new ExchangeMetricsRegistry();
+        this.httpclient.setExchangeListener(new CompositeExchangeListener(listener, registry));
+
+        Future<HttpResponse> future = this.httpclient.execute(
+                this.target, new HttpGet("/random/100"), null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+
+        List<String> events = listener.getEvents();
+        Assert.assertEquals("started", events.get(0));
+        Assert.assertEquals("completed", events.get(events.size() - 1));
+        RouteMetricsSnapshot snapshot = registry.getSnapshot(new HttpRoute(this.target));
+        Assert.assertNotNull(snapshot);
+        Assert.assertEquals(1, snapshot.getCompletedCount());
+    }
+
+    @Test
+    public void testContextListener() throws Exception {
+        RecordingListener clientListener = new RecordingListener();
+        RecordingListener contextListener = new RecordingListener();
+        this.httpclient.setExchangeListener(clientListener);
+
+        HttpContext context = new BasicHttpContext();
+        context.setAttribute(AsyncClientContext.EXCHANGE_LISTENER, contextListener);
+        Future<HttpResponse> future = this.httpclient.execute(
+                this.target, new HttpGet("/random/100"), context, null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+
+        Assert.assertTrue(clientListener.getEvents().isEmpty());
+        List<String> events = contextListener.getEvents();
+        Assert.assertEquals("started", events.get(0));
+        Assert.assertEquals("completed", events.get(events.size() - 1));
+    }
+
+    @Test
+    public void testConnectFailure() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        this.httpclient.setExchangeListener(listener);
+
+        int port = this.localServer.getServiceAddress().getPort();
+        this.localServer.stop();
+        this.localServer = null;
+
+        Future<HttpResponse> future = this.httpclient.execute(
+                new HttpHost("localhost", port), new HttpGet("/"), null);
+        try {
+            future.get();
+            Assert.fail("ExecutionException should have been thrown");
+        } catch (ExecutionException ex) {
+        }
+        List<String> events = listener.getEvents();
+        Assert.assertEquals("started", events.get(0));
+        Assert.assertEquals("+POOL_WAIT", events.get(1));
+        Assert.assertEquals("failed", events.get(events.size() - 1));
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.client.ExchangePhase;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Exchange metrics test cases.
+ */
+public class TestExchangeMetrics extends AsyncHttpTestBase {
+
+    static class NotFoundService implements HttpRequestHandler {
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+        }
+
+    }
+
+    @Test
+    public void testRouteMetrics() throws Exception {
+        this.localServer.register("/missing", new NotFoundService());
+        ExchangeMetricsRegistry registry = new ExchangeMetricsRegistry();
+        this.httpclient.setExchangeListener(registry);
+
+        for (int i = 0; i < 5; i++) {
+            Future<HttpResponse> future = this.httpclient.execute(
+                    this.target, new HttpGet("/random/1000"), null);
+            HttpResponse response = future.get();
+            Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        }
+        Future<HttpResponse> future = this.httpclient.execute(
+                this.target, new HttpGet("/missing"), null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_NOT_FOUND, response.getStatusLine().getStatusCode());
+
+        Assert.assertEquals(1, registry.getRoutes().size());
+        HttpRoute route = registry.getRoutes().iterator().next();
+        RouteMetricsSnapshot snapshot = registry.getSnapshot(route);
+        Assert.assertEquals(6, snapshot.getRequestCount());
+        Assert.assertEquals(6, snapshot.getCompletedCount());
+        Assert.assertEquals(5, snapshot.getStatusClassCount(2));
+        Assert.assertEquals(1, snapshot.getStatusClassCount(4));
+        Assert.assertEquals(0, snapshot.getFailedCount());
+        Assert.assertTrue(snapshot.getBytesReceived() >= 5000);
+        Assert.assertTrue(snapshot.getBytesSent() > 0);
+        Assert.assertEquals(6, snapshot.getLatency().getCount());
+        Assert.assertTrue(snapshot.getLatency().getPercentile(0.5) > 0);
+
+        Assert.assertEquals(6, registry.getPhaseSnapshot(ExchangePhase.POOL_WAIT).getCount());
+        Assert.assertEquals(6, registry.getPhaseSnapshot(ExchangePhase.RESPONSE_BODY).getCount());
+        Assert.assertTrue(registry.getPhaseSnapshot(ExchangePhase.CONNECT).getCount() >= 1);
+    }
+
+    @Test
+    public void testRouteLimit() throws Exception {
+        ExchangeMetricsRegistry registry = new ExchangeMetricsRegistry(2);
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        long now = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            HttpRoute route = new HttpRoute(new HttpHost("host" + i, 80));
+            HttpContext context = new BasicHttpContext();
+            registry.exchangeStarted(route, null, context, now);
+            registry.exchangeCompleted(route, response, context, now + 1000);
+            now += 2000000000L;
+        }
+        Assert.assertEquals(2, registry.getRoutes().size());
+        Assert.assertEquals(3, registry.getEvictedRouteCount());
+        Assert.assertNotNull(registry.getSnapshot(new HttpRoute(new HttpHost("host4", 80))));
+        Assert.assertNull(registry.getSnapshot(new HttpRoute(new HttpHost("host0", 80))));
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.nio.client.ExchangeTimeoutException;
+import org.apache.http.nio.client.params.HttpAsyncClientParams;
+import org.apache.http.nio.client.protocol.AsyncClientContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Exchange timeout test cases.
+ */
+public class TestExchangeTimeout extends AsyncHttpTestBase {
+
+    static class SlowDripService implements HttpRequestHandler {
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            InputStream instream = new InputStream() {
+
+                private int count = 0;
+
+                @Override
+                public int read() throws IOException {
+                    if (this.count++ >= 100) {
+                        return -1;
+                    }
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException ex) {
+                        throw new IOException("Interrupted");
+                    }
+                    return 'a';
+                }
+
+            };
+            response.setStatusCode(HttpStatus.SC_OK);
+            response.setEntity(new InputStreamEntity(instream, -1));
+        }
+
+    }
+
+    @Test
+    public void testSlowDripResponseTimesOut() throws Exception {
+        this.localServer.register("/drip", new SlowDripService());
+        HttpGet httpget = new HttpGet("/drip");
+        HttpAsyncClientParams.setExchangeTimeout(httpget.getParams(), 500);
+
+        long start = System.currentTimeMillis();
+        Future<HttpResponse> future = this.httpclient.execute(this.target, httpget, null);
+        try {
+            future.get();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof ExchangeTimeoutException);
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 3000);
+        // The connection is released once the failure has been reported
+        long deadline = System.currentTimeMillis() + 2000;
+        while (this.sessionManager.getTotalStats().getLeased() != 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, this.sessionManager.getTotalStats().getLeased());
+    }
+
+    @Test
+    public void testDeadlineVisibleToInterceptors() throws Exception {
+        final Long[] deadline = new Long[1];
+        this.httpclient.addRequestInterceptor(new HttpRequestInterceptor() {
+
+            public void process(
+                    final HttpRequest request,
+                    final HttpContext context) throws HttpException, IOException {
+                deadline[0] = (Long) context.getAttribute(AsyncClientContext.EXCHANGE_DEADLINE);
+            }
+
+        });
+        HttpAsyncClientParams.setExchangeTimeout(this.httpclient.getParams(), 5000);
+
+        long start = System.currentTimeMillis();
+        Future<HttpResponse> future = this.httpclient.execute(
+                this.target, new HttpGet("/random/1024"), null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertNotNull(deadline[0]);
+        Assert.assertTrue(deadline[0].longValue() >= start + 5000);
+        Assert.assertTrue(deadline[0].longValue() <= System.currentTimeMillis() + 5000);
+    }
+
+    @Test
+    public void testNoDeadlineByDefault() throws Exception {
+        final Object[] deadline = new Object[] { "unset" };
+        this.httpclient.addRequestInterceptor(new HttpRequestInterceptor() {
+
+            public void process(
+                    final HttpRequest request,
+                    final HttpContext context) throws HttpException, IOException {
+                deadline[0] = context.getAttribute(AsyncClientContext.EXCHANGE_DEADLINE);
+            }
+
+        });
+        Future<HttpResponse> future = this.httpclient.execute(
+                this.target, new HttpGet("/random/1024"), null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertNull(deadline[0]);
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.BoundedExchangeLimiter.OverflowPolicy;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.nio.client.ExchangePermit;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Adaptive concurrency limit test cases.
+ */
+public class TestGradientExchangeLimiter extends AsyncHttpTestBase {
+
+    /**
+     * Service that processes at most the given number of requests at a time.
+     * Excess requests queue up, as they would at an overloaded backend.
+     */
+    static class ThrottledService implements HttpRequestHandler {
+
+        private final Semaphore capacity;
+        private final long serviceTime;
+
+        ThrottledService(int capacity, long serviceTime) {
+            super();
+            this.capacity = new Semaphore(capacity, true);
+            this.serviceTime = serviceTime;
+        }
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            try {
+                this.capacity.acquire();
+                try {
+                    Thread.sleep(this.serviceTime);
+                } finally {
+                    this.capacity.release();
+                }
+            } catch (InterruptedException ex) {
+                throw new IOException("Interrupted");
+            }
+            response.setStatusCode(HttpStatus.SC_OK);
+            response.setEntity(new StringEntity("done"));
+        }
+
+    }
+
+    static class SimulatedLimiter extends GradientExchangeLimiter {
+
+        private int inFlight;
+
+        SimulatedLimiter(int initialLimit) {
+            super(1000, 1000, initialLimit, 1, OverflowPolicy.WAIT, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public synchronized int getInFlightCount(final HttpRoute route) {
+            return this.inFlight;
+        }
+
+        /**
+         * Runs the given number of exchanges against a backend with the given
+         * capacity, keeping the route saturated up to the current limit.
+         */
+        void simulate(final HttpRoute route, int capacity, long serviceTime, int exchanges) {
+            for (int i = 0; i < exchanges; i++) {
+                int limit = getLimit(route);
+                synchronized (this) {
+                    this.inFlight = limit;
+                }
+                double queueing = Math.max(1.0, (double) limit / capacity);
+                exchangeCompleted(route, (long) (serviceTime * queueing));
+            }
+        }
+
+    }
+
+    @Test
+    public void testLimitConvergesToBackendCapacity() throws Exception {
+        HttpRoute route = new HttpRoute(this.target);
+        SimulatedLimiter limiter = new SimulatedLimiter(2);
+        limiter.simulate(route, 8, TimeUnit.MILLISECONDS.toNanos(10), 2000);
+        int limit = limiter.getLimit(route);
+        Assert.assertTrue("Limit " + limit, limit >= 8 && limit <= 16);
+        Assert.assertEquals(10, limiter.getNoLoadRtt(route, TimeUnit.MILLISECONDS));
+
+        // Backend capacity halves
+        limiter.simulate(route, 4, TimeUnit.MILLISECONDS.toNanos(10), 2000);
+        int reduced = limiter.getLimit(route);
+        Assert.assertTrue("Limit " + reduced, reduced >= 4 && reduced < limit);
+    }
+
+    @Test
+    public void testLimitBacksOffOnFailure() throws Exception {
+        HttpRoute route = new HttpRoute(this.target);
+        GradientExchangeLimiter limiter = new GradientExchangeLimiter(
+                100, 100, 20, 1, OverflowPolicy.WAIT, Integer.MAX_VALUE);
+        Assert.assertEquals(20, limiter.getLimit(route));
+        limiter.exchangeFailed(route);
+        Assert.assertEquals(18, limiter.getLimit(route));
+        for (int i = 0; i < 100; i++) {
+            limiter.exchangeFailed(route);
+        }
+        Assert.assertEquals(1, limiter.getLimit(route));
+    }
+
+    @Test
+    public void testIdleRoutesExpire() throws Exception {
+        GradientExchangeLimiter limiter = new GradientExchangeLimiter(100, 100);
+        limiter.setIdleRouteExpiry(50, TimeUnit.MILLISECONDS);
+        HttpRoute busy = new HttpRoute(new HttpHost("busyhost"));
+        ExchangePermit busyPermit = limiter.acquire(busy, null).get();
+        for (int i = 0; i < 100; i++) {
+            HttpRoute route = new HttpRoute(new HttpHost("host" + i));
+            limiter.acquire(route, null).get().completed();
+        }
+        Assert.assertEquals(101, limiter.getRouteCount());
+
+        Thread.sleep(100);
+        HttpRoute route = new HttpRoute(new HttpHost("otherhost"));
+        limiter.acquire(route, null).get().completed();
+        // Only the route still in use and the one just used are kept
+        Assert.assertEquals(2, limiter.getRouteCount());
+        busyPermit.completed();
+        Assert.assertEquals(0, limiter.getInFlightCount());
+    }
+
+    @Test
+    public void testThrottledServerSimulation() throws Exception {
+        this.localServer.register("/throttled", new ThrottledService(4, 20));
+        this.sessionManager.setMaxTotal(64);
+        this.sessionManager.setDefaultMaxPerRoute(64);
+        final GradientExchangeLimiter limiter = new GradientExchangeLimiter(
+                64, 64, 2, 1, OverflowPolicy.WAIT, Integer.MAX_VALUE);
+        this.httpclient.setExchangeLimiter(limiter);
+
+        final long deadline = System.currentTimeMillis() + 2000;
+        final int clients = 32;
+        final CountDownLatch latch = new CountDownLatch(clients);
+        final AtomicInteger completed = new AtomicInteger(0);
+        final AtomicInteger failed = new AtomicInteger(0);
+
+        for (int i = 0; i < clients; i++) {
+            this.httpclient.execute(this.target, new HttpGet("/throttled"),
+                    new FutureCallback<HttpResponse>() {
+
+                public void completed(final HttpResponse result) {
+                    completed.incrementAndGet();
+                    next();
+                }
+
+                public void failed(final Exception ex) {
+                    failed.incrementAndGet();
+                    latch.countDown();
+                }
+
+                public void cancelled() {
+                    latch.countDown();
+                }
+
+                private void next() {
+                    if (System.currentTimeMillis() < deadline) {
+                        httpclient.execute(target, new HttpGet("/throttled"), this);
+                    } else {
+                        latch.countDown();
+                    }
+                }
+
+            });
+        }
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+
+        HttpRoute route = new HttpRoute(this.target);
+        int limit = limiter.getLimit(route);
+        Assert.assertEquals(0, failed.get());
+        Assert.assertTrue(completed.get() > 0);
+        Assert.assertTrue("Limit " + limit, limit >= 1 && limit <= 16);
+        Assert.assertEquals(0, limiter.getInFlightCount());
+        Assert.assertEquals(0, limiter.getPendingCount());
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Hedged request test cases.
+ */
+public class TestHedgedRequests extends AsyncHttpTestBase {
+
+    static class FirstSlowService implements HttpRequestHandler {
+
+        private final long delay;
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        FirstSlowService(long delay) {
+            super();
+            this.delay = delay;
+        }
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            if (this.count.getAndIncrement() == 0) {
+                try {
+                    Thread.sleep(this.delay);
+                } catch (InterruptedException ex) {
+                    throw new IOException("Interrupted");
+                }
+            }
+            response.setStatusCode(HttpStatus.SC_OK);
+            response.setEntity(new StringEntity("" + this.count.get()));
+        }
+
+        int getCount() {
+            return this.count.get();
+        }
+
+    }
+
+    private void awaitLeased(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (this.sessionManager.getTotalStats().getLeased() != expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(expected, this.sessionManager.getTotalStats().getLeased());
+    }
+
+    @Test
+    public void testHedgedRequestWins() throws Exception {
+        FirstSlowService service = new FirstSlowService(5000);
+        this.localServer.register("/slow", service);
+        this.sessionManager.setDefaultMaxPerRoute(5);
+        DefaultHedgingStrategy strategy = new DefaultHedgingStrategy(
+                100, TimeUnit.MILLISECONDS, 0, 1.0);
+        this.httpclient.setHedgingStrategy(strategy);
+
+        long start = System.currentTimeMillis();
+        Future<HttpResponse> future = this.httpclient.execute(this.target, new HttpGet("/slow"), null);
+        HttpResponse response = future.get();
+        long elapsed = System.currentTimeMillis() - start;
+
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertTrue(elapsed < 4000);
+        Assert.assertEquals(2, service.getCount());
+        Assert.assertEquals(1, strategy.getHedgeCount());
+        Assert.assertEquals(1, strategy.getHedgeWinCount());
+
+        // The original request lost and must have given up its connection
+        awaitLeased(0);
+        Assert.assertEquals(1, this.sessionManager.getTotalStats().getAvailable());
+    }
+
+    @Test
+    public void testFirstRequestCanBeHedged() throws Exception {
+        FirstSlowService service = new FirstSlowService(5000);
+        this.localServer.register("/slow", service);
+        this.sessionManager.setDefaultMaxPerRoute(5);
+        DefaultHedgingStrategy strategy = new DefaultHedgingStrategy(
+                100, TimeUnit.MILLISECONDS, 0, 0.05);
+        this.httpclient.setHedgingStrategy(strategy);
+
+        Future<HttpResponse> future = this.httpclient.execute(this.target, new HttpGet("/slow"), null);
+        HttpResponse response = future.get();
+
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertEquals(1, strategy.getHedgeCount());
+        Assert.assertEquals(0, strategy.getHedgeDeniedCount());
+        awaitLeased(0);
+    }
+
+    @Test
+    public void testLosingAttemptSampled() throws Exception {
+        FirstSlowService service = new FirstSlowService(5000);
+        this.localServer.register("/slow", service);
+        this.sessionManager.setDefaultMaxPerRoute(5);
+        final List<Long> samples = new CopyOnWriteArrayList<Long>();
+        DefaultHedgingStrategy strategy = new DefaultHedgingStrategy(
+                100, TimeUnit.MILLISECONDS, 0.5, 1.0) {
+
+            @Override
+            public void responseStarted(final HttpHost target, long duration, final TimeUnit tunit) {
+                samples.add(Long.valueOf(tunit.toMillis(duration)));
+                super.responseStarted(target, duration, tunit);
+            }
+
+        };
+        this.httpclient.setHedgingStrategy(strategy);
+
+        Future<HttpResponse> future = this.httpclient.execute(this.target, new HttpGet("/slow"), null);
+        future.get();
+
+        Assert.assertEquals(1, strategy.getHedgeWinCount());
+        Assert.assertEquals(1, samples.size());
+        // The sample covers the time the original request had been pending,
+        // not the response time of the hedged request
+        Assert.assertTrue(samples.get(0).longValue() >= 100);
+    }
+
+    @Test
+    public void testHedgeRateLimited() throws Exception {
+        FirstSlowService service = new FirstSlowService(500);
+        this.localServer.register("/slow", service);
+        DefaultHedgingStrategy strategy = new DefaultHedgingStrategy(
+                100, TimeUnit.MILLISECONDS, 0, 0.0);
+        this.httpclient.setHedgingStrategy(strategy);
+
+        Future<HttpResponse> future = this.httpclient.execute(this.target, new HttpGet("/slow"), null);
+        HttpResponse response = future.get();
+
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertEquals(1, service.getCount());
+        Assert.assertEquals(0, strategy.getHedgeCount());
+        Assert.assertEquals(1, strategy.getHedgeDeniedCount());
+    }
+
+    @Test
+    public void testEntityEnclosingRequestNotHedged() throws Exception {
+        DefaultHedgingStrategy strategy = new DefaultHedgingStrategy(
+                1, TimeUnit.MILLISECONDS, 0, 1.0);
+        this.httpclient.setHedgingStrategy(strategy);
+
+        HttpPost httppost = new HttpPost("/echo/stuff");
+        httppost.setEntity(new StringEntity("stuff"));
+        Future<HttpResponse> future = this.httpclient.execute(this.target, httppost, null);
+        HttpResponse response = future.get();
+
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertEquals(0, strategy.getRequestCount());
+        Assert.assertEquals(0, strategy.getHedgeCount());
+    }
+
+}
@@ -59,6 +59,18 @@ public class TestHttpAsync extends AsyncHttpTestBase {
         Assert.assertEquals(200, response.getStatusLine().getStatusCode());
     }
 
+    @Test
+    public void testLargeGet() throws Exception {
+        int len = BasicHttpAsyncResponseConsumer.MAX_PRESIZE * 2 + 1;
+        HttpGet httpget = new HttpGet("/random/" + len);
+        Future<HttpResponse> future = this.httpclient.execute(this.target, httpget, null);
+        HttpResponse response = future.get();
+        Assert.assertNotNull(response);
+        Assert.assertEquals(200, response.getStatusLine().getStatusCode());
+        byte[] b = EntityUtils.toByteArray(response.getEntity());
+        Assert.assertEquals(len, b.length);
+    }
+
     @Test
     public void testSinglePost() throws Exception {
         byte[] b1 = new byte[1024];
@@ -0,0 +1,100 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBucketBoundaries() {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            Assert.assertTrue(LatencyHistogram.lowestValue(index) <= value);
+            Assert.assertTrue(LatencyHistogram.highestValue(index) >= value);
+        }
+        Assert.assertEquals(LatencyHistogram.BUCKET_COUNT - 1,
+                LatencyHistogram.bucketIndex(LatencyHistogram.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i, TimeUnit.MILLISECONDS);
+        }
+        HistogramSnapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(1000, snapshot.getCount());
+        Assert.assertEquals(500.5, snapshot.getMean() / 1000000, 0.001);
+        assertWithinPrecision(500, snapshot.getPercentile(0.5, TimeUnit.MILLISECONDS));
+        assertWithinPrecision(990, snapshot.getPercentile(0.99, TimeUnit.MILLISECONDS));
+        assertWithinPrecision(1000, snapshot.getMax() / 1000000);
+        assertWithinPrecision(1, snapshot.getMin() / 1000000);
+    }
+
+    @Test
+    public void testOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        HistogramSnapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(2, snapshot.getCount());
+        Assert.assertEquals(0, snapshot.getMin());
+        Assert.assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getMax());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int n = 0; n < 10000; n++) {
+                        histogram.record(n);
+                    }
+                }
+
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        Assert.assertEquals(80000, histogram.getSnapshot().getCount());
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        Assert.assertEquals(expected, actual, Math.max(1, expected * 0.04));
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.nio.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.localserver.LocalNIOTestServer;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Fault injection test cases for {@link LocalNIOTestServer}.
+ */
+public class TestLocalNIOTestServer {
+
+    private LocalNIOTestServer server;
+    private HttpHost target;
+    private DefaultHttpAsyncClient httpclient;
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = new LocalNIOTestServer(null, 2);
+        this.server.registerDefaultHandlers();
+        this.server.start();
+        this.target = this.server.getServiceHost();
+        DefaultConnectingIOReactor ioreactor = new DefaultConnectingIOReactor(2, new BasicHttpParams());
+        this.httpclient = new DefaultHttpAsyncClient(new PoolingClientConnectionManager(ioreactor));
+        this.httpclient.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.httpclient.shutdown();
+        this.server.stop();
+    }
+
+    private HttpResponse get(final String uri) throws Exception {
+        return this.httpclient.execute(this.target, new HttpGet(uri), null).get();
+    }
+
+    @Test
+    public void testChunkedContent() throws Exception {
+        HttpResponse response = get("/bytes/10000?chunked=true");
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertTrue(response.getEntity().isChunked());
+        Assert.assertEquals(10000, EntityUtils.toByteArray(response.getEntity()).length);
+    }
+
+    @Test
+    public void testLatency() throws Exception {
+        this.server.setLatency(200);
+        long start = System.currentTimeMillis();
+        HttpResponse response = get("/bytes/10");
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+
+        start = System.currentTimeMillis();
+        response = get("/bytes/10?delay=0");
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertTrue(System.currentTimeMillis() - start < 200);
+    }
+
+    @Test
+    public void testKeepAliveLimit() throws Exception {
+        this.server.setMaxKeepAliveRequests(2);
+        for (int i = 0; i < 6; i++) {
+            HttpResponse response = get("/bytes/10");
+            Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        }
+        Assert.assertEquals(3, this.server.getAcceptedConnectionCount());
+    }
+
+    @Test
+    public void testResetInterval() throws Exception {
+        this.server.setResetInterval(2);
+        HttpResponse response = get("/bytes/10");
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Future<HttpResponse> future = this.httpclient.execute(this.target, new HttpGet("/bytes/10"), null);
+        // The connection gets closed without a response, which cancels the
+        // exchange, or fails it if the client sees an I/O error first
+        response = null;
+        try {
+            response = future.get();
+        } catch (CancellationException expected) {
+        } catch (ExecutionException expected) {
+        }
+        Assert.assertNull(response);
+        Assert.assertEquals(2, this.server.getRequestCount());
+    }
+
+    @Test
+    public void testInvalidSize() throws Exception {
+        HttpResponse response = get("/bytes/-1");
+        Assert.assertEquals(HttpStatus.SC_BAD_REQUEST, response.getStatusLine().getStatusCode());
+        response = get("/bytes/abc");
+        Assert.assertEquals(HttpStatus.SC_BAD_REQUEST, response.getStatusLine().getStatusCode());
+    }
+
+}
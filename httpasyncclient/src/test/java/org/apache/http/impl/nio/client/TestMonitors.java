@@ -0,0 +1,134 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.conn.ConnectionPoolMonitor;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.nio.conn.ManagedClientConnection;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JMX monitor test cases.
+ */
+public class TestMonitors extends AsyncHttpTestBase {
+
+    @Test
+    public void testMonitorsViaJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName poolName = new ObjectName("org.apache.http.nio:type=ConnectionPool,name=test");
+        ObjectName clientName = new ObjectName("org.apache.http.nio:type=HttpAsyncClient,name=test");
+        server.registerMBean(new ConnectionPoolMonitor(this.sessionManager, 0), poolName);
+        server.registerMBean(new HttpAsyncClientMonitor(this.httpclient, 0), clientName);
+        try {
+            Future<HttpResponse> future = this.httpclient.execute(
+                    this.target, new HttpGet("/random/100"), null);
+            HttpResponse response = future.get();
+            Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+
+            Assert.assertEquals("ACTIVE", server.getAttribute(clientName, "ReactorStatus"));
+            Assert.assertEquals(1, server.getAttribute(clientName, "DispatcherCount"));
+            Assert.assertEquals(0, server.getAttribute(clientName, "LeaseQueueLength"));
+
+            server.invoke(poolName, "setMaxPerRoute",
+                    new Object[] { "http://localhost:" + this.target.getPort(), Integer.valueOf(7) },
+                    new String[] { String.class.getName(), int.class.getName() });
+            String[] routeStats = (String[]) server.getAttribute(poolName, "RouteStats");
+            Assert.assertEquals(1, routeStats.length);
+            Assert.assertTrue(routeStats[0], routeStats[0].contains("max: 7"));
+            Assert.assertEquals(0, server.getAttribute(poolName, "LeaseQueueLength"));
+
+            server.invoke(poolName, "closeIdleConnections",
+                    new Object[] { Long.valueOf(0) },
+                    new String[] { long.class.getName() });
+            Assert.assertNotNull(server.getAttribute(poolName, "AvailableConnections"));
+        } finally {
+            server.unregisterMBean(poolName);
+            server.unregisterMBean(clientName);
+        }
+    }
+
+    @Test
+    public void testDispatchTimedOnlyWhenMonitored() throws Exception {
+        HttpResponse response = this.httpclient.execute(
+                this.target, new HttpGet("/random/100"), null).get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertEquals(0, this.httpclient.getDispatchLatency().getCount());
+        Assert.assertEquals(0, this.httpclient.getDispatcherCount());
+
+        HttpAsyncClientMonitor monitor = new HttpAsyncClientMonitor(this.httpclient, 0);
+        response = this.httpclient.execute(
+                this.target, new HttpGet("/random/100"), null).get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertTrue(this.httpclient.getDispatchLatency().getCount() > 0);
+        Assert.assertEquals(1, monitor.getDispatcherCount());
+    }
+
+    @Test
+    public void testPendingRouteListed() throws Exception {
+        this.sessionManager.setMaxTotal(1);
+        HttpRoute route = new HttpRoute(this.target);
+        ManagedClientConnection conn = this.sessionManager.leaseConnection(
+                route, null, 0, TimeUnit.MILLISECONDS, null).get();
+        HttpRoute other = new HttpRoute(new HttpHost("otherhost", this.target.getPort()));
+        Future<ManagedClientConnection> pending = this.sessionManager.leaseConnection(
+                other, null, 0, TimeUnit.MILLISECONDS, null);
+        try {
+            Set<HttpRoute> routes = this.sessionManager.getRoutes();
+            Assert.assertTrue(routes.contains(route));
+            // Not yet resolved or connected
+            Assert.assertTrue(routes.contains(other));
+        } finally {
+            pending.cancel(true);
+            this.sessionManager.releaseConnection(conn, -1, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Test
+    public void testSnapshotCaching() throws Exception {
+        ConnectionPoolMonitor monitor = new ConnectionPoolMonitor(this.sessionManager, 60000);
+        long time = monitor.getSnapshotTime();
+        Thread.sleep(10);
+        Assert.assertEquals(time, monitor.getSnapshotTime());
+        monitor.setMaxTotal(10);
+        Assert.assertEquals(10, monitor.getMaxTotal());
+    }
+
+}
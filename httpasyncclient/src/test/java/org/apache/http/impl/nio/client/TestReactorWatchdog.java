@@ -0,0 +1,95 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.nio.client.params.HttpAsyncClientParams;
+import org.apache.http.nio.conn.ClientConnectionManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Reactor stall detection test cases.
+ */
+public class TestReactorWatchdog extends AsyncHttpTestBase {
+
+    @Override
+    protected DefaultHttpAsyncClient createClient(
+            final ClientConnectionManager sessionManager) throws Exception {
+        DefaultHttpAsyncClient client = super.createClient(sessionManager);
+        HttpAsyncClientParams.setStallThreshold(client.getParams(), 200);
+        return client;
+    }
+
+    @Test
+    public void testBlockingCallbackDetected() throws Exception {
+        FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>() {
+
+            public void completed(final HttpResponse result) {
+                try {
+                    // Blocks the I/O dispatch thread
+                    Thread.sleep(1000);
+                } catch (InterruptedException ex) {
+                }
+            }
+
+            public void failed(final Exception ex) {
+            }
+
+            public void cancelled() {
+            }
+
+        };
+        Future<HttpResponse> future = this.httpclient.execute(
+                this.target, new HttpGet("/random/100"), callback);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Thread.sleep(1200);
+
+        Assert.assertEquals(1, this.httpclient.getStallCount());
+        HistogramSnapshot latency = this.httpclient.getDispatchLatency();
+        Assert.assertTrue(latency.getCount() > 0);
+        Assert.assertTrue(latency.getMax() >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    public void testNoStallReported() throws Exception {
+        Future<HttpResponse> future = this.httpclient.execute(
+                this.target, new HttpGet("/random/100"), null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertEquals(0, this.httpclient.getStallCount());
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.client;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Request cancellation test cases.
+ */
+public class TestRequestCancellation extends AsyncHttpTestBase {
+
+    static class SlowService implements HttpRequestHandler {
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException ex) {
+                throw new IOException("Interrupted");
+            }
+            response.setStatusCode(HttpStatus.SC_OK);
+            response.setEntity(new StringEntity("slow"));
+        }
+
+    }
+
+    @Before
+    public void setUpSlowService() throws Exception {
+        this.localServer.register("/slow", new SlowService());
+        this.sessionManager.setDefaultMaxPerRoute(1);
+    }
+
+    private void awaitLeased(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (this.sessionManager.getTotalStats().getLeased() != expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(expected, this.sessionManager.getTotalStats().getLeased());
+    }
+
+    @Test
+    public void testCancelReleasesConnection() throws Exception {
+        Future<HttpResponse> future = this.httpclient.execute(this.target, new HttpGet("/slow"), null);
+        awaitLeased(1);
+
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(future.isCancelled());
+        Assert.assertEquals(0, this.sessionManager.getTotalStats().getLeased());
+        try {
+            future.get();
+            Assert.fail("CancellationException expected");
+        } catch (CancellationException expected) {
+        }
+
+        long start = System.currentTimeMillis();
+        Future<HttpResponse> future2 = this.httpclient.execute(
+                this.target, new HttpGet("/random/1024"), null);
+        HttpResponse response = future2.get(3, TimeUnit.SECONDS);
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertTrue(System.currentTimeMillis() - start < 3000);
+    }
+
+    @Test
+    public void testCancelPendingLease() throws Exception {
+        Future<HttpResponse> future1 = this.httpclient.execute(this.target, new HttpGet("/slow"), null);
+        awaitLeased(1);
+        Future<HttpResponse> future2 = this.httpclient.execute(
+                this.target, new HttpGet("/random/1024"), null);
+
+        Assert.assertTrue(future2.cancel(true));
+        Assert.assertTrue(future2.isCancelled());
+        Assert.assertTrue(future1.cancel(true));
+        awaitLeased(0);
+
+        Future<HttpResponse> future3 = this.httpclient.execute(
+                this.target, new HttpGet("/random/1024"), null);
+        HttpResponse response = future3.get(3, TimeUnit.SECONDS);
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        awaitLeased(0);
+    }
+
+    @Test
+    public void testCancelCompletedRequest() throws Exception {
+        Future<HttpResponse> future = this.httpclient.execute(
+                this.target, new HttpGet("/random/1024"), null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertFalse(future.cancel(true));
+        Assert.assertFalse(future.isCancelled());
+        awaitLeased(0);
+        Assert.assertEquals(1, this.sessionManager.getTotalStats().getAvailable());
+    }
+
+}
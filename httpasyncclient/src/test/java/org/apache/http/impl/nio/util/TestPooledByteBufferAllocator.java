@@ -0,0 +1,119 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.nio.util;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPooledByteBufferAllocator {
+
+    @Test
+    public void testSizeClasses() {
+        Assert.assertEquals(0, PooledByteBufferAllocator.sizeClass(1));
+        Assert.assertEquals(0, PooledByteBufferAllocator.sizeClass(1024));
+        Assert.assertEquals(1, PooledByteBufferAllocator.sizeClass(1025));
+        Assert.assertEquals(3, PooledByteBufferAllocator.sizeClass(8192));
+        Assert.assertEquals(PooledByteBufferAllocator.CLASS_COUNT - 1,
+                PooledByteBufferAllocator.sizeClass(PooledByteBufferAllocator.MAX_SIZE));
+        Assert.assertEquals(-1,
+                PooledByteBufferAllocator.sizeClass(PooledByteBufferAllocator.MAX_SIZE + 1));
+    }
+
+    @Test
+    public void testReuse() {
+        PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(false, 16);
+        ByteBuffer buffer = allocator.allocate(3000);
+        Assert.assertEquals(4096, buffer.capacity());
+        Assert.assertFalse(buffer.isDirect());
+        buffer.put((byte) 1);
+        allocator.release(buffer);
+        ByteBuffer buffer2 = allocator.allocate(4096);
+        Assert.assertSame(buffer, buffer2);
+        Assert.assertEquals(0, buffer2.position());
+        Assert.assertEquals(4096, buffer2.limit());
+        Assert.assertNotSame(buffer, allocator.allocate(4096));
+    }
+
+    @Test
+    public void testSharedPool() throws Exception {
+        final PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(true, 16);
+        final ByteBuffer[] buffers = new ByteBuffer[PooledByteBufferAllocator.LOCAL_CACHE_SIZE + 1];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = allocator.allocate(1024);
+            Assert.assertTrue(buffers[i].isDirect());
+        }
+        for (int i = 0; i < buffers.length; i++) {
+            allocator.release(buffers[i]);
+        }
+        // Only the buffer that did not fit into the local cache is visible
+        // to other threads
+        final ByteBuffer[] result = new ByteBuffer[2];
+        Thread t = new Thread() {
+
+            @Override
+            public void run() {
+                result[0] = allocator.allocate(1024);
+                result[1] = allocator.allocate(1024);
+            }
+
+        };
+        t.start();
+        t.join();
+        Assert.assertSame(buffers[buffers.length - 1], result[0]);
+        Assert.assertNotSame(buffers[buffers.length - 1], result[1]);
+    }
+
+    @Test
+    public void testLargeBuffersNotPooled() {
+        PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(false, 16);
+        ByteBuffer buffer = allocator.allocate(PooledByteBufferAllocator.MAX_SIZE + 1);
+        Assert.assertEquals(PooledByteBufferAllocator.MAX_SIZE + 1, buffer.capacity());
+        allocator.release(buffer);
+        Assert.assertNotSame(buffer, allocator.allocate(PooledByteBufferAllocator.MAX_SIZE + 1));
+    }
+
+    @Test
+    public void testLeakDetection() {
+        PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(false, 16);
+        allocator.setLeakDetection(true);
+        ByteBuffer buffer1 = allocator.allocate(1024);
+        ByteBuffer buffer2 = allocator.allocate(1024);
+        Assert.assertEquals(2, allocator.getOutstanding().size());
+        allocator.release(buffer1);
+        Assert.assertEquals(1, allocator.getOutstanding().size());
+        allocator.release(buffer2);
+        Assert.assertTrue(allocator.getOutstanding().isEmpty());
+        try {
+            allocator.release(buffer2);
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+}
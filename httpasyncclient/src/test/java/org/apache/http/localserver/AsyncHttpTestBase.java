@@ -26,10 +26,16 @@
  */
 package org.apache.http.localserver;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.http.HttpHost;
 import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
 import org.apache.http.impl.nio.conn.PoolingClientConnectionManager;
 import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.util.PooledByteBufferAllocator;
 import org.apache.http.nio.conn.ClientConnectionManager;
 import org.apache.http.nio.conn.scheme.Scheme;
 import org.apache.http.nio.conn.scheme.SchemeRegistry;
@@ -37,6 +43,7 @@ import org.apache.http.nio.reactor.ConnectingIOReactor;
 import org.apache.http.nio.reactor.IOReactorStatus;
 import org.apache.http.params.BasicHttpParams;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 
 public abstract class AsyncHttpTestBase {
@@ -47,6 +54,8 @@ public abstract class AsyncHttpTestBase {
     protected PoolingClientConnectionManager sessionManager;
     protected DefaultHttpAsyncClient httpclient;
 
+    private int outstandingBuffers;
+
     protected LocalTestServer createServer() throws Exception {
         LocalTestServer localServer = new LocalTestServer(null, null);
         localServer.registerDefaultHandlers();
@@ -79,6 +88,7 @@ public abstract class AsyncHttpTestBase {
 
     @Before
     public void startClient() throws Exception {
+        this.outstandingBuffers = countOutstandingBuffers();
         this.ioreactor = createIOReactor();
         this.sessionManager = createConnectionManager(this.ioreactor);
         this.httpclient = createClient(this.sessionManager);
@@ -93,7 +103,35 @@ public abstract class AsyncHttpTestBase {
                 System.err.println("I/O reactor failed to shut down cleanly");
             }
             this.httpclient = null;
+            assertNoBufferLeaks();
+        }
+    }
+
+    private static int countOutstandingBuffers() {
+        return PooledByteBufferAllocator.HEAP.getOutstanding().size()
+            + PooledByteBufferAllocator.DIRECT.getOutstanding().size();
+    }
+
+    /**
+     * Fails if buffers taken from the shared pools since the client was
+     * started have not been released. Only effective with buffer leak
+     * detection enabled, which the build does for tests.
+     */
+    private void assertNoBufferLeaks() {
+        if (countOutstandingBuffers() <= this.outstandingBuffers) {
+            return;
+        }
+        List<Throwable> leaks = new ArrayList<Throwable>();
+        leaks.addAll(PooledByteBufferAllocator.HEAP.getOutstanding());
+        leaks.addAll(PooledByteBufferAllocator.DIRECT.getOutstanding());
+        StringWriter buffer = new StringWriter();
+        PrintWriter writer = new PrintWriter(buffer);
+        writer.println(leaks.size() + " pooled buffer(s) not released, allocated at:");
+        for (Throwable leak: leaks) {
+            leak.printStackTrace(writer);
         }
+        writer.flush();
+        Assert.fail(buffer.toString());
     }
 
     @After
@@ -0,0 +1,562 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.localserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.DefaultHttpResponseFactory;
+import org.apache.http.impl.nio.DefaultServerIOEventDispatch;
+import org.apache.http.impl.nio.SSLServerIOEventDispatch;
+import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
+import org.apache.http.nio.NHttpConnection;
+import org.apache.http.nio.entity.ConsumingNHttpEntity;
+import org.apache.http.nio.entity.ConsumingNHttpEntityTemplate;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.entity.SkipContentListener;
+import org.apache.http.nio.protocol.AsyncNHttpServiceHandler;
+import org.apache.http.nio.protocol.NHttpRequestHandler;
+import org.apache.http.nio.protocol.NHttpRequestHandlerRegistry;
+import org.apache.http.nio.protocol.NHttpResponseTrigger;
+import org.apache.http.nio.protocol.SimpleNHttpRequestHandler;
+import org.apache.http.nio.reactor.IOEventDispatch;
+import org.apache.http.nio.reactor.IOReactorStatus;
+import org.apache.http.nio.reactor.ListenerEndpoint;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.CoreProtocolPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.SyncBasicHttpParams;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.protocol.ImmutableHttpProcessor;
+import org.apache.http.protocol.ResponseConnControl;
+import org.apache.http.protocol.ResponseContent;
+import org.apache.http.protocol.ResponseDate;
+import org.apache.http.protocol.ResponseServer;
+
+/**
+ * Non-blocking local HTTP server for tests and benchmarks that need to
+ * drive the client harder than {@link LocalTestServer} can serve.
+ * Requests are handled on the I/O dispatch threads of a listening
+ * I/O reactor, so handlers must not block.
+ * <p>
+ * Default handlers:
+ * <pre>
+ * /bytes/&lt;n&gt;   responds with n bytes of content, any request content is discarded
+ * /reset/*       drops the connection without sending a response
+ * </pre>
+ * Query parameters understood by all handlers:
+ * <pre>
+ * delay=&lt;ms&gt;     delays the response by the given number of milliseconds,
+ *                overriding the server-wide {@link #setLatency latency}
+ * </pre>
+ * Query parameters understood by <code>/bytes/&lt;n&gt;</code>:
+ * <pre>
+ * chunked=true   sends the content using chunk coding
+ * </pre>
+ * Server-wide fault injection, applied to every handler, can be changed
+ * while the server is running: a fixed {@link #setLatency latency}, a
+ * {@link #setMaxKeepAliveRequests limit} on requests served per connection
+ * and a {@link #setResetInterval connection reset} every n-th request.
+ * Delayed responses are submitted from a timer thread, so injecting
+ * latency does not hold up the I/O dispatch threads.
+ * <p>
+ * All threads started by the server have names beginning with
+ * <code>LocalNIOTestServer</code>, so that measurements taken in the same
+ * JVM can tell them apart from client threads.
+ */
+public class LocalNIOTestServer {
+
+    private static final String ACCEPTED = "http.localserver.accepted";
+    private static final String REQUEST_COUNT = "http.localserver.request-count";
+
+    private final HttpParams params;
+    private final int workerCount;
+    private final SSLContext sslcontext;
+    private final NHttpRequestHandlerRegistry handlerRegistry;
+    private final AtomicInteger acceptedConnections;
+    private final AtomicLong requestCount;
+
+    private volatile long latency;
+    private volatile int maxKeepAliveRequests;
+    private volatile int resetInterval;
+
+    private volatile DefaultListeningIOReactor ioreactor;
+    private volatile ScheduledExecutorService timer;
+    private volatile ListenerEndpoint endpoint;
+    private volatile Thread reactorThread;
+    private volatile Exception exception;
+
+    /**
+     * Creates a new test server.
+     *
+     * @param params    the parameters to be used by the server, or
+     *                  <code>null</code> to use
+     *                  {@link #newDefaultParams default} parameters
+     * @param workerCount number of I/O dispatch threads
+     * @param sslcontext optional SSL context if the server is to leverage
+     *                   SSL/TLS transport security
+     */
+    public LocalNIOTestServer(final HttpParams params, int workerCount, final SSLContext sslcontext) {
+        super();
+        this.params = params != null ? params : newDefaultParams();
+        this.workerCount = workerCount;
+        this.sslcontext = sslcontext;
+        this.handlerRegistry = new NHttpRequestHandlerRegistry();
+        this.acceptedConnections = new AtomicInteger(0);
+        this.requestCount = new AtomicLong(0);
+    }
+
+    public LocalNIOTestServer(final HttpParams params, int workerCount) {
+        this(params, workerCount, null);
+    }
+
+    /**
+     * Creates a new test server with SSL/TLS encryption.
+     *
+     * @param sslcontext SSL context
+     */
+    public LocalNIOTestServer(final SSLContext sslcontext) {
+        this(null, Runtime.getRuntime().availableProcessors(), sslcontext);
+    }
+
+    public LocalNIOTestServer() {
+        this(null, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    protected HttpParams newDefaultParams() {
+        HttpParams params = new SyncBasicHttpParams();
+        params
+            .setIntParameter(CoreConnectionPNames.SO_TIMEOUT, 60000)
+            .setIntParameter(CoreConnectionPNames.SOCKET_BUFFER_SIZE, 8 * 1024)
+            .setBooleanParameter(CoreConnectionPNames.TCP_NODELAY, true)
+            .setParameter(CoreProtocolPNames.ORIGIN_SERVER, "LocalNIOTestServer/1.1");
+        return params;
+    }
+
+    protected HttpProcessor newProcessor() {
+        return new ImmutableHttpProcessor(
+                new HttpResponseInterceptor[] {
+                        new ResponseDate(),
+                        new ResponseServer(),
+                        new ResponseContent(),
+                        new ResponseKeepAliveLimit(),
+                        new ResponseConnControl()
+                });
+    }
+
+    public void registerDefaultHandlers() {
+        register("/bytes/*", new BytesHandler());
+        register("/reset/*", new ResetHandler());
+    }
+
+    /**
+     * Registers a handler with the local registry. Server-wide fault
+     * injection is applied to the handler transparently.
+     *
+     * @param pattern   the URL pattern to match
+     * @param handler   the handler to apply
+     */
+    public void register(final String pattern, final NHttpRequestHandler handler) {
+        this.handlerRegistry.register(pattern, new FaultInjectingHandler(handler));
+    }
+
+    public void unregister(final String pattern) {
+        this.handlerRegistry.unregister(pattern);
+    }
+
+    /**
+     * Delays every response by the given number of milliseconds.
+     * <code>0</code> disables latency injection.
+     */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    public long getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * Closes a connection after it has served the given number of requests.
+     * <code>0</code> means no limit.
+     */
+    public void setMaxKeepAliveRequests(int max) {
+        this.maxKeepAliveRequests = max;
+    }
+
+    public int getMaxKeepAliveRequests() {
+        return this.maxKeepAliveRequests;
+    }
+
+    /**
+     * Drops the connection instead of responding to every n-th request
+     * received by the server. <code>0</code> disables connection resets.
+     */
+    public void setResetInterval(int n) {
+        this.resetInterval = n;
+    }
+
+    public int getResetInterval() {
+        return this.resetInterval;
+    }
+
+    /**
+     * Returns the number of connections that have sent this test server
+     * at least one request.
+     */
+    public int getAcceptedConnectionCount() {
+        return this.acceptedConnections.get();
+    }
+
+    /**
+     * Returns the number of requests this test server has received.
+     */
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    public void start() throws Exception {
+        if (this.ioreactor != null) {
+            throw new IllegalStateException("Server already running");
+        }
+        AsyncNHttpServiceHandler serviceHandler = new AsyncNHttpServiceHandler(
+                newProcessor(),
+                new DefaultHttpResponseFactory(),
+                new DefaultConnectionReuseStrategy(),
+                this.params);
+        serviceHandler.setHandlerResolver(this.handlerRegistry);
+        final IOEventDispatch ioEventDispatch;
+        if (this.sslcontext != null) {
+            ioEventDispatch = new SSLServerIOEventDispatch(
+                    serviceHandler, this.sslcontext, this.params);
+        } else {
+            ioEventDispatch = new DefaultServerIOEventDispatch(
+                    serviceHandler, this.params);
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            public Thread newThread(final Runnable r) {
+                Thread t = new Thread(r, "LocalNIOTestServer timer");
+                t.setDaemon(true);
+                return t;
+            }
+
+        });
+        this.ioreactor = new DefaultListeningIOReactor(this.workerCount, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger(1);
+
+            public Thread newThread(final Runnable r) {
+                return new Thread(r, "LocalNIOTestServer dispatcher " + this.count.getAndIncrement());
+            }
+
+        }, this.params);
+        this.reactorThread = new Thread("LocalNIOTestServer") {
+
+            @Override
+            public void run() {
+                try {
+                    ioreactor.execute(ioEventDispatch);
+                } catch (Exception ex) {
+                    exception = ex;
+                }
+            }
+
+        };
+        this.reactorThread.start();
+        this.endpoint = this.ioreactor.listen(LocalTestServer.TEST_SERVER_ADDR);
+        this.endpoint.waitFor();
+        if (this.endpoint.getException() != null) {
+            throw this.endpoint.getException();
+        }
+    }
+
+    public void stop() throws Exception {
+        DefaultListeningIOReactor local = this.ioreactor;
+        if (local == null) {
+            return;
+        }
+        this.timer.shutdownNow();
+        local.shutdown(2000);
+        this.reactorThread.join(2000);
+        this.ioreactor = null;
+    }
+
+    public IOReactorStatus getStatus() {
+        DefaultListeningIOReactor local = this.ioreactor;
+        return local != null ? local.getStatus() : IOReactorStatus.INACTIVE;
+    }
+
+    /**
+     * Returns the exception that terminated the I/O reactor, if any.
+     */
+    public Exception getException() {
+        return this.exception;
+    }
+
+    public InetSocketAddress getServiceAddress() {
+        ListenerEndpoint local = this.endpoint;
+        if (local == null) {
+            throw new IllegalStateException("Server not running");
+        }
+        return (InetSocketAddress) local.getAddress();
+    }
+
+    /**
+     * Returns the target host of this server with the scheme matching its
+     * transport security.
+     */
+    public HttpHost getServiceHost() {
+        return new HttpHost("localhost", getServiceAddress().getPort(),
+                this.sslcontext != null ? "https" : "http");
+    }
+
+    static String getQueryParameter(final String uri, final String name) {
+        int i = uri.indexOf('?');
+        while (i != -1) {
+            int start = i + 1;
+            int end = uri.indexOf('&', start);
+            String pair = end != -1 ? uri.substring(start, end) : uri.substring(start);
+            int eq = pair.indexOf('=');
+            if (eq != -1 && pair.substring(0, eq).equals(name)) {
+                return pair.substring(eq + 1);
+            }
+            i = end;
+        }
+        return null;
+    }
+
+    static void resetConnection(final HttpContext context) throws IOException {
+        NHttpConnection conn = (NHttpConnection) context.getAttribute(
+                ExecutionContext.HTTP_CONNECTION);
+        if (conn != null) {
+            conn.shutdown();
+        }
+    }
+
+    /**
+     * Counts requests on each connection and asks for the connection to be
+     * closed once it has served the configured maximum. Must precede
+     * {@link ResponseConnControl} which leaves an explicit
+     * <code>Connection: close</code> alone.
+     */
+    class ResponseKeepAliveLimit implements HttpResponseInterceptor {
+
+        public void process(
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            AtomicInteger count = (AtomicInteger) context.getAttribute(REQUEST_COUNT);
+            if (count == null) {
+                count = new AtomicInteger(0);
+                context.setAttribute(REQUEST_COUNT, count);
+            }
+            int max = maxKeepAliveRequests;
+            if (count.incrementAndGet() >= max && max > 0) {
+                response.setHeader(HTTP.CONN_DIRECTIVE, HTTP.CONN_CLOSE);
+            }
+        }
+
+    }
+
+    class FaultInjectingHandler implements NHttpRequestHandler {
+
+        private final NHttpRequestHandler handler;
+
+        FaultInjectingHandler(final NHttpRequestHandler handler) {
+            super();
+            this.handler = handler;
+        }
+
+        public ConsumingNHttpEntity entityRequest(
+                final HttpEntityEnclosingRequest request,
+                final HttpContext context) throws HttpException, IOException {
+            return this.handler.entityRequest(request, context);
+        }
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final NHttpResponseTrigger trigger,
+                final HttpContext context) throws HttpException, IOException {
+            if (context.getAttribute(ACCEPTED) == null) {
+                context.setAttribute(ACCEPTED, Boolean.TRUE);
+                acceptedConnections.incrementAndGet();
+            }
+            long n = requestCount.incrementAndGet();
+            int interval = resetInterval;
+            if (interval > 0 && n % interval == 0) {
+                resetConnection(context);
+                return;
+            }
+            long delay = latency;
+            String s = getQueryParameter(request.getRequestLine().getUri(), "delay");
+            if (s != null) {
+                try {
+                    delay = Long.parseLong(s);
+                } catch (NumberFormatException ex) {
+                    response.setStatusCode(HttpStatus.SC_BAD_REQUEST);
+                    trigger.submitResponse(response);
+                    return;
+                }
+            }
+            if (delay > 0) {
+                this.handler.handle(request, response, new DelayedResponseTrigger(trigger, delay), context);
+            } else {
+                this.handler.handle(request, response, trigger, context);
+            }
+        }
+
+    }
+
+    class DelayedResponseTrigger implements NHttpResponseTrigger {
+
+        private final NHttpResponseTrigger trigger;
+        private final long delay;
+
+        DelayedResponseTrigger(final NHttpResponseTrigger trigger, long delay) {
+            super();
+            this.trigger = trigger;
+            this.delay = delay;
+        }
+
+        public void submitResponse(final HttpResponse response) {
+            timer.schedule(new Runnable() {
+
+                public void run() {
+                    trigger.submitResponse(response);
+                }
+
+            }, this.delay, TimeUnit.MILLISECONDS);
+        }
+
+        public void handleException(final HttpException ex) {
+            this.trigger.handleException(ex);
+        }
+
+        public void handleException(final IOException ex) {
+            this.trigger.handleException(ex);
+        }
+
+    }
+
+    static class BytesHandler extends SimpleNHttpRequestHandler {
+
+        // Generated content is cached for a bounded number of small sizes
+        private static final int MAX_CACHED_SIZES = 32;
+        private static final int MAX_CACHED_SIZE = 1024 * 1024;
+
+        private final Map<Integer, byte[]> contents = new ConcurrentHashMap<Integer, byte[]>();
+
+        public ConsumingNHttpEntity entityRequest(
+                final HttpEntityEnclosingRequest request,
+                final HttpContext context) throws HttpException, IOException {
+            return new ConsumingNHttpEntityTemplate(
+                    request.getEntity(),
+                    new SkipContentListener(new HeapByteBufferAllocator()));
+        }
+
+        @Override
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            String uri = request.getRequestLine().getUri();
+            int q = uri.indexOf('?');
+            String path = q != -1 ? uri.substring(0, q) : uri;
+            int n;
+            try {
+                n = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+            } catch (NumberFormatException ex) {
+                response.setStatusCode(HttpStatus.SC_BAD_REQUEST);
+                return;
+            }
+            if (n < 0) {
+                response.setStatusCode(HttpStatus.SC_BAD_REQUEST);
+                return;
+            }
+            Integer key = Integer.valueOf(n);
+            byte[] content = this.contents.get(key);
+            if (content == null) {
+                content = new byte[n];
+                for (int i = 0; i < n; i++) {
+                    content[i] = (byte) ('a' + i % 26);
+                }
+                if (n <= MAX_CACHED_SIZE && this.contents.size() < MAX_CACHED_SIZES) {
+                    this.contents.put(key, content);
+                }
+            }
+            NByteArrayEntity entity = new NByteArrayEntity(content);
+            entity.setChunked("true".equals(getQueryParameter(uri, "chunked")));
+            response.setStatusCode(HttpStatus.SC_OK);
+            response.setEntity(entity);
+        }
+
+    }
+
+    static class ResetHandler implements NHttpRequestHandler {
+
+        public ConsumingNHttpEntity entityRequest(
+                final HttpEntityEnclosingRequest request,
+                final HttpContext context) throws HttpException, IOException {
+            return new ConsumingNHttpEntityTemplate(
+                    request.getEntity(),
+                    new SkipContentListener(new HeapByteBufferAllocator()));
+        }
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final NHttpResponseTrigger trigger,
+                final HttpContext context) throws HttpException, IOException {
+            resetConnection(context);
+        }
+
+    }
+
+}
@@ -29,17 +29,20 @@ package org.apache.http.nio.client.methods;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.http.HttpException;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.localserver.AsyncHttpTestBase;
 import org.apache.http.nio.ContentDecoder;
 import org.apache.http.nio.IOControl;
 import org.apache.http.nio.client.HttpAsyncRequestProducer;
+import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.http.protocol.HTTP;
 import org.junit.Assert;
 import org.junit.Test;
@@ -176,6 +179,63 @@ public class TestAsyncConsumers extends AsyncHttpTestBase {
         }
     }
 
+    private String echo(final String s, final String charset, int bufSize) throws Exception {
+        HttpAsyncRequestProducer httppost = HttpAsyncMethods.createPost(
+                this.target.toURI() + "/echo/stuff", s,
+                ContentType.create("text/plain", charset));
+        AsyncCharConsumer<String> consumer = new BufferingCharConsumer(bufSize);
+        Future<String> future = this.httpclient.execute(httppost, consumer, null);
+        return future.get();
+    }
+
+    @Test
+    public void testCharConsumerUTF8() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("blah \u00e9\u00e8 yada \u20ac\u4e2d da \ud83d\ude00\r\n");
+        }
+        String s = sb.toString();
+        // Multi-byte sequences end up split across reads
+        Assert.assertEquals(s, echo(s, "UTF-8", 512));
+        Assert.assertEquals(s, echo(s, "UTF-8", 8 * 1024));
+    }
+
+    @Test
+    public void testCharConsumerISO88591() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("blah \u00e9\u00e8\u00ff yada\r\n");
+        }
+        String s = sb.toString();
+        Assert.assertEquals(s, echo(s, "ISO-8859-1", 512));
+    }
+
+    @Test
+    public void testCharConsumerOtherCharset() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("blah \u00e9\u00e8 yada\r\n");
+        }
+        String s = sb.toString();
+        Assert.assertEquals(s, echo(s, "UTF-16", 512));
+    }
+
+    @Test
+    public void testCharConsumerMalformedASCII() throws Exception {
+        HttpPost httppost = new HttpPost("/echo/stuff");
+        httppost.setEntity(new NByteArrayEntity(new byte[] { 'a', 'b', (byte) 0xe9 },
+                ContentType.create("text/plain", "US-ASCII")));
+        AsyncCharConsumer<String> consumer = new BufferingCharConsumer();
+        Future<String> future = this.httpclient.execute(
+                HttpAsyncMethods.create(this.target, httppost), consumer, null);
+        try {
+            future.get();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof CharacterCodingException);
+        }
+    }
+
     @Test
     public void testResourceReleaseOnSuccess() throws Exception {
         StringBuilder sb = new StringBuilder();
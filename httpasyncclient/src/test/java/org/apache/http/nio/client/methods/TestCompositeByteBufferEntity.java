@@ -0,0 +1,90 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.http.util.EntityUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCompositeByteBufferEntity {
+
+    private static ByteBuffer[] createBuffers() {
+        ByteBuffer b1 = ByteBuffer.wrap("0123".getBytes());
+        ByteBuffer b2 = ByteBuffer.allocate(0);
+        ByteBuffer b3 = ByteBuffer.allocateDirect(6);
+        b3.put("456789".getBytes());
+        b3.flip();
+        return new ByteBuffer[] { b1, b2, b3 };
+    }
+
+    @Test
+    public void testContent() throws Exception {
+        CompositeByteBufferEntity entity = new CompositeByteBufferEntity(createBuffers());
+        Assert.assertEquals(10, entity.getContentLength());
+        Assert.assertTrue(entity.isRepeatable());
+        Assert.assertEquals("0123456789", EntityUtils.toString(entity));
+        Assert.assertEquals("0123456789", EntityUtils.toString(entity));
+    }
+
+    @Test
+    public void testStreamReads() throws Exception {
+        CompositeByteBufferEntity entity = new CompositeByteBufferEntity(createBuffers());
+        InputStream instream = entity.getContent();
+        Assert.assertEquals('0', instream.read());
+        Assert.assertEquals(3, instream.available());
+        Assert.assertEquals(5, instream.skip(5));
+        byte[] tmp = new byte[10];
+        Assert.assertEquals(4, instream.read(tmp, 0, tmp.length));
+        Assert.assertEquals("6789", new String(tmp, 0, 4));
+        Assert.assertEquals(-1, instream.read());
+        Assert.assertEquals(-1, instream.read(tmp, 0, tmp.length));
+    }
+
+    @Test
+    public void testWriteTo() throws Exception {
+        CompositeByteBufferEntity entity = new CompositeByteBufferEntity(createBuffers());
+        ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        entity.writeTo(outstream);
+        Assert.assertEquals("0123456789", new String(outstream.toByteArray()));
+    }
+
+    @Test
+    public void testBufferViews() throws Exception {
+        CompositeByteBufferEntity entity = new CompositeByteBufferEntity(createBuffers());
+        ByteBuffer[] views = entity.getBuffers();
+        Assert.assertEquals(3, views.length);
+        Assert.assertTrue(views[0].isReadOnly());
+        views[0].position(views[0].limit());
+        Assert.assertEquals(10, entity.getContentLength());
+        Assert.assertEquals("0123456789", EntityUtils.toString(entity));
+    }
+
+}
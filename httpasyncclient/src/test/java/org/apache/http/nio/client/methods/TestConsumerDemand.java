@@ -0,0 +1,257 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestConsumerDemand extends AsyncHttpTestBase {
+
+    static class ChunkCountingConsumer extends AsyncByteConsumer<Integer> {
+
+        private int chunks;
+
+        public ChunkCountingConsumer(long initialDemand) {
+            super();
+            setInitialDemand(initialDemand);
+        }
+
+        @Override
+        protected void onResponseReceived(final HttpResponse response) {
+        }
+
+        @Override
+        protected void onByteReceived(final ByteBuffer buf, final IOControl ioctrl) throws IOException {
+            this.chunks++;
+        }
+
+        @Override
+        protected void onCleanup() {
+        }
+
+        @Override
+        protected Integer buildResult() throws Exception {
+            return this.chunks;
+        }
+
+        public int getChunks() {
+            return this.chunks;
+        }
+
+    }
+
+    @Test
+    public void testDemandDrivesInput() throws Exception {
+        ContentDecoder decoder = Mockito.mock(ContentDecoder.class);
+        Mockito.when(decoder.read(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<Integer>() {
+
+            public Integer answer(final InvocationOnMock invocation) throws Throwable {
+                ByteBuffer dst = (ByteBuffer) invocation.getArguments()[0];
+                dst.put(new byte[10]);
+                return 10;
+            }
+
+        });
+        IOControl ioctrl = Mockito.mock(IOControl.class);
+
+        ChunkCountingConsumer consumer = new ChunkCountingConsumer(2);
+        consumer.consumeContent(decoder, ioctrl);
+        Assert.assertEquals(2, consumer.getChunks());
+        Assert.assertEquals(0, consumer.getDemand());
+        Mockito.verify(ioctrl).suspendInput();
+        Mockito.verify(ioctrl, Mockito.never()).requestInput();
+
+        consumer.request(3);
+        Mockito.verify(ioctrl).requestInput();
+        consumer.consumeContent(decoder, ioctrl);
+        Assert.assertEquals(5, consumer.getChunks());
+        Mockito.verify(ioctrl, Mockito.times(2)).suspendInput();
+        consumer.cancel();
+    }
+
+    @Test
+    public void testUnboundedDemand() throws Exception {
+        ChunkCountingConsumer consumer = new ChunkCountingConsumer(AbstractHttpAsyncResponseConsumer.UNBOUNDED);
+        consumer.request(10);
+        Assert.assertEquals(AbstractHttpAsyncResponseConsumer.UNBOUNDED, consumer.getDemand());
+    }
+
+    static class InputTrackingIOControl implements IOControl {
+
+        private volatile boolean inputSuspended;
+
+        public void requestInput() {
+            this.inputSuspended = false;
+        }
+
+        public void suspendInput() {
+            // Widens the window for a concurrent request
+            Thread.yield();
+            this.inputSuspended = true;
+        }
+
+        public void requestOutput() {
+        }
+
+        public void suspendOutput() {
+        }
+
+        public void shutdown() throws IOException {
+        }
+
+        public boolean isInputSuspended() {
+            return this.inputSuspended;
+        }
+
+    }
+
+    @Test
+    public void testConcurrentRequest() throws Exception {
+        final int count = 100000;
+        final ChunkCountingConsumer consumer = new ChunkCountingConsumer(0);
+        ContentDecoder decoder = new ContentDecoder() {
+
+            public int read(final ByteBuffer dst) throws IOException {
+                dst.put((byte) 0);
+                return 1;
+            }
+
+            public boolean isCompleted() {
+                return false;
+            }
+
+        };
+        InputTrackingIOControl ioctrl = new InputTrackingIOControl();
+        Thread requester = new Thread(new Runnable() {
+
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    consumer.request(1);
+                }
+            }
+
+        });
+        requester.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (consumer.getChunks() < count) {
+            if (!ioctrl.isInputSuspended()) {
+                consumer.consumeContent(decoder, ioctrl);
+            } else if (!requester.isAlive() && ioctrl.isInputSuspended()) {
+                Assert.fail("Input suspended with demand outstanding");
+            }
+            Assert.assertTrue("Timed out", System.currentTimeMillis() < deadline);
+        }
+        requester.join();
+        Assert.assertEquals(count, consumer.getChunks());
+        Assert.assertEquals(0, consumer.getDemand());
+        consumer.cancel();
+    }
+
+    static class QueueingConsumer extends AsyncByteConsumer<Long> {
+
+        private final BlockingQueue<byte[]> queue;
+        private volatile boolean overflow;
+        private long total;
+
+        public QueueingConsumer(int capacity) {
+            super(1024);
+            this.queue = new ArrayBlockingQueue<byte[]>(capacity);
+            setInitialDemand(capacity);
+        }
+
+        @Override
+        protected void onResponseReceived(final HttpResponse response) {
+        }
+
+        @Override
+        protected void onByteReceived(final ByteBuffer buf, final IOControl ioctrl) throws IOException {
+            byte[] chunk = new byte[buf.remaining()];
+            buf.get(chunk);
+            this.total += chunk.length;
+            if (!this.queue.offer(chunk)) {
+                this.overflow = true;
+            }
+        }
+
+        @Override
+        protected void onCleanup() {
+        }
+
+        @Override
+        protected Long buildResult() throws Exception {
+            return this.total;
+        }
+
+        public BlockingQueue<byte[]> getQueue() {
+            return this.queue;
+        }
+
+        public boolean isOverflow() {
+            return this.overflow;
+        }
+
+    }
+
+    @Test
+    public void testSlowSink() throws Exception {
+        int length = 256 * 1024;
+        QueueingConsumer consumer = new QueueingConsumer(4);
+        Future<Long> future = this.httpclient.execute(
+                HttpAsyncMethods.create(this.target, new HttpGet("/random/" + length)),
+                consumer, null);
+        BlockingQueue<byte[]> queue = consumer.getQueue();
+        long received = 0;
+        while (!future.isDone() || !queue.isEmpty()) {
+            byte[] chunk = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (chunk != null) {
+                received += chunk.length;
+                // The sink is much slower than the local server
+                Thread.sleep(1);
+                consumer.request(1);
+            }
+        }
+        Assert.assertEquals(length, future.get().longValue());
+        Assert.assertEquals(length, received);
+        Assert.assertFalse(consumer.isOverflow());
+    }
+
+}
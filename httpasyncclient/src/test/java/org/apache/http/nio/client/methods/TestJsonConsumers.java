@@ -0,0 +1,169 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.HttpAsyncRequestProducer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestJsonConsumers extends AsyncHttpTestBase {
+
+    static class CollectingArrayConsumer extends AsyncJsonArrayConsumer<List<String>> {
+
+        private final List<String> elements = new ArrayList<String>();
+        private final int pauseEvery;
+
+        public CollectingArrayConsumer(int bufSize, int pauseEvery) {
+            super(bufSize);
+            this.pauseEvery = pauseEvery;
+        }
+
+        @Override
+        protected void onResponseReceived(final HttpResponse response) {
+        }
+
+        @Override
+        protected void onElement(final String json, final IOControl ioctrl) throws IOException {
+            this.elements.add(json);
+            if (this.pauseEvery > 0 && getElementCount() % this.pauseEvery == 0) {
+                // Simulate a slow sink: stop reading and resume a little later
+                ioctrl.suspendInput();
+                Thread t = new Thread() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            Thread.sleep(20);
+                        } catch (InterruptedException ex) {
+                        }
+                        ioctrl.requestInput();
+                    }
+
+                };
+                t.start();
+            }
+        }
+
+        @Override
+        protected void onCleanup() {
+        }
+
+        @Override
+        protected List<String> buildResult() throws Exception {
+            return this.elements;
+        }
+
+    }
+
+    private static String record(int i) {
+        return "{\"id\":" + i + ",\"name\":\"record \\\"" + i + "\\\"\",\"score\":-1.5e3,"
+            + "\"tags\":[\"a\",true,null],\"nested\":{}}";
+    }
+
+    private static String array(int n) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[\n");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append(",\n");
+            }
+            sb.append("  ").append(record(i));
+        }
+        sb.append("\n]");
+        return sb.toString();
+    }
+
+    private List<String> execute(
+            final String content, final CollectingArrayConsumer consumer) throws Exception {
+        HttpAsyncRequestProducer httppost = HttpAsyncMethods.createPost(
+                this.target.toURI() + "/echo/stuff", content,
+                ContentType.create("application/json", "UTF-8"));
+        Future<List<String>> future = this.httpclient.execute(httppost, consumer, null);
+        return future.get();
+    }
+
+    @Test
+    public void testArrayElements() throws Exception {
+        int n = 2000;
+        String content = array(n);
+        List<String> elements = execute(content, new CollectingArrayConsumer(8 * 1024, 0));
+        Assert.assertEquals(n, elements.size());
+        for (int i = 0; i < n; i++) {
+            Assert.assertEquals(record(i), elements.get(i));
+        }
+        elements = execute(content, new CollectingArrayConsumer(256, 0));
+        Assert.assertEquals(n, elements.size());
+        Assert.assertEquals(record(n - 1), elements.get(n - 1));
+    }
+
+    @Test
+    public void testArrayElementsWithSuspendedInput() throws Exception {
+        int n = 2000;
+        List<String> elements = execute(array(n), new CollectingArrayConsumer(1024, 250));
+        Assert.assertEquals(n, elements.size());
+        for (int i = 0; i < n; i++) {
+            Assert.assertEquals(record(i), elements.get(i));
+        }
+    }
+
+    @Test
+    public void testEmptyArray() throws Exception {
+        List<String> elements = execute(" [ ] ", new CollectingArrayConsumer(1024, 0));
+        Assert.assertTrue(elements.isEmpty());
+    }
+
+    @Test
+    public void testNotAnArray() throws Exception {
+        try {
+            execute("{\"id\":1}", new CollectingArrayConsumer(1024, 0));
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testTruncatedArray() throws Exception {
+        try {
+            execute("[1, 2, {\"a\":", new CollectingArrayConsumer(1024, 0));
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+}
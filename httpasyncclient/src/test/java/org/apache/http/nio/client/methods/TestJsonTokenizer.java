@@ -0,0 +1,154 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestJsonTokenizer {
+
+    static class RecordingHandler implements JsonHandler {
+
+        private final List<String> events = new ArrayList<String>();
+
+        public void startObject() {
+            this.events.add("{");
+        }
+
+        public void endObject() {
+            this.events.add("}");
+        }
+
+        public void startArray() {
+            this.events.add("[");
+        }
+
+        public void endArray() {
+            this.events.add("]");
+        }
+
+        public void fieldName(final String name) {
+            this.events.add("key:" + name);
+        }
+
+        public void stringValue(final String value) {
+            this.events.add("str:" + value);
+        }
+
+        public void numberValue(final String value) {
+            this.events.add("num:" + value);
+        }
+
+        public void booleanValue(boolean value) {
+            this.events.add("bool:" + value);
+        }
+
+        public void nullValue() {
+            this.events.add("null");
+        }
+
+        public List<String> getEvents() {
+            return this.events;
+        }
+
+    }
+
+    private static List<String> tokenize(final String s, int chunkSize) throws IOException {
+        RecordingHandler handler = new RecordingHandler();
+        JsonTokenizer tokenizer = new JsonTokenizer(handler);
+        for (int i = 0; i < s.length(); i += chunkSize) {
+            int end = Math.min(s.length(), i + chunkSize);
+            tokenizer.feed(CharBuffer.wrap(s.toCharArray(), i, end - i));
+        }
+        tokenizer.end();
+        return handler.getEvents();
+    }
+
+    @Test
+    public void testTokens() throws Exception {
+        String s = " [ {\"id\": 1, \"name\":\"a\\\"b\\u00e9\\n\", \"tags\": [true, false, null]},"
+            + " -12.5e+3, 0, \"\", [], {} ] ";
+        String[] expected = new String[] {
+                "[", "{", "key:id", "num:1", "key:name", "str:a\"b\u00e9\n",
+                "key:tags", "[", "bool:true", "bool:false", "null", "]", "}",
+                "num:-12.5e+3", "num:0", "str:", "[", "]", "{", "}", "]" };
+        // Every token split across chunk boundaries in turn
+        for (int chunk = 1; chunk <= s.length(); chunk++) {
+            Assert.assertEquals("chunk size " + chunk,
+                    Arrays.asList(expected), tokenize(s, chunk));
+        }
+    }
+
+    @Test
+    public void testTopLevelScalar() throws Exception {
+        Assert.assertEquals(Arrays.asList("num:42"), tokenize("42", 1));
+        Assert.assertEquals(Arrays.asList("str:x"), tokenize(" \"x\" ", 2));
+    }
+
+    private static void assertMalformed(final String s) {
+        try {
+            tokenize(s, 3);
+            Assert.fail("IOException expected for: " + s);
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        assertMalformed("");
+        assertMalformed("[1, 2");
+        assertMalformed("[1, 2,]");
+        assertMalformed("[1 2]");
+        assertMalformed("{\"a\" 1}");
+        assertMalformed("{\"a\": 1]");
+        assertMalformed("{1: 2}");
+        assertMalformed("[01]");
+        assertMalformed("[1.]");
+        assertMalformed("[-]");
+        assertMalformed("[tru]");
+        assertMalformed("[\"a\\x\"]");
+        assertMalformed("[\"a\nb\"]");
+        assertMalformed("[1] [2]");
+    }
+
+    @Test
+    public void testValidNumbers() throws Exception {
+        Assert.assertTrue(JsonTokenizer.isValidNumber("0"));
+        Assert.assertTrue(JsonTokenizer.isValidNumber("-0.5"));
+        Assert.assertTrue(JsonTokenizer.isValidNumber("10E-2"));
+        Assert.assertFalse(JsonTokenizer.isValidNumber("1e"));
+        Assert.assertFalse(JsonTokenizer.isValidNumber("1-2"));
+        Assert.assertFalse(JsonTokenizer.isValidNumber("+1"));
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.nio.util.PooledByteBufferAllocator;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.util.EntityUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestPooledBufferConsumer extends AsyncHttpTestBase {
+
+    private PooledByteBufferAllocator allocator;
+
+    @Before
+    public void createAllocator() {
+        this.allocator = new PooledByteBufferAllocator(true, 16);
+        this.allocator.setLeakDetection(true);
+    }
+
+    private PooledBufferEntity execute(final String uri) throws Exception {
+        Future<HttpResponse> future = this.httpclient.execute(
+                HttpAsyncMethods.create(this.target, new HttpGet(uri)),
+                new PooledBufferResponseConsumer(this.allocator), null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        return (PooledBufferEntity) response.getEntity();
+    }
+
+    @Test
+    public void testContentAndRelease() throws Exception {
+        PooledBufferEntity entity = execute("/random/100000");
+        Assert.assertEquals(100000, entity.getContentLength());
+        Assert.assertFalse(this.allocator.getOutstanding().isEmpty());
+
+        ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(outstream);
+        ByteBuffer[] buffers = entity.getBuffers();
+        for (int i = 0; i < buffers.length; i++) {
+            Assert.assertTrue(buffers[i].isDirect());
+            while (buffers[i].hasRemaining()) {
+                channel.write(buffers[i]);
+            }
+        }
+        Assert.assertEquals(100000, outstream.size());
+        Assert.assertEquals(100000, EntityUtils.toByteArray(entity).length);
+
+        Assert.assertTrue(entity.release());
+        Assert.assertTrue(this.allocator.getOutstanding().isEmpty());
+    }
+
+    @Test
+    public void testReferenceCounting() throws Exception {
+        PooledBufferEntity entity = execute("/random/1000");
+        Assert.assertEquals(1, entity.getRefCount());
+        entity.retain();
+        Assert.assertFalse(entity.release());
+        Assert.assertEquals(1000, entity.getBuffers()[0].remaining());
+        Assert.assertTrue(entity.release());
+        Assert.assertTrue(this.allocator.getOutstanding().isEmpty());
+        try {
+            entity.getBuffers();
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            entity.release();
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testReleaseOnFailure() throws Exception {
+        PooledBufferResponseConsumer consumer = new PooledBufferResponseConsumer(this.allocator) {
+
+            private int count;
+
+            @Override
+            protected void onContentReceived(
+                    final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+                super.onContentReceived(decoder, ioctrl);
+                if (++this.count > 1) {
+                    throw new IOException("Kaboom");
+                }
+            }
+
+        };
+        Future<HttpResponse> future = this.httpclient.execute(
+                HttpAsyncMethods.create(this.target, new HttpGet("/random/1000000")), consumer, null);
+        try {
+            future.get();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException expected) {
+        }
+        Assert.assertTrue(this.allocator.getOutstanding().isEmpty());
+    }
+
+}
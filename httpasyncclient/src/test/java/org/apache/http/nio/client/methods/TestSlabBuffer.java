@@ -0,0 +1,146 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.impl.nio.util.PooledByteBufferAllocator;
+import org.apache.http.nio.ContentDecoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSlabBuffer {
+
+    /**
+     * Decoder over a byte array that records the buffers it is asked
+     * to read into.
+     */
+    static class ByteArrayDecoder implements ContentDecoder {
+
+        private final ByteBuffer src;
+        private final List<ByteBuffer> dsts;
+
+        ByteArrayDecoder(final byte[] content) {
+            super();
+            this.src = ByteBuffer.wrap(content);
+            this.dsts = new ArrayList<ByteBuffer>();
+        }
+
+        public int read(final ByteBuffer dst) throws IOException {
+            if (this.dsts.isEmpty() || this.dsts.get(this.dsts.size() - 1) != dst) {
+                this.dsts.add(dst);
+            }
+            if (!this.src.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(dst.remaining(), this.src.remaining());
+            for (int i = 0; i < n; i++) {
+                dst.put(this.src.get());
+            }
+            return n;
+        }
+
+        public boolean isCompleted() {
+            return !this.src.hasRemaining();
+        }
+
+        List<ByteBuffer> getBuffers() {
+            return this.dsts;
+        }
+
+    }
+
+    @Test
+    public void testPresizedBufferNotExtended() throws Exception {
+        byte[] content = new byte[1000];
+        ByteArrayDecoder decoder = new ByteArrayDecoder(content);
+
+        SlabBuffer buffer = new SlabBuffer(SlabBuffer.HEAP_ALLOCATOR, 64, content.length, 1024);
+        buffer.readAll(decoder);
+        Assert.assertTrue(decoder.isCompleted());
+
+        Assert.assertEquals(1, decoder.getBuffers().size());
+        ByteBuffer[] slabs = buffer.flip();
+        Assert.assertEquals(1, slabs.length);
+        Assert.assertEquals(content.length, slabs[0].capacity());
+        Assert.assertEquals(content.length, slabs[0].remaining());
+    }
+
+    @Test
+    public void testSlabsBeyondPresizeLimit() throws Exception {
+        byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        ByteArrayDecoder decoder = new ByteArrayDecoder(content);
+
+        SlabBuffer buffer = new SlabBuffer(SlabBuffer.HEAP_ALLOCATOR, 64, content.length, 512);
+        buffer.readAll(decoder);
+
+        ByteBuffer[] slabs = buffer.flip();
+        Assert.assertEquals(16, slabs.length);
+        int i = 0;
+        for (ByteBuffer slab: slabs) {
+            Assert.assertEquals(64, slab.capacity());
+            while (slab.hasRemaining()) {
+                Assert.assertEquals((byte) i++, slab.get());
+            }
+        }
+        Assert.assertEquals(content.length, i);
+    }
+
+    @Test
+    public void testPooledSlabsGivenBack() throws Exception {
+        PooledByteBufferAllocator allocator = new PooledByteBufferAllocator(false, 16);
+        allocator.setLeakDetection(true);
+        byte[] content = new byte[PooledByteBufferAllocator.MIN_SIZE * 2];
+
+        SlabBuffer buffer = new SlabBuffer(allocator, PooledByteBufferAllocator.MIN_SIZE, -1,
+                PooledByteBufferAllocator.MAX_SIZE);
+        buffer.readAll(new ByteArrayDecoder(content));
+        // The slab allocated for the end of content holds nothing
+        buffer.read(new ByteArrayDecoder(new byte[0]));
+        Assert.assertEquals(3, allocator.getOutstanding().size());
+        ByteBuffer[] slabs = buffer.flip();
+        Assert.assertEquals(2, slabs.length);
+        Assert.assertEquals(2, allocator.getOutstanding().size());
+        for (ByteBuffer slab: slabs) {
+            allocator.release(slab);
+        }
+
+        buffer = new SlabBuffer(allocator, PooledByteBufferAllocator.MIN_SIZE, content.length,
+                PooledByteBufferAllocator.MAX_SIZE);
+        buffer.readAll(new ByteArrayDecoder(content));
+        Assert.assertEquals(1, allocator.getOutstanding().size());
+        buffer.clear();
+        Assert.assertTrue(allocator.getOutstanding().isEmpty());
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.HttpAsyncRequestProducer;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.util.EntityUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSpillingConsumer extends AsyncHttpTestBase {
+
+    private SpillableEntity execute(
+            final HttpAsyncRequestProducer producer, int threshold) throws Exception {
+        Future<HttpResponse> future = this.httpclient.execute(
+                producer, new SpillingHttpAsyncResponseConsumer(threshold), null);
+        HttpResponse response = future.get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        return (SpillableEntity) response.getEntity();
+    }
+
+    @Test
+    public void testContentInMemory() throws Exception {
+        SpillableEntity entity = execute(
+                HttpAsyncMethods.create(this.target, new HttpGet("/random/1000")), 1024);
+        Assert.assertTrue(entity.isInMemory());
+        Assert.assertNull(entity.getFile());
+        Assert.assertEquals(1000, entity.getContentLength());
+        Assert.assertEquals(1000, EntityUtils.toByteArray(entity).length);
+    }
+
+    @Test
+    public void testKnownLengthSpilled() throws Exception {
+        SpillableEntity entity = execute(
+                HttpAsyncMethods.create(this.target, new HttpGet("/random/20000")), 1024);
+        try {
+            Assert.assertFalse(entity.isInMemory());
+            File file = entity.getFile();
+            Assert.assertTrue(file.exists());
+            Assert.assertEquals(20000, entity.getContentLength());
+            Assert.assertEquals(20000, EntityUtils.toByteArray(entity).length);
+            entity.dispose();
+            Assert.assertFalse(file.exists());
+        } finally {
+            entity.dispose();
+        }
+    }
+
+    static class ChunkedHandler implements HttpRequestHandler {
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            String uri = request.getRequestLine().getUri();
+            int n = Integer.parseInt(uri.substring(uri.lastIndexOf('/') + 1));
+            byte[] content = new byte[n];
+            for (int i = 0; i < n; i++) {
+                content[i] = (byte) ('a' + i % 26);
+            }
+            ByteArrayEntity entity = new ByteArrayEntity(content);
+            entity.setChunked(true);
+            response.setStatusCode(HttpStatus.SC_OK);
+            response.setEntity(entity);
+        }
+
+    }
+
+    @Test
+    public void testSpilledWhileBuffering() throws Exception {
+        this.localServer.register("/chunked/*", new ChunkedHandler());
+        SpillableEntity entity = execute(
+                HttpAsyncMethods.create(this.target, new HttpGet("/chunked/50000")), 1024);
+        try {
+            Assert.assertFalse(entity.isInMemory());
+            Assert.assertTrue(entity.isChunked());
+            byte[] b = EntityUtils.toByteArray(entity);
+            Assert.assertEquals(50000, b.length);
+            for (int i = 0; i < b.length; i++) {
+                Assert.assertEquals('a' + i % 26, b[i]);
+            }
+        } finally {
+            entity.dispose();
+        }
+    }
+
+    @Test
+    public void testFileDeletedOnAbort() throws Exception {
+        this.localServer.register("/chunked/*", new ChunkedHandler());
+        final File dir = File.createTempFile("spill", ".dir");
+        Assert.assertTrue(dir.delete());
+        Assert.assertTrue(dir.mkdir());
+        try {
+            final File[] spilled = new File[1];
+            SpillingHttpAsyncResponseConsumer consumer = new SpillingHttpAsyncResponseConsumer(1024, dir) {
+
+                @Override
+                protected void onContentReceived(
+                        final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+                    super.onContentReceived(decoder, ioctrl);
+                    File[] files = dir.listFiles();
+                    if (files.length > 0) {
+                        spilled[0] = files[0];
+                        throw new IOException("Kaboom");
+                    }
+                }
+
+            };
+            Future<HttpResponse> future = this.httpclient.execute(
+                    HttpAsyncMethods.create(this.target, new HttpGet("/chunked/1000000")), consumer, null);
+            try {
+                future.get();
+                Assert.fail("ExecutionException expected");
+            } catch (ExecutionException expected) {
+            }
+            Assert.assertNotNull(spilled[0]);
+            Assert.assertFalse(spilled[0].exists());
+            Assert.assertEquals(0, dir.listFiles().length);
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file: files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.util.EntityUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestStreamBridges extends AsyncHttpTestBase {
+
+    @Test
+    public void testResponseInputStream() throws Exception {
+        InputStreamResponseConsumer consumer = new InputStreamResponseConsumer(4096);
+        Future<HttpResponse> future = this.httpclient.execute(
+                HttpAsyncMethods.create(this.target, new HttpGet("/random/1000000")),
+                consumer, null);
+        HttpResponse response = consumer.getResponseFuture().get();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertFalse(future.isDone());
+
+        InputStream instream = response.getEntity().getContent();
+        byte[] b = new byte[1000];
+        long total = 0;
+        int n;
+        while ((n = instream.read(b)) != -1) {
+            total += n;
+            if (total % 100000 < n) {
+                // Let the server get ahead of the reader
+                Thread.sleep(10);
+            }
+        }
+        instream.close();
+        Assert.assertEquals(1000000, total);
+        Assert.assertSame(response, future.get());
+    }
+
+    @Test
+    public void testResponseInputStreamClosedEarly() throws Exception {
+        InputStreamResponseConsumer consumer = new InputStreamResponseConsumer(4096);
+        Future<HttpResponse> future = this.httpclient.execute(
+                HttpAsyncMethods.create(this.target, new HttpGet("/random/10000000")),
+                consumer, null);
+        HttpResponse response = consumer.getResponseFuture().get();
+        InputStream instream = response.getEntity().getContent();
+        Assert.assertTrue(instream.read(new byte[100]) > 0);
+        instream.close();
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("The exchange should have been aborted");
+        } catch (CancellationException expected) {
+        } catch (ExecutionException expected) {
+        }
+    }
+
+    @Test
+    public void testRequestOutputStream() throws Exception {
+        final OutputStreamRequestProducer producer = new OutputStreamRequestProducer(
+                this.target, new HttpPost("/echo/stuff"),
+                ContentType.create("text/plain", "US-ASCII"), -1, 1024);
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Future<HttpResponse> future = this.httpclient.execute(
+                producer, HttpAsyncMethods.createConsumer(), null);
+
+        Thread worker = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    OutputStream outstream = producer.getOutputStream();
+                    for (int i = 0; i < 1000; i++) {
+                        byte[] line = ("line " + i + " blah blah blah\r\n").getBytes("US-ASCII");
+                        outstream.write(line);
+                        expected.write(line);
+                    }
+                    outstream.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+
+        };
+        worker.start();
+
+        HttpResponse response = future.get();
+        worker.join();
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertArrayEquals(expected.toByteArray(), EntityUtils.toByteArray(response.getEntity()));
+    }
+
+    @Test
+    public void testRequestOutputStreamShorterThanContentLength() throws Exception {
+        OutputStreamRequestProducer producer = new OutputStreamRequestProducer(
+                this.target, new HttpPost("/echo/stuff"),
+                ContentType.create("text/plain", "US-ASCII"), 100, 1024);
+        Future<HttpResponse> future = this.httpclient.execute(
+                producer, HttpAsyncMethods.createConsumer(), null);
+        OutputStream outstream = producer.getOutputStream();
+        outstream.write(new byte[50]);
+        try {
+            outstream.close();
+            Assert.fail("IOException expected");
+        } catch (IOException expected) {
+        }
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testRequestOutputStreamAfterFailure() throws Exception {
+        OutputStreamRequestProducer producer = new OutputStreamRequestProducer(
+                this.target, new HttpPost("/echo/stuff"),
+                ContentType.create("text/plain", "US-ASCII"));
+        producer.resetRequest();
+        try {
+            producer.getOutputStream().write(new byte[10]);
+            Assert.fail("IOException expected");
+        } catch (IOException expected) {
+        }
+    }
+
+}
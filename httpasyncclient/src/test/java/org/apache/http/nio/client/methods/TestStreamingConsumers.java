@@ -0,0 +1,311 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.client.methods;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.localserver.AsyncHttpTestBase;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.HttpAsyncRequestProducer;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestStreamingConsumers extends AsyncHttpTestBase {
+
+    static class CollectingLinesConsumer extends AsyncJsonLinesConsumer<List<String>> {
+
+        private final List<String> records = new ArrayList<String>();
+
+        public CollectingLinesConsumer(int bufSize, int maxLineLength) {
+            super(bufSize, maxLineLength);
+        }
+
+        @Override
+        protected void onResponseReceived(final HttpResponse response) {
+        }
+
+        @Override
+        protected void onRecord(final String json, final IOControl ioctrl) throws IOException {
+            this.records.add(json);
+        }
+
+        @Override
+        protected void onCleanup() {
+        }
+
+        @Override
+        protected List<String> buildResult() throws Exception {
+            return this.records;
+        }
+
+    }
+
+    static class CollectingEventConsumer extends AsyncEventStreamConsumer<List<ServerSentEvent>> {
+
+        private final List<ServerSentEvent> events = new ArrayList<ServerSentEvent>();
+
+        public CollectingEventConsumer(int bufSize, final String lastEventId) {
+            super(bufSize, 4 * 1024, lastEventId);
+        }
+
+        @Override
+        protected void onResponseReceived(final HttpResponse response) {
+        }
+
+        @Override
+        protected void onEvent(final ServerSentEvent event, final IOControl ioctrl) throws IOException {
+            this.events.add(event);
+        }
+
+        @Override
+        protected void onCleanup() {
+        }
+
+        @Override
+        protected List<ServerSentEvent> buildResult() throws Exception {
+            return this.events;
+        }
+
+    }
+
+    private <T> T post(
+            final String content,
+            final String mimeType,
+            final AsyncByteConsumer<T> consumer) throws Exception {
+        HttpAsyncRequestProducer httppost = HttpAsyncMethods.createPost(
+                this.target.toURI() + "/echo/stuff", content,
+                ContentType.create(mimeType, "UTF-8"));
+        Future<T> future = this.httpclient.execute(httppost, consumer, null);
+        return future.get();
+    }
+
+    @Test
+    public void testJsonLines() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"\u00e9l\u00e8ve ").append(i).append("\"}");
+            // Mix all kinds of line terminators and some blank lines
+            switch (i % 4) {
+            case 0:
+                sb.append("\n");
+                break;
+            case 1:
+                sb.append("\r\n");
+                break;
+            case 2:
+                sb.append("\r");
+                break;
+            default:
+                sb.append("\n\n  \n");
+            }
+        }
+        String content = sb.toString();
+        for (int bufSize : new int[] { 1024, 4 * 1024 }) {
+            List<String> records = post(
+                    content, "application/x-ndjson", new CollectingLinesConsumer(bufSize, 1024));
+            Assert.assertEquals(1000, records.size());
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertEquals(
+                        "{\"id\":" + i + ",\"name\":\"\u00e9l\u00e8ve " + i + "\"}", records.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testJsonLinesUnterminatedLastLine() throws Exception {
+        List<String> records = post(
+                "{\"a\":1}\n{\"a\":2}", "application/x-ndjson", new CollectingLinesConsumer(1024, 1024));
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("{\"a\":2}", records.get(1));
+    }
+
+    @Test
+    public void testLinesCharsetNotAsciiCompatible() throws Exception {
+        HttpAsyncRequestProducer httppost = HttpAsyncMethods.createPost(
+                this.target.toURI() + "/echo/stuff", "{\"a\":1}\n{\"a\":2}\n",
+                ContentType.create("application/x-ndjson", "UTF-16"));
+        Future<List<String>> future = this.httpclient.execute(
+                httppost, new CollectingLinesConsumer(1024, 1024), null);
+        try {
+            future.get();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof UnsupportedEncodingException);
+        }
+    }
+
+    @Test
+    public void testMaxLineLength() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("0123456789");
+        }
+        try {
+            post(sb.toString(), "application/x-ndjson", new CollectingLinesConsumer(1024, 512));
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testEventStream() throws Exception {
+        StringBuilder padding = new StringBuilder();
+        // Long comment lines make the events straddle content buffers
+        for (int i = 0; i < 1500; i++) {
+            padding.append('x');
+        }
+        String content = "\uFEFF: comment\r\n"
+            + "retry: 1500\r\n"
+            + "data: first\r\n"
+            + "\r\n"
+            + ":" + padding + "\n"
+            + "event: update\n"
+            + "id: 7\n"
+            + "data:line 1\n"
+            + "data:  line 2\n"
+            + "data\n"
+            + "\n"
+            + ":" + padding + "\n"
+            + "id\n"
+            + "data: {\"x\":1}\r"
+            + "\r"
+            + "event: ignored\n"
+            + "\n"
+            + "data: incomplete\n";
+        CollectingEventConsumer consumer = new CollectingEventConsumer(1024, null);
+        List<ServerSentEvent> events = post(content, "text/event-stream", consumer);
+        Assert.assertEquals(3, events.size());
+        ServerSentEvent event = events.get(0);
+        Assert.assertNull(event.getId());
+        Assert.assertEquals("message", event.getType());
+        Assert.assertEquals("first", event.getData());
+        event = events.get(1);
+        Assert.assertEquals("7", event.getId());
+        Assert.assertEquals("update", event.getType());
+        Assert.assertEquals("line 1\n line 2\n", event.getData());
+        event = events.get(2);
+        Assert.assertEquals("", event.getId());
+        Assert.assertEquals("message", event.getType());
+        Assert.assertEquals("{\"x\":1}", event.getData());
+        Assert.assertEquals("", consumer.getLastEventId());
+        Assert.assertEquals(1500, consumer.getRetryInterval());
+    }
+
+    @Test
+    public void testEventStreamDecodedAsUTF8() throws Exception {
+        this.localServer.register("/events-latin1", new HttpRequestHandler() {
+
+            public void handle(
+                    final HttpRequest request,
+                    final HttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                ByteArrayEntity entity = new ByteArrayEntity(
+                        "data: \u00e9l\u00e8ve\n\n".getBytes("UTF-8"));
+                entity.setContentType("text/event-stream; charset=ISO-8859-1");
+                response.setStatusCode(HttpStatus.SC_OK);
+                response.setEntity(entity);
+            }
+
+        });
+        String uri = this.target.toURI() + "/events-latin1";
+        Future<List<ServerSentEvent>> future = this.httpclient.execute(
+                HttpAsyncMethods.createEventStreamGet(uri, null),
+                new CollectingEventConsumer(1024, null), null);
+        List<ServerSentEvent> events = future.get();
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals("\u00e9l\u00e8ve", events.get(0).getData());
+    }
+
+    static class EventSourceHandler implements HttpRequestHandler {
+
+        private volatile String lastEventId;
+
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            Header header = request.getFirstHeader("Last-Event-ID");
+            this.lastEventId = header != null ? header.getValue() : null;
+            int first = this.lastEventId != null ? Integer.parseInt(this.lastEventId) + 1 : 1;
+            StringBuilder sb = new StringBuilder();
+            for (int i = first; i < first + 3; i++) {
+                sb.append("id: ").append(i).append("\ndata: event ").append(i).append("\n\n");
+            }
+            StringEntity entity = new StringEntity(sb.toString(), "UTF-8");
+            entity.setContentType("text/event-stream; charset=UTF-8");
+            response.setStatusCode(HttpStatus.SC_OK);
+            response.setEntity(entity);
+        }
+
+        public String getLastEventId() {
+            return this.lastEventId;
+        }
+
+    }
+
+    @Test
+    public void testResumeWithLastEventId() throws Exception {
+        EventSourceHandler handler = new EventSourceHandler();
+        this.localServer.register("/events", handler);
+        String uri = this.target.toURI() + "/events";
+
+        CollectingEventConsumer consumer = new CollectingEventConsumer(1024, null);
+        Future<List<ServerSentEvent>> future = this.httpclient.execute(
+                HttpAsyncMethods.createEventStreamGet(uri, null), consumer, null);
+        List<ServerSentEvent> events = future.get();
+        Assert.assertNull(handler.getLastEventId());
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals("3", consumer.getLastEventId());
+
+        String lastEventId = consumer.getLastEventId();
+        consumer = new CollectingEventConsumer(1024, lastEventId);
+        future = this.httpclient.execute(
+                HttpAsyncMethods.createEventStreamGet(uri, lastEventId), consumer, null);
+        events = future.get();
+        Assert.assertEquals("3", handler.getLastEventId());
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals("event 4", events.get(0).getData());
+        Assert.assertEquals("6", consumer.getLastEventId());
+    }
+
+}